@@ -0,0 +1,205 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import javafx.geometry.Dimension2D;
+import javafx.scene.image.Image;
+
+/**
+ * A cache of full size slide images that are rendered when they're needed.
+ * <p/>
+ * A slide is rendered on the thread that asks for it unless it's already
+ * cached or being rendered, and the slides either side of it are rendered
+ * ahead in the background so moving through a presentation doesn't wait on
+ * the renderer. Only the most recently used images are kept, across all the
+ * presentations that share the cache.
+ * <p/>
+ * @param <S> the type of slide.
+ * @author Michael
+ */
+public final class RenderedSlideCache<S> {
+
+    /**
+     * Renders the full size image of a slide.
+     * <p/>
+     * @param <S> the type of slide.
+     */
+    public interface Renderer<S> {
+
+        /**
+         * Render a slide as large as it'll fit in the given size.
+         * <p/>
+         * @param slide the slide.
+         * @param size the size to fit the image to, in pixels.
+         * @return the rendered image.
+         */
+        Image render(S slide, Dimension2D size) throws Exception;
+    }
+
+    /**
+     * How many slides either side of the one being shown are rendered ahead.
+     */
+    private static final int PREFETCH_SLIDES = 2;
+    private final Renderer<S> renderer;
+    private final Map<S, CachedImage> images;
+    private final ExecutorService executor;
+
+    /**
+     * A full size slide in the cache, and the size it was rendered for.
+     */
+    private static final class CachedImage {
+
+        private final Dimension2D size;
+        private final FutureTask<Image> task;
+
+        private CachedImage(Dimension2D size, FutureTask<Image> task) {
+            this.size = size;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Create a new, empty cache.
+     * <p/>
+     * @param name the name of the threads that render ahead.
+     * @param capacity the most images to keep.
+     * @param threads the number of threads that render ahead.
+     * @param renderer what to render the slides with.
+     */
+    public RenderedSlideCache(String name, int capacity, int threads, Renderer<S> renderer) {
+        this.renderer = renderer;
+        this.executor = newRenderPool(name, threads);
+        this.images = new LinkedHashMap<S, CachedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<S, CachedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the full size image of a slide, rendering it on this thread if it
+     * isn't cached or being rendered already, and start rendering the slides
+     * around it, the ones after it first since that's the usual way through a
+     * presentation.
+     * <p/>
+     * @param slides all the slides in the presentation.
+     * @param index the index of the slide wanted.
+     * @param size the size to fit the image to, in pixels.
+     * @return the image of the slide.
+     * @throws ExecutionException if the slide couldn't be rendered.
+     * @throws InterruptedException if this thread was interrupted while
+     * waiting for another thread to render the slide.
+     */
+    public Image get(S[] slides, int index, Dimension2D size) throws ExecutionException, InterruptedException {
+        S slide = slides[index];
+        FutureTask<Image> task = getTask(slide, size);
+        for (int i = 1; i <= PREFETCH_SLIDES; i++) {
+            for (int next : new int[]{index + i, index - i}) {
+                if (next >= 0 && next < slides.length) {
+                    prefetch(slides[next], size);
+                }
+            }
+        }
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException | InterruptedException ex) {
+            synchronized (images) {
+                CachedImage cached = images.get(slide);
+                if (cached != null && cached.task == task) {
+                    images.remove(slide);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Let go of the images of some slides, such as those of a presentation
+     * that's been closed.
+     * <p/>
+     * @param slides the slides.
+     */
+    public void remove(S[] slides) {
+        synchronized (images) {
+            for (S slide : slides) {
+                images.remove(slide);
+            }
+        }
+    }
+
+    /**
+     * Render a slide in the background if it isn't cached or being rendered
+     * already. By the time the render comes off the queue the slide may have
+     * been evicted, removed or asked for at another size, in which case it's
+     * skipped rather than rendering an image nothing will use.
+     */
+    private void prefetch(S slide, Dimension2D size) {
+        FutureTask<Image> task;
+        synchronized (images) {
+            CachedImage cached = images.get(slide);
+            if (cached != null && cached.size.equals(size)) {
+                return;
+            }
+            task = getTask(slide, size);
+        }
+        executor.execute(() -> {
+            synchronized (images) {
+                CachedImage cached = images.get(slide);
+                if (cached == null || cached.task != task) {
+                    return;
+                }
+            }
+            task.run();
+        });
+    }
+
+    private FutureTask<Image> getTask(S slide, Dimension2D size) {
+        synchronized (images) {
+            CachedImage cached = images.get(slide);
+            if (cached == null || !cached.size.equals(size)) {
+                cached = new CachedImage(size, new FutureTask<>(() -> renderer.render(slide, size)));
+                images.put(slide, cached);
+            }
+            return cached.task;
+        }
+    }
+
+    /**
+     * Create a pool of low priority daemon threads to render slides on.
+     * <p/>
+     * @param name the name of the threads.
+     * @param threads the number of threads.
+     * @return the pool.
+     */
+    public static ExecutorService newRenderPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+}
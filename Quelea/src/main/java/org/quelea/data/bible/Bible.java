@@ -29,6 +29,8 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -53,6 +55,7 @@ public final class Bible implements BibleInterface, Serializable {
     private BibleInfo information;
     private final List<BibleBook> books;
     private String filePath;
+    private transient String sourceKey;
 
     /**
      * Create a new bible.
@@ -75,6 +78,18 @@ public final class Bible implements BibleInterface, Serializable {
         this.filePath = filePath;
     }
 
+    /**
+     * @return the cache key of the file this bible was loaded from, used to
+     * tell whether the file has changed since.
+     */
+    String getSourceKey() {
+        return sourceKey;
+    }
+
+    void setSourceKey(String sourceKey) {
+        this.sourceKey = sourceKey;
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -223,6 +238,45 @@ public final class Bible implements BibleInterface, Serializable {
         return ret.toString();
     }
 
+    /**
+     * Write this bible in the compact binary form used by the bible cache.
+     * <p/>
+     * @param out the output to write to.
+     * @throws IOException if something went wrong writing.
+     */
+    void toBinary(DataOutput out) throws IOException {
+        BibleCache.writeString(out, name);
+        out.writeBoolean(information != null);
+        if (information != null) {
+            information.toBinary(out);
+        }
+        out.writeInt(books.size());
+        for (BibleBook book : books) {
+            book.toBinary(out);
+        }
+    }
+
+    /**
+     * Read a bible written by toBinary().
+     * <p/>
+     * @param in the input to read from.
+     * @return the bible.
+     * @throws IOException if something went wrong reading.
+     */
+    static Bible parseBinary(DataInput in) throws IOException {
+        Bible ret = new Bible(BibleCache.readString(in));
+        if (in.readBoolean()) {
+            ret.information = BibleInfo.parseBinary(in);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            BibleBook book = BibleBook.parseBinary(in);
+            book.setBible(ret);
+            ret.addBook(book);
+        }
+        return ret;
+    }
+
     /**
      * Get general information about this bible.
      * <p/>
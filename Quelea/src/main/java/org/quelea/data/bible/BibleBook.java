@@ -17,6 +17,9 @@
  */
 package org.quelea.data.bible;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -192,6 +195,43 @@ public final class BibleBook implements BibleInterface, Serializable {
         return ret;
     }
 
+    /**
+     * Write this book in the compact binary form used by the bible cache.
+     *
+     * @param out the output to write to.
+     * @throws IOException if something went wrong writing.
+     */
+    void toBinary(DataOutput out) throws IOException {
+        out.writeInt(bookNumber);
+        BibleCache.writeString(out, bookName);
+        BibleCache.writeString(out, bsname);
+        out.writeInt(chapters.size());
+        for (BibleChapter chapter : chapters) {
+            chapter.toBinary(out);
+        }
+    }
+
+    /**
+     * Read a book written by toBinary().
+     *
+     * @param in the input to read from.
+     * @return the book.
+     * @throws IOException if something went wrong reading.
+     */
+    static BibleBook parseBinary(DataInput in) throws IOException {
+        BibleBook ret = new BibleBook();
+        ret.bookNumber = in.readInt();
+        ret.bookName = BibleCache.readString(in);
+        ret.bsname = BibleCache.readString(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            BibleChapter chapter = BibleChapter.parseBinary(in);
+            chapter.setBook(ret);
+            ret.addChapter(chapter);
+        }
+        return ret;
+    }
+
     /**
      * Generate an XML representation of this book.
      *
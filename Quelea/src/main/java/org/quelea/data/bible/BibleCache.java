@@ -0,0 +1,179 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.bible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * A cache of parsed bibles in a compact binary form. Parsing a large XML
+ * bible means building a DOM of tens of megabytes, so each bible is parsed
+ * just once and written to the cache under a key made from a checksum of its
+ * source file. Later loads read the binary form straight back, and only
+ * parse the XML again if the source file changes.
+ * <p/>
+ * @author Michael
+ */
+final class BibleCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAGIC = 0x51424942;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".qbc";
+
+    /**
+     * Don't make me...
+     */
+    private BibleCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Load a bible, from the cache if it's there or by parsing the source
+     * file (and then caching the result) if not.
+     * <p/>
+     * @param source the XML bible file.
+     * @param key the cache key of the source file, from getKey().
+     * @return the bible, or null if it couldn't be loaded.
+     */
+    static Bible load(File source, String key) {
+        File cacheFile = new File(QueleaProperties.get().getBibleCacheDir(), key + EXTENSION);
+        if (cacheFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 1 << 16))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readUTF().equals(key)) {
+                    Bible bible = Bible.parseBinary(in);
+                    LOGGER.log(Level.INFO, "Loaded bible {0} from cache", bible.getName());
+                    return bible;
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't read cached bible " + cacheFile + ", parsing it again", ex);
+            }
+        }
+        Bible bible = Bible.parseBible(source);
+        if (bible != null) {
+            write(bible, key, cacheFile, source);
+        }
+        return bible;
+    }
+
+    /**
+     * Write the given bible to the cache, replacing any older versions of the
+     * same source file.
+     */
+    private static void write(Bible bible, String key, File cacheFile, File source) {
+        File dir = cacheFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            LOGGER.log(Level.WARNING, "Couldn't create bible cache directory {0}", dir);
+            return;
+        }
+        File[] stale = dir.listFiles((d, name) -> name.startsWith(getPrefix(source)) && name.endsWith(EXTENSION));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        try {
+            File temp = File.createTempFile(key, ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                bible.toBinary(out);
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.log(Level.INFO, "Cached bible {0}", bible.getName());
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't cache bible " + bible.getName(), ex);
+        }
+    }
+
+    /**
+     * Get the cache key of a source file - its name, length and checksum. The
+     * key changes whenever the content of the file does.
+     * <p/>
+     * @param source the XML bible file.
+     * @return the cache key.
+     * @throws IOException if the file couldn't be read.
+     */
+    static String getKey(File source) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(source)) {
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                crc.update(buf, 0, read);
+            }
+        }
+        return getPrefix(source) + Long.toHexString(source.length()) + "-" + Long.toHexString(crc.getValue());
+    }
+
+    private static String getPrefix(File source) {
+        return source.getName().replaceAll("[^\\w.-]", "_") + "-";
+    }
+
+    /**
+     * Write a string, which may be null, to the given output.
+     * <p/>
+     * @param out the output to write to.
+     * @param str the string to write.
+     * @throws IOException if something went wrong writing.
+     */
+    static void writeString(DataOutput out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString() from the given input.
+     * <p/>
+     * @param in the input to read from.
+     * @return the string, which may be null.
+     * @throws IOException if something went wrong reading.
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
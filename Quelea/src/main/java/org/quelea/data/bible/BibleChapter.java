@@ -17,6 +17,9 @@
  */
 package org.quelea.data.bible;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
@@ -24,6 +27,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.quelea.services.utils.Utils;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -35,12 +39,12 @@ import org.w3c.dom.NodeList;
  */
 public final class BibleChapter implements BibleInterface, Serializable {
 
-    private static int statId = 0;
+    private static final AtomicInteger statId = new AtomicInteger();
     private final int num;
     private final Map<Integer, BibleVerse> verses;
     private final List<String> captions;
     private transient SoftReference<String> softRefText;
-    private final int id = statId++;
+    private final int id = statId.getAndIncrement();
     private BibleBook book;
 
     /**
@@ -155,6 +159,46 @@ public final class BibleChapter implements BibleInterface, Serializable {
         return ret;
     }
 
+    /**
+     * Write this chapter in the compact binary form used by the bible cache.
+     * <p/>
+     * @param out the output to write to.
+     * @throws IOException if something went wrong writing.
+     */
+    void toBinary(DataOutput out) throws IOException {
+        out.writeInt(num);
+        out.writeInt(captions.size());
+        for (String caption : captions) {
+            BibleCache.writeString(out, caption);
+        }
+        out.writeInt(verses.size());
+        for (BibleVerse verse : verses.values()) {
+            verse.toBinary(out);
+        }
+    }
+
+    /**
+     * Read a chapter written by toBinary().
+     * <p/>
+     * @param in the input to read from.
+     * @return the chapter.
+     * @throws IOException if something went wrong reading.
+     */
+    static BibleChapter parseBinary(DataInput in) throws IOException {
+        BibleChapter ret = new BibleChapter(in.readInt());
+        int captionCount = in.readInt();
+        for (int i = 0; i < captionCount; i++) {
+            ret.addCaption(BibleCache.readString(in));
+        }
+        int verseCount = in.readInt();
+        for (int i = 0; i < verseCount; i++) {
+            BibleVerse verse = BibleVerse.parseBinary(in);
+            verse.setChapter(ret);
+            ret.addVerse(verse);
+        }
+        return ret;
+    }
+
     /**
      * Generate an XML representation of this chapter.
      * <p/>
@@ -17,6 +17,9 @@
  */
 package org.quelea.data.bible;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
@@ -113,6 +116,37 @@ public class BibleInfo implements Serializable {
         return ret;
     }
 
+    /**
+     * Write this bible info object in the compact binary form used by the
+     * bible cache.
+     *
+     * @param out the output to write to.
+     * @throws IOException if something went wrong writing.
+     */
+    void toBinary(DataOutput out) throws IOException {
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, String> attrib : attributes.entrySet()) {
+            BibleCache.writeString(out, attrib.getKey());
+            BibleCache.writeString(out, attrib.getValue());
+        }
+    }
+
+    /**
+     * Read a bible info object written by toBinary().
+     *
+     * @param in the input to read from.
+     * @return the bible info object.
+     * @throws IOException if something went wrong reading.
+     */
+    static BibleInfo parseBinary(DataInput in) throws IOException {
+        BibleInfo ret = new BibleInfo();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ret.putAttribute(BibleCache.readString(in), BibleCache.readString(in));
+        }
+        return ret;
+    }
+
     /**
      * Generate an XML representation of this bible info object.
      *
@@ -18,15 +18,28 @@
 package org.quelea.data.bible;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import javafx.application.Platform;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.lucene.BibleSearchIndex;
-import org.quelea.services.lucene.SearchIndex;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.Utils;
@@ -44,9 +57,11 @@ public final class BibleManager {
     private static final BibleManager INSTANCE = new BibleManager();
     private final List<Bible> bibles;
     private final List<BibleChangeListener> listeners;
-    private final SearchIndex<BibleChapter> index;
-    private boolean indexInit;
+    private final BibleSearchIndex index;
+    private volatile boolean indexInit;
     private final List<Runnable> onIndexInit;
+    private final Set<Bible> indexed;
+    private final ExecutorService indexExecutor;
 
     /**
      * Create a new bible manager.
@@ -57,6 +72,12 @@ public final class BibleManager {
         index = new BibleSearchIndex();
         indexInit = false;
         onIndexInit = new ArrayList<>();
+        indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+        indexExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Bible indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
         loadBibles(false);
     }
 
@@ -125,7 +146,7 @@ public final class BibleManager {
      * <p/>
      * @return the search index.
      */
-    public SearchIndex<BibleChapter> getIndex() {
+    public BibleSearchIndex getIndex() {
         return index;
     }
     
@@ -149,6 +170,9 @@ public final class BibleManager {
 
     /**
      * Reload all the bibles from the bibles directory into this bible manager.
+     * The bibles are loaded in parallel, each from the bible cache unless its
+     * file has changed since it was last parsed. Bibles whose files haven't
+     * changed since they were last loaded are kept as they are.
      * <p/>
      * @param updateIndex update the search index with new bible structure
      */
@@ -156,20 +180,43 @@ public final class BibleManager {
         if(updateIndex) {
             indexInit = false;
         }
-        bibles.clear();
         File biblesFile = QueleaProperties.get().getBibleDir();
         if(!biblesFile.exists()) {
             biblesFile.mkdir();
         }
-        for(File file : biblesFile.listFiles()) {
-            if(file.getName().toLowerCase().endsWith(".xml") || file.getName().toLowerCase().endsWith(".xmm")) {
-                final Bible bible = Bible.parseBible(file);
-                if(bible != null) {
-                    bible.setFilePath(file.getAbsolutePath());
-                    bibles.add(bible);
-                }
+        final Map<String, Bible> previous = new HashMap<>();
+        for(Bible bible : bibles) {
+            if(bible.getFilePath() != null) {
+                previous.put(bible.getFilePath(), bible);
             }
         }
+        File[] files = biblesFile.listFiles((dir, name) -> name.toLowerCase().endsWith(".xml") || name.toLowerCase().endsWith(".xmm"));
+        List<Bible> loaded = Arrays.stream(files == null ? new File[0] : files)
+                .parallel()
+                .map(file -> {
+                    String key;
+                    try {
+                        key = BibleCache.getKey(file);
+                    }
+                    catch(IOException ex) {
+                        LOGGER.log(Level.WARNING, "Couldn't read bible " + file, ex);
+                        return null;
+                    }
+                    Bible old = previous.get(file.getAbsolutePath());
+                    if(old != null && key.equals(old.getSourceKey())) {
+                        return old;
+                    }
+                    final Bible bible = BibleCache.load(file, key);
+                    if(bible != null) {
+                        bible.setFilePath(file.getAbsolutePath());
+                        bible.setSourceKey(key);
+                    }
+                    return bible;
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        bibles.clear();
+        bibles.addAll(loaded);
         if(updateIndex) {
             buildIndex();
         }
@@ -185,30 +232,50 @@ public final class BibleManager {
     }
 
     /**
-     * Builds the search index from the current bibles.
+     * Brings the search index up to date with the current bibles. Bibles that
+     * have gone are removed from the index and new or changed bibles are
+     * added, each translation on its own thread; bibles that are already
+     * indexed are left alone. The build can be cancelled from its status
+     * panel, in which case any partly added bibles are taken out again and
+     * will be added on the next build.
      */
     public void buildIndex() {
         indexInit = false;
+        final Bible[] current = getBibles();
+        final AtomicBoolean cancelled = new AtomicBoolean();
         final StatusPanel[] panel = new StatusPanel[1];
         if(QueleaApp.get().getMainWindow() != null) {
             Utils.fxRunAndWait(() -> {
                 panel[0] = QueleaApp.get().getStatusGroup().addPanel(LabelGrabber.INSTANCE.getLabel("building.bible.index"));
-                panel[0].removeCancelButton();
+                panel[0].getCancelButton().setOnAction(t -> {
+                    cancelled.set(true);
+                    panel[0].getCancelButton().setDisable(true);
+                });
                 panel[0].getProgressBar().setProgress(-1);
             });
         }
-        new Thread(() -> {
+        indexExecutor.submit(() -> {
             LOGGER.log(Level.INFO, "Adding bibles to index");
-            List<BibleChapter> chapters = new ArrayList<>(bibles.size() * 66);
-            for(Bible bible : bibles) {
-                LOGGER.log(Level.FINE, "Adding {0} bible to index", bible.getName());
-                index.clear();
-                for(BibleBook book : bible.getBooks()) {
-                    chapters.addAll(Arrays.asList(book.getChapters()));
+            Set<Bible> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+            keep.addAll(Arrays.asList(current));
+            for(Bible bible : new ArrayList<>(indexed)) {
+                if(!keep.contains(bible)) {
+                    LOGGER.log(Level.FINE, "Removing {0} bible from index", bible.getName());
+                    index.removeAll(getChapters(bible));
+                    indexed.remove(bible);
                 }
-                LOGGER.log(Level.FINE, "Added {0}.", bible.getName());
             }
-            index.addAll(chapters);
+            List<Bible> added = new ArrayList<>();
+            int total = 0;
+            for(Bible bible : current) {
+                if(!indexed.contains(bible)) {
+                    added.add(bible);
+                    total += bible.getBooks().length;
+                }
+            }
+            if(!added.isEmpty()) {
+                addToIndex(added, total, cancelled, panel[0]);
+            }
             LOGGER.log(Level.INFO, "Finished Adding bibles to index");
             indexInit = true;
             for(Runnable r : onIndexInit) {
@@ -221,6 +288,57 @@ public final class BibleManager {
                     panel[0].done();
                 }
             });
-        }).start();
+        });
+    }
+
+    /**
+     * Add the given bibles to the index in parallel, one translation per
+     * thread, then commit them all at once.
+     */
+    private void addToIndex(List<Bible> added, int totalBooks, AtomicBoolean cancelled, StatusPanel panel) {
+        final AtomicInteger booksDone = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(added.size(), Runtime.getRuntime().availableProcessors()));
+        Map<Bible, Future<Boolean>> futures = new HashMap<>();
+        for(Bible bible : added) {
+            futures.put(bible, pool.submit(() -> {
+                LOGGER.log(Level.FINE, "Adding {0} bible to index", bible.getName());
+                for(BibleBook book : bible.getBooks()) {
+                    if(!index.addChapters(Arrays.asList(book.getChapters()), cancelled::get)) {
+                        return false;
+                    }
+                    if(panel != null) {
+                        panel.setProgress((double) booksDone.incrementAndGet() / totalBooks);
+                    }
+                }
+                LOGGER.log(Level.FINE, "Added {0}.", bible.getName());
+                return true;
+            }));
+        }
+        pool.shutdown();
+        for(Map.Entry<Bible, Future<Boolean>> entry : futures.entrySet()) {
+            boolean complete;
+            try {
+                complete = entry.getValue().get();
+            }
+            catch(InterruptedException | ExecutionException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't add " + entry.getKey().getName() + " bible to index", ex);
+                complete = false;
+            }
+            if(complete) {
+                indexed.add(entry.getKey());
+            }
+            else {
+                index.removeAll(getChapters(entry.getKey()));
+            }
+        }
+        index.commit();
+    }
+
+    private static List<BibleChapter> getChapters(Bible bible) {
+        List<BibleChapter> chapters = new ArrayList<>();
+        for(BibleBook book : bible.getBooks()) {
+            chapters.addAll(Arrays.asList(book.getChapters()));
+        }
+        return chapters;
     }
 }
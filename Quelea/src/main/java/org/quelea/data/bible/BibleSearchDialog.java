@@ -17,6 +17,7 @@
  */
 package org.quelea.data.bible;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import javafx.application.Platform;
@@ -42,6 +43,7 @@ import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import org.quelea.data.displayable.BiblePassage;
 import org.quelea.services.languages.LabelGrabber;
+import org.quelea.services.lucene.BibleSearchResult;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.widgets.LoadingPane;
@@ -175,6 +177,7 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
             if (BibleManager.get().isIndexInit()) {
                 searchResults.reset();
                 overlay.show();
+                final String translation = bibles.getSelectionModel().getSelectedIndex() == 0 ? null : bibles.getSelectionModel().getSelectedItem();
                 ExecRunnable execRunnable = new ExecRunnable() {
                     private volatile boolean cancel = false;
 
@@ -186,18 +189,12 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
                         if (cancel) {
                             return;
                         }
-                        final BibleChapter[] results = BibleManager.get().getIndex().filter(text, null);
+                        final List<BibleSearchResult> results = BibleManager.get().getIndex().search(text, translation, false);
                         Platform.runLater(() -> {
                             searchResults.reset();
                             if (!text.trim().isEmpty()) {
-                                for (BibleChapter chapter : results) {
-                                    if (bibles.getSelectionModel().getSelectedIndex() == 0 || chapter.getBook().getBible().getName().equals(bibles.getSelectionModel().getSelectedItem())) {
-                                        for (BibleVerse verse : chapter.getVerses()) {
-                                            if (verse.getText().toLowerCase().contains(text.toLowerCase())) {
-                                                searchResults.add(verse);
-                                            }
-                                        }
-                                    }
+                                for (BibleSearchResult result : results) {
+                                    searchResults.add(result.getVerse());
                                 }
                             }
                             overlay.hide();
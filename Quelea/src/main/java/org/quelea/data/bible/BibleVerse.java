@@ -17,6 +17,9 @@
  */
 package org.quelea.data.bible;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Objects;
 import org.quelea.services.utils.Utils;
@@ -119,6 +122,31 @@ public final class BibleVerse implements BibleInterface, Serializable {
         }
     }
 
+    /**
+     * Write this verse in the compact binary form used by the bible cache.
+     *
+     * @param out the output to write to.
+     * @throws IOException if something went wrong writing.
+     */
+    void toBinary(DataOutput out) throws IOException {
+        out.writeInt(num);
+        BibleCache.writeString(out, verse);
+    }
+
+    /**
+     * Read a verse written by toBinary(). The chapter still needs to be set.
+     *
+     * @param in the input to read from.
+     * @return the verse.
+     * @throws IOException if something went wrong reading.
+     */
+    static BibleVerse parseBinary(DataInput in) throws IOException {
+        BibleVerse ret = new BibleVerse();
+        ret.num = in.readInt();
+        ret.verse = BibleCache.readString(in);
+        return ret;
+    }
+
     /**
      * Generate an XML representation of this verse.
      *
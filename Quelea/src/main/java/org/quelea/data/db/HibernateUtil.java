@@ -5,6 +5,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.service.ServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
@@ -30,6 +31,11 @@ public class HibernateUtil {
         void execute(Session session);
     }
 
+    public interface StatelessSessionCallback {
+
+        void execute(StatelessSession session);
+    }
+
     public static boolean init() {
         try {
             LOGGER.info("Initialising hibernate");
@@ -84,4 +90,29 @@ public class HibernateUtil {
             throw new IllegalStateException("Couldn't update database", ex);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Encapsulate read-only stateless session operations. Entities read in a
+     * stateless session aren't cached or tracked, so this is suited to
+     * streaming through large tables.
+     * <p/>
+     * @param callback
+     */
+    public static void executeStateless(StatelessSessionCallback callback) {
+        if (!init) {
+            throw new IllegalStateException("Database must be initialised first");
+        }
+
+        StatelessSession session = null;
+        try {
+            session = sessionFactory.openStatelessSession();
+            callback.execute(session);
+            session.close();
+        } catch (Exception ex) {
+            if (session != null) {
+                session.close();
+            }
+            throw new IllegalStateException("Couldn't read database", ex);
+        }
+    }
+}
@@ -3,8 +3,12 @@ package org.quelea.data.db;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.quelea.data.db.model.Song;
 
 /**
@@ -14,12 +18,47 @@ import org.quelea.data.db.model.Song;
  */
 public class SongDao {
 
+    /**
+     * The columns returned for each row by streamSongSummaries(), in order.
+     */
+    public static final String SUMMARY_COLUMNS = "s.id, s.title, s.author, s.lyrics, s.ccli, s.copyright, s.year, s.publisher, s.key, s.capo, s.info, s.sequence";
+    private static final int FETCH_SIZE = 500;
     private Session session = null;
 
     public SongDao(Session session) {
         this.session = session;
     }
 
+    /**
+     * Get the number of songs in the database.
+     *
+     * @param session the stateless session to use.
+     * @return the number of songs.
+     */
+    public static long countSongs(StatelessSession session) {
+        return (Long) session.createQuery("select count(s.id) from Song s").uniqueResult();
+    }
+
+    /**
+     * Stream through every song in the database, passing the columns listed
+     * in SUMMARY_COLUMNS to the given consumer one row at a time. Themes and
+     * translations aren't loaded, and no row is kept after it's been passed
+     * on, so memory use doesn't depend on the size of the database.
+     *
+     * @param session the stateless session to use.
+     * @param consumer the consumer to pass each row to.
+     */
+    public static void streamSongSummaries(StatelessSession session, Consumer<Object[]> consumer) {
+        try (ScrollableResults results = session.createQuery("select " + SUMMARY_COLUMNS + " from Song s")
+                .setFetchSize(FETCH_SIZE)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept(results.get());
+            }
+        }
+    }
+
     public Song getSongById(long id) {
         return (Song) session.load(Song.class, id);
     }
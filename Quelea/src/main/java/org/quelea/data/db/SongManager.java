@@ -17,9 +17,9 @@
  */
 package org.quelea.data.db;
 
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -31,6 +31,7 @@ import java.util.stream.Collectors;
 import javafx.application.Platform;
 import org.hibernate.ObjectNotFoundException;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.db.model.Song;
 import org.quelea.data.db.model.Theme;
@@ -39,6 +40,7 @@ import org.quelea.data.displayable.TextSection;
 import org.quelea.services.lucene.SongSearchIndex;
 import org.quelea.services.utils.DatabaseListener;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.main.widgets.LoadingPane;
 
 /**
@@ -53,7 +55,7 @@ public final class SongManager {
     private static volatile SongManager INSTANCE;
     private final SongSearchIndex index;
     private boolean indexIsClear;
-    private SoftReference<SongDisplayable[]> cacheSongs = new SoftReference<>(null);
+    private final SongStore store;
     private final Set<DatabaseListener> listeners;
 
     /**
@@ -63,6 +65,11 @@ public final class SongManager {
         listeners = new HashSet<>();
         indexIsClear = true;
         index = new SongSearchIndex();
+        store = new SongStore(QueleaProperties.get().getSongCacheSize());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            store.logStats();
+            index.close();
+        }));
     }
 
     /**
@@ -93,6 +100,16 @@ public final class SongManager {
         return index;
     }
 
+    /**
+     * Get the store holding the songs loaded from this database.
+     * <p/>
+     *
+     * @return the song store.
+     */
+    public SongStore getStore() {
+        return store;
+    }
+
     /**
      * Register a database listener with this database.
      * <p/>
@@ -123,52 +140,34 @@ public final class SongManager {
      * @return an array of all the songs in the database.
      */
     public synchronized SongDisplayable[] getSongs(LoadingPane loadingPane) {
-        if (cacheSongs.get() != null) {
-            return cacheSongs.get();
+        SongDisplayable[] stored = store.getAll();
+        if (stored != null) {
+            return stored;
         }
         final Set<SongDisplayable> songs = new TreeSet<>();
-        HibernateUtil.execute((Session session) -> {
-            List<Song> songsList = new SongDao(session).getSongs();
-            for (int si = 0; si < songsList.size(); si++) {
-                final int finalSi = si;
-                if (loadingPane != null) {
+        HibernateUtil.executeStateless((StatelessSession session) -> {
+            final long total = SongDao.countSongs(session);
+            final long progressStep = Math.max(1, total / 100);
+            final long[] count = new long[1];
+            SongDao.streamSongSummaries(session, (Object[] row) -> {
+                count[0]++;
+                if (loadingPane != null && count[0] % progressStep == 0) {
+                    final double progress = (double) count[0] / total;
                     Platform.runLater(() -> {
-                        loadingPane.setProgress((double) finalSi / songsList.size());
+                        loadingPane.setProgress(progress);
                     });
                 }
-                Song song = songsList.get(si);
                 try {
-                    song.getTitle();
+                    songs.add(toLazyDisplayable(row));
                 } catch (Exception ex) {
                     /*
                      * Sometimes (rarely) a song can become corrupt - not entirely
                      * sure why, but this allows us to load the database ok whilst
                      * still skipping over the corrupt entries.
                      */
-                    LOGGER.log(Level.WARNING, "Song with id " + song.getId() + " is corrupt, skipping...", ex);
-                    continue;
+                    LOGGER.log(Level.WARNING, "Song with id " + row[0] + " is corrupt, skipping...", ex);
                 }
-                final SongDisplayable songDisplayable = new SongDisplayable.Builder(song.getTitle(),
-                        song.getAuthor())
-                        .ccli(song.getCcli())
-                        .year(song.getYear())
-                        .publisher(song.getPublisher())
-                        .copyright(song.getCopyright())
-                        .key(song.getKey())
-                        .info(song.getInfo())
-                        .capo(song.getCapo())
-                        .translations(song.getTranslations())
-                        .sequence(song.getSequence())
-                        .lyrics(song.getLyrics())
-                        .id(song.getId()).get();
-                final Theme theme = song.getTheme();
-                final ThemeDTO themedto = ThemeDTO.getDTO(theme);
-                for (TextSection section : songDisplayable.getSections()) {
-                    section.setTheme(themedto);
-                }
-                songDisplayable.setTheme(themedto);
-                songs.add(songDisplayable);
-            }
+            });
             if (loadingPane != null) {
                 Platform.runLater(() -> {
                     loadingPane.setProgress(-1);
@@ -178,12 +177,90 @@ public final class SongManager {
 
         if (indexIsClear) {
             indexIsClear = false;
-            LOGGER.log(Level.INFO, "Adding {0} songs to index", songs.size());
-            index.addAll(songs);
+            LOGGER.log(Level.INFO, "Synchronising {0} songs with index", songs.size());
+            index.sync(songs);
+        }
+        store.load(songs);
+        return store.getAll();
+    }
+
+    /**
+     * Create a song displayable from the given database entity.
+     * <p/>
+     *
+     * @param song the song entity.
+     * @return the song displayable, with its theme applied to every section.
+     */
+    private static SongDisplayable toDisplayable(Song song) {
+        final SongDisplayable songDisplayable = new SongDisplayable.Builder(song.getTitle(),
+                song.getAuthor())
+                .ccli(song.getCcli())
+                .year(song.getYear())
+                .publisher(song.getPublisher())
+                .copyright(song.getCopyright())
+                .key(song.getKey())
+                .info(song.getInfo())
+                .capo(song.getCapo())
+                .translations(song.getTranslations())
+                .sequence(song.getSequence())
+                .lyrics(song.getLyrics())
+                .id(song.getId()).get();
+        final Theme theme = song.getTheme();
+        final ThemeDTO themedto = ThemeDTO.getDTO(theme);
+        for (TextSection section : songDisplayable.getSections()) {
+            section.setTheme(themedto);
+        }
+        songDisplayable.setTheme(themedto);
+        return songDisplayable;
+    }
+
+    /**
+     * Create a song displayable from a row streamed by
+     * SongDao.streamSongSummaries(). Only the summary fields are set; the
+     * lyrics are parsed and the theme and translations loaded the first time
+     * they're needed.
+     * <p/>
+     *
+     * @param row the row of song columns.
+     * @return the lazily loaded song displayable.
+     */
+    private static SongDisplayable toLazyDisplayable(Object[] row) {
+        return new SongDisplayable.Builder((String) row[1], (String) row[2])
+                .ccli((String) row[4])
+                .copyright((String) row[5])
+                .year((String) row[6])
+                .publisher((String) row[7])
+                .key((String) row[8])
+                .capo((String) row[9])
+                .info((String) row[10])
+                .sequence((String) row[11])
+                .lazyLyrics((String) row[3])
+                .id((Long) row[0]).get();
+    }
+
+    /**
+     * Load the theme and translations of a song that was loaded lazily. This
+     * is called by the song itself the first time they're needed. If they
+     * can't be loaded, the song is left with the default theme and no
+     * translations.
+     * <p/>
+     *
+     * @param song the song to load the details of.
+     */
+    public void loadDetails(final SongDisplayable song) {
+        try {
+            HibernateUtil.execute((Session session) -> {
+                Song dbSong = session.get(Song.class, song.getID());
+                if (dbSong != null) {
+                    song.setTheme(ThemeDTO.getDTO(dbSong.getTheme()));
+                    if (dbSong.getTranslations() != null) {
+                        song.setTranslations(dbSong.getTranslations());
+                    }
+                }
+            });
+        } catch (IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't load details of song " + song.getID(), ex);
         }
-        SongDisplayable[] songArr = songs.toArray(new SongDisplayable[songs.size()]);
-        cacheSongs = new SoftReference<>(songArr);
-        return songArr;
     }
 
     public boolean addSong(final SongDisplayable song, final boolean fireUpdate) {
@@ -204,8 +281,6 @@ public final class SongManager {
      * @return true if the operation succeeded, false otherwise.
      */
     public synchronized boolean addSong(final SongDisplayable[] songs, final boolean fireUpdate) {
-        cacheSongs.clear();
-        clearIndex();
         final List<SongDisplayable> adjustedSongs = new ArrayList<>();
         for (SongDisplayable song : songs) {
             if (song.getSectionsWithoutSequence().length > 0) {
@@ -215,6 +290,7 @@ public final class SongManager {
         if (adjustedSongs.isEmpty()) {
             return false;
         }
+        final List<SongDisplayable> addedSongs = new ArrayList<>(adjustedSongs.size());
         try {
             HibernateUtil.execute((Session session) -> {
                 for (SongDisplayable song : adjustedSongs) {
@@ -233,12 +309,18 @@ public final class SongManager {
                             song.getTranslations(),
                             song.getSequence());
                     session.save(newSong);
+                    addedSongs.add(toDisplayable(newSong));
                 }
             });
         } catch (IllegalStateException ex) {
             LOGGER.log(Level.WARNING, "Couldn't add song", ex);
+            addedSongs.clear();
+        }
+        if (addedSongs.isEmpty()) {
+            return false;
         }
-        getSongs();
+        store.update(addedSongs, Collections.emptySet());
+        index.addAll(addedSongs);
         if (fireUpdate) {
             fireUpdate();
         }
@@ -266,7 +348,7 @@ public final class SongManager {
      * @return true if the operation succeeded, false otherwise.
      */
     public synchronized boolean updateSong(final SongDisplayable song, boolean addIfNotFound) {
-        index.remove(song);
+        final boolean[] updated = new boolean[1];
         try {
             HibernateUtil.execute((Session session) -> {
                 Song updatedSong;
@@ -287,7 +369,7 @@ public final class SongManager {
                     updatedSong.setTranslations(song.getTranslations());
                     updatedSong.setTheme(nullTheme ? ThemeDTO.DEFAULT_THEME.getTheme() : new Theme(song.getSections()[0].getTheme().getTheme()));
                     session.update(updatedSong);
-                    index.add(song);
+                    updated[0] = true;
                 } catch (ObjectNotFoundException e) {
                     LOGGER.log(Level.INFO, "Updating song that doesn't exist, adding instead");
                     addSong(song, true);
@@ -305,7 +387,10 @@ public final class SongManager {
                 return false;
             }
         }
-
+        if (updated[0]) {
+            store.update(List.of(song), Collections.emptySet());
+            index.update(song);
+        }
         return true;
     }
 
@@ -330,7 +415,6 @@ public final class SongManager {
     public synchronized boolean removeSongs(final List<SongDisplayable> songs) {
         List<Long> ids = songs.stream().map(SongDisplayable::getID).collect(Collectors.toList());
         LOGGER.log(Level.INFO, "Removing songs {0}", ids);
-        cacheSongs.clear();
         try {
             HibernateUtil.execute((Session session) -> {
                 for (SongDisplayable song : songs) {
@@ -342,6 +426,7 @@ public final class SongManager {
             LOGGER.log(Level.WARNING, "Couldn't remove songs " + ids, ex);
             return false;
         }
+        store.update(Collections.emptyList(), new HashSet<>(ids));
         for (SongDisplayable song : songs) {
             index.remove(song);
         }
@@ -349,9 +434,4 @@ public final class SongManager {
         LOGGER.log(Level.INFO, "Removed song {0}", ids);
         return true;
     }
-
-    private void clearIndex() {
-        index.clear();
-        indexIsClear = true;
-    }
 }
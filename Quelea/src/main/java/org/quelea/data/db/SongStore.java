@@ -0,0 +1,229 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * The in-memory store of the songs in the database. Every song is kept here
+ * as a lightweight summary once the database has been loaded, so the song
+ * list never has to be read back from the database in one go. The parsed
+ * lyrics of a song are the expensive part, so only the most recently used
+ * songs are kept parsed - once more than the configured number have been
+ * parsed, the least recently used is dropped back to its raw lyrics.
+ * <p/>
+ * The store keeps counters of its hits, misses, reloads and evictions so its
+ * behaviour can be checked in the logs.
+ *
+ * @author Michael
+ */
+public class SongStore {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private final Map<Long, SongDisplayable> songs = new HashMap<>();
+    private final LinkedHashMap<Long, SongDisplayable> hydrated;
+    private final int capacity;
+    private SongDisplayable[] sorted;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new, empty song store.
+     *
+     * @param capacity the maximum number of songs to keep with their lyrics
+     * parsed.
+     */
+    public SongStore(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.hydrated = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Determine whether the songs have been loaded into this store.
+     *
+     * @return true if they have, false if they need loading from the database.
+     */
+    public synchronized boolean isLoaded() {
+        return sorted != null;
+    }
+
+    /**
+     * Replace the contents of this store with the given songs, freshly loaded
+     * from the database.
+     *
+     * @param loaded the songs in the database.
+     */
+    public synchronized void load(Collection<SongDisplayable> loaded) {
+        if (sorted != null) {
+            reloads.incrementAndGet();
+        }
+        songs.clear();
+        hydrated.clear();
+        for (SongDisplayable song : loaded) {
+            songs.put(song.getID(), song);
+        }
+        resort();
+    }
+
+    /**
+     * Get all the songs in this store in their natural order.
+     *
+     * @return the songs, or null if the store hasn't been loaded.
+     */
+    public synchronized SongDisplayable[] getAll() {
+        if (sorted == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return sorted;
+    }
+
+    /**
+     * Get a song from this store by its ID.
+     *
+     * @param id the ID of the song.
+     * @return the song, or null if it isn't in the store.
+     */
+    public synchronized SongDisplayable get(long id) {
+        SongDisplayable song = songs.get(id);
+        if (song == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return song;
+    }
+
+    /**
+     * Apply a change to the songs in this store. If the store hasn't been
+     * loaded there's nothing to do, since the songs will be read fresh from
+     * the database when they're next needed.
+     *
+     * @param added the songs that have been added or updated.
+     * @param removedIds the IDs of the songs that have been removed.
+     */
+    public synchronized void update(Collection<SongDisplayable> added, Set<Long> removedIds) {
+        if (sorted == null) {
+            return;
+        }
+        for (Long id : removedIds) {
+            songs.remove(id);
+            hydrated.remove(id);
+        }
+        for (SongDisplayable song : added) {
+            songs.put(song.getID(), song);
+            hydrated.remove(song.getID());
+        }
+        resort();
+    }
+
+    /**
+     * Mark a song as having had its lyrics parsed. If that takes the number
+     * of parsed songs over the capacity of the store, the least recently used
+     * songs have their parsed lyrics dropped.
+     *
+     * @param song the song that has been parsed.
+     */
+    public void hydrated(SongDisplayable song) {
+        List<SongDisplayable> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (songs.get(song.getID()) != song) {
+                return;
+            }
+            hydrated.put(song.getID(), song);
+            Iterator<SongDisplayable> it = hydrated.values().iterator();
+            while (hydrated.size() > capacity && it.hasNext()) {
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+        for (SongDisplayable eldest : evicted) {
+            if (eldest.dehydrate()) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Get the number of times songs were found in this store.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of times songs weren't found in this store.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of times this store has been reloaded from the database
+     * after its first load.
+     *
+     * @return the number of reloads.
+     */
+    public long getReloads() {
+        return reloads.get();
+    }
+
+    /**
+     * Get the number of songs that have had their parsed lyrics dropped to
+     * keep within the capacity of this store.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Log the counters of this store.
+     */
+    public void logStats() {
+        LOGGER.log(Level.INFO, "Song store: {0} hits, {1} misses, {2} reloads, {3} evictions",
+                new Object[]{getHits(), getMisses(), getReloads(), getEvictions()});
+    }
+
+    private void resort() {
+        SongDisplayable[] arr = songs.values().toArray(new SongDisplayable[songs.size()]);
+        Arrays.sort(arr);
+        sorted = arr;
+    }
+}
@@ -172,6 +172,7 @@ public class ImageGroupDisplayable implements Displayable {
      */
     @Override
     public void dispose() {
+        presentation.dispose();
     }
 
     /**
@@ -138,6 +138,7 @@ public class PdfDisplayable implements Displayable {
      */
     @Override
     public void dispose() {
+        presentation.dispose();
     }
 
     /**
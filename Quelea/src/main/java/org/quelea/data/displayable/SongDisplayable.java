@@ -97,6 +97,11 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
     private String lastSearch = "";
     private String sequence = "";
     private Map<Dimension, Double> fontSizeCache;
+    private transient volatile boolean lazy;
+    private transient boolean hydrating;
+    private transient boolean detailsPending;
+    private transient String unparsedLyrics;
+    private transient int users;
 
     /**
      * The builder responsible for building this song.
@@ -197,6 +202,22 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             return this;
         }
 
+        /**
+         * Set the lyrics of this song without parsing them, and defer loading
+         * the theme and translations from the database until they're first
+         * needed. The song must have its database id set.
+         * <p/>
+         *
+         * @param lyrics the song's lyrics, as stored in the database.
+         * @return this builder.
+         */
+        public Builder lazyLyrics(String lyrics) {
+            song.unparsedLyrics = lyrics == null ? "" : lyrics;
+            song.detailsPending = true;
+            song.lazy = true;
+            return this;
+        }
+
         /**
          * Set the copyright info of this song..
          * <p/>
@@ -292,6 +313,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param song the song to copy to create the new song.
      */
     public SongDisplayable(SongDisplayable song) {
+        song.hydrate();
         this.fontSizeCache = new HashMap<>();
         this.title = song.title;
         this.author = song.author;
@@ -347,6 +369,125 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
         sequence = "";
     }
 
+    /**
+     * Parse the lyrics and load the theme and translations of a song that was
+     * loaded lazily from the database. Does nothing if the song is already
+     * fully loaded.
+     */
+    private void hydrate() {
+        if (!lazy) {
+            return;
+        }
+        boolean parsed;
+        synchronized (this) {
+            parsed = parse();
+        }
+        //The store may drop other songs in turn, so it's never told while this song's lock is held
+        if (parsed && !Thread.holdsLock(this) && SongManager.get() != null) {
+            SongManager.get().getStore().hydrated(this);
+        }
+    }
+
+    /**
+     * Parse the lyrics of this song if they've been dropped. This must be
+     * called while holding the lock on this song, which is the lock
+     * dehydrate() takes, so anything that reads or changes the sections
+     * should do so in the same synchronized block as this call.
+     *
+     * @return true if the lyrics were parsed, false if they already were.
+     */
+    private boolean parse() {
+        if (!lazy || hydrating) {
+            return false;
+        }
+        hydrating = true;
+        try {
+            if (detailsPending && SongManager.get() != null) {
+                SongManager.get().loadDetails(this);
+            }
+            detailsPending = false;
+            parseLyrics(unparsedLyrics);
+            for (TextSection section : sectionsWithoutSequence) {
+                section.setTheme(theme);
+            }
+            unparsedLyrics = null;
+            lazy = false;
+        } finally {
+            hydrating = false;
+        }
+        return true;
+    }
+
+    /**
+     * Keep the sections of this song parsed while it's in use, so they're
+     * not dropped from under the schedule or one of the panels. Each call
+     * should be matched by a call to release().
+     */
+    public synchronized void retain() {
+        users++;
+    }
+
+    /**
+     * Let the sections of this song be dropped again once nothing else is
+     * using it.
+     */
+    public synchronized void release() {
+        if (users > 0) {
+            users--;
+        }
+    }
+
+    /**
+     * Drop the parsed sections of this song to save memory, keeping just the
+     * raw lyrics so they can be parsed again the next time they're needed.
+     * Songs that aren't in the database, that are still in use, or whose
+     * sections have been given their own themes, are left alone.
+     *
+     * @return true if the sections were dropped, false otherwise.
+     */
+    public boolean dehydrate() {
+        synchronized (this) {
+            if (lazy || users > 0 || id <= 0 || quickInsert || !updateInDB) {
+                return false;
+            }
+            for (TextSection section : sectionsWithoutSequence) {
+                if (section.getTheme() != theme) {
+                    return false;
+                }
+            }
+            unparsedLyrics = getLyrics(true, true, false);
+            sectionsInSequence = new ArrayList<>();
+            sectionsWithoutSequence = new ArrayList<>();
+            fontSizeCache.clear();
+            lazy = true;
+            return true;
+        }
+    }
+
+    /**
+     * Determine whether this song has been fully loaded, or is still waiting
+     * for its sections, theme and translations to be loaded on demand.
+     *
+     * @return true if the song is fully loaded, false otherwise.
+     */
+    public boolean isHydrated() {
+        return !lazy;
+    }
+
+    /**
+     * Get the lyrics of this song in the form they're stored in the database,
+     * without parsing them if they haven't been parsed yet.
+     *
+     * @return the raw lyrics of this song.
+     */
+    public String getRawLyrics() {
+        String lyrics = unparsedLyrics;
+        if (lazy && lyrics != null) {
+            return lyrics;
+        }
+        return getLyrics(true, true, false);
+    }
+
     @Override
     public Double getCachedUniformFontSize(Dimension dimension) {
         return fontSizeCache.get(dimension);
@@ -401,11 +542,15 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * and section.
      */
     public String getCurrentTranslationSection(int index) {
+        hydrate();
         String val = getCurrentTranslationLyrics();
         if (val == null) {
             return null;
         }
-        index = sectionsWithoutSequence.indexOf(sectionsInSequence.get(index));
+        synchronized (this) {
+            parse();
+            index = sectionsWithoutSequence.indexOf(sectionsInSequence.get(index));
+        }
         String[] parts = val.split("\n\n");
         if (parts.length > index) {
             return parts[index].trim();
@@ -432,6 +577,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * translation is selected.
      */
     public String getCurrentTranslationLyrics() {
+        hydrate();
         if (translations == null) {
             return null;
         }
@@ -476,7 +622,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return true if it contains chords, false otherwise.
      */
     public boolean hasChords() {
-        String[] lyrics = getLyrics(true, true, false).split("\n");
+        String[] lyrics = getRawLyrics().split("\n");
         for (String line : lyrics) {
             if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS) {
                 return true;
@@ -527,6 +673,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
     }
 
     public void setTranslations(HashMap<String, String> translations) {
+        hydrate();
         fontSizeCache.clear();
         this.translations = translations;
     }
@@ -600,6 +747,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return assigned theme
      */
     public ThemeDTO getTheme() {
+        hydrate();
         return this.theme;
     }
 
@@ -746,14 +894,18 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
     }
 
     private void refreshLyrics() {
-        fontSizeCache.clear();
-        ThemeDTO theme = ThemeDTO.DEFAULT_THEME;
-        for (TextSection section : sectionsInSequence) {
-            theme = section.getTheme();
-        }
-        setLyrics(getLyrics(true, true, false));
-        for (TextSection section : sectionsInSequence) {
-            section.setTheme(theme);
+        hydrate();
+        synchronized (this) {
+            parse();
+            fontSizeCache.clear();
+            ThemeDTO theme = ThemeDTO.DEFAULT_THEME;
+            for (TextSection section : sectionsInSequence) {
+                theme = section.getTheme();
+            }
+            setLyrics(getLyrics(true, true, false));
+            for (TextSection section : sectionsInSequence) {
+                section.setTheme(theme);
+            }
         }
     }
 
@@ -768,25 +920,31 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return the lyrics to this song.
      */
     public String getLyrics(boolean chords, boolean comments, boolean inSequence) {
+        hydrate();
         StringBuilder ret = new StringBuilder();
-        for (TextSection section : inSequence ? sectionsInSequence : sectionsWithoutSequence) {
-            if (section.getTitle() != null && !section.getTitle().equals("")) {
-                ret.append(section.getTitle()).append("\n");
-            }
-            for (String line : section.getText(chords, comments)) {
-                ret.append(line).append("\n");
+        synchronized (this) {
+            parse();
+            for (TextSection section : inSequence ? sectionsInSequence : sectionsWithoutSequence) {
+                if (section.getTitle() != null && !section.getTitle().equals("")) {
+                    ret.append(section.getTitle()).append("\n");
+                }
+                for (String line : section.getText(chords, comments)) {
+                    ret.append(line).append("\n");
+                }
+                ret.append("\n");
             }
-            ret.append("\n");
         }
         return ret.toString().replaceAll("\\s+$", "").replace(" ", "<>");
     }
 
     public void addTranslation(String translationName, String translationText) {
+        hydrate();
         fontSizeCache.clear();
         translations.put(translationName, translationText.trim());
     }
 
     public HashMap<String, String> getTranslations() {
+        hydrate();
         return translations;
     }
 
@@ -799,6 +957,14 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param lyrics the lyrics to set as this song's lyrics.
      */
     public void setLyrics(String lyrics) {
+        hydrate();
+        synchronized (this) {
+            parse();
+            parseLyrics(lyrics);
+        }
+    }
+
+    private void parseLyrics(String lyrics) {
         sectionsWithoutSequence.clear();
         sectionsInSequence.clear();
         fontSizeCache.clear();
@@ -887,11 +1053,15 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param section the section to add.
      */
     public void addSection(TextSection section) {
-        fontSizeCache.clear();
-        if (section.getTheme() == null) {
-            section.setTheme(theme);
+        hydrate();
+        synchronized (this) {
+            parse();
+            fontSizeCache.clear();
+            if (section.getTheme() == null) {
+                section.setTheme(theme);
+            }
+            sectionsWithoutSequence.add(section);
         }
-        sectionsWithoutSequence.add(section);
     }
 
     /**
@@ -902,12 +1072,16 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param section the section to add.
      */
     public void addSection(int index, TextSection section) {
-        sectionsInSequence.clear();
-        fontSizeCache.clear();
-        if (section.getTheme() == null) {
-            section.setTheme(theme);
+        hydrate();
+        synchronized (this) {
+            parse();
+            sectionsInSequence.clear();
+            fontSizeCache.clear();
+            if (section.getTheme() == null) {
+                section.setTheme(theme);
+            }
+            sectionsWithoutSequence.add(index, section);
         }
-        sectionsWithoutSequence.add(index, section);
     }
 
     /**
@@ -932,9 +1106,13 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param index      the index of the section to replace.
      */
     public void replaceSection(TextSection newSection, int index) {
-        sectionsInSequence.clear();
-        sectionsWithoutSequence.set(index, newSection);
-        fontSizeCache.clear();
+        hydrate();
+        synchronized (this) {
+            parse();
+            sectionsInSequence.clear();
+            sectionsWithoutSequence.set(index, newSection);
+            fontSizeCache.clear();
+        }
     }
 
     /**
@@ -944,9 +1122,13 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param index the index of the text section to remove.
      */
     public void removeSection(int index) {
-        sectionsInSequence.clear();
-        sectionsWithoutSequence.remove(index);
-        fontSizeCache.clear();
+        hydrate();
+        synchronized (this) {
+            parse();
+            sectionsInSequence.clear();
+            sectionsWithoutSequence.remove(index);
+            fontSizeCache.clear();
+        }
     }
 
     /**
@@ -957,10 +1139,14 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     @Override
     public TextSection[] getSections() {
-        if (sectionsInSequence.isEmpty()) {
-            setSectionsInSequence(sectionsWithoutSequence);
+        hydrate();
+        synchronized (this) {
+            parse();
+            if (sectionsInSequence.isEmpty()) {
+                setSectionsInSequence(sectionsWithoutSequence);
+            }
+            return sectionsInSequence.toArray(new TextSection[sectionsInSequence.size()]);
         }
-        return sectionsInSequence.toArray(new TextSection[sectionsInSequence.size()]);
     }
 
     /**
@@ -970,7 +1156,11 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return the song sections.
      */
     public TextSection[] getSectionsWithoutSequence() {
-        return sectionsWithoutSequence.toArray(new TextSection[sectionsWithoutSequence.size()]);
+        hydrate();
+        synchronized (this) {
+            parse();
+            return sectionsWithoutSequence.toArray(new TextSection[sectionsWithoutSequence.size()]);
+        }
     }
 
     /**
@@ -1007,6 +1197,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     @Override
     public String getXML() {
+        hydrate();
         StringBuilder xml = new StringBuilder();
         xml.append("<song>");
         xml.append("<updateInDB>");
@@ -1043,7 +1234,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
         xml.append(Utils.escapeXML(sequence));
         xml.append("</sequence>");
         xml.append("<lyrics>");
-        for (TextSection section : sectionsWithoutSequence) {
+        for (TextSection section : getSectionsWithoutSequence()) {
             xml.append(section.getXML());
         }
         xml.append("</lyrics>");
@@ -1088,6 +1279,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return the XML used to print the song.
      */
     public String getPrintXML(boolean includeTranslations) {
+        hydrate();
         StringBuilder xml = new StringBuilder();
         Map<String, String> lyricsMap = new TreeMap<>((String o1, String o2) -> { //Ensure "Default" translation is first
             if (o1.equals("Default")) {
@@ -1099,7 +1291,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             return o1.compareTo(o2);
         });
         StringBuilder mainLyrics = new StringBuilder();
-        for (TextSection section : sectionsInSequence) {
+        for (TextSection section : getSections()) {
             mainLyrics.append(section.getTitle()).append("\n");
             for (String line : section.getText(printChords, false)) {
                 mainLyrics.append(Utils.escapeXML(line)).append("\n");
@@ -1299,14 +1491,15 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
         int hash = 7;
         hash = 29 * hash + (this.title != null ? this.title.hashCode() : 0);
         hash = 29 * hash + (this.author != null ? this.author.hashCode() : 0);
-        hash = 29 * hash + (this.sectionsWithoutSequence != null ? this.sectionsWithoutSequence.hashCode() : 0);
-        hash = 29 * hash + (this.theme != null ? this.theme.hashCode() : 0);
+        hash = 29 * hash + (this.id > 0 ? Long.hashCode(this.id) : getRawLyrics().hashCode());
         hash = hash + count;
         return hash;
     }
 
     /**
-     * Determine whether this song equals another object.
+     * Determine whether this song equals another object. Songs from the
+     * database are told apart by their id, and other songs by their lyrics,
+     * so neither needs its lyrics parsed.
      * <p/>
      *
      * @param obj the other object.
@@ -1320,6 +1513,9 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
         if (!(obj instanceof SongDisplayable)) {
             return false;
         }
+        if (this == obj) {
+            return true;
+        }
         final SongDisplayable other = (SongDisplayable) obj;
         if ((this.title == null) ? (other.title != null) : !this.title.equals(other.title)) {
             return false;
@@ -1327,13 +1523,10 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
         if ((this.author == null) ? (other.author != null) : !this.author.equals(other.author)) {
             return false;
         }
-        if (this.sectionsWithoutSequence != other.sectionsWithoutSequence && (this.sectionsWithoutSequence == null || !this.sectionsWithoutSequence.equals(other.sectionsWithoutSequence))) {
-            return false;
+        if (this.id > 0 || other.id > 0) {
+            return this.id == other.id;
         }
-        if (this.theme != other.theme && (this.theme == null || !this.theme.equals(other.theme))) {
-            return false;
-        }
-        return true;
+        return getRawLyrics().equals(other.getRawLyrics());
     }
 
     /**
@@ -1352,8 +1545,8 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             if (getAuthor() != null && other.getAuthor() != null) {
                 result = collator.compare(getAuthor(), other.getAuthor());
             }
-            if (result == 0 && getLyrics(false, false, false) != null && other.getLyrics(false, false, false) != null) {
-                result = collator.compare(getLyrics(false, false, false), other.getLyrics(false, false, false));
+            if (result == 0) {
+                result = collator.compare(getRawLyrics(), other.getRawLyrics());
             }
         }
         return result;
@@ -1388,7 +1581,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
         }
         StackPane stackPane = new StackPane();
         stackPane.getChildren().add(iv);
-        if (!getTranslations().isEmpty()) {
+        if (!detailsPending && translations != null && !translations.isEmpty()) {
             stackPane.getChildren().add(getTranslationPart());
             stackPane.setAlignment(Pos.BOTTOM_LEFT);
         }
@@ -1430,8 +1623,12 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * Remove any duplicate sections in this song.
      */
     public void removeDuplicateSections() {
-        Utils.removeDuplicateWithOrder(sectionsWithoutSequence);
-        fontSizeCache.clear();
+        hydrate();
+        synchronized (this) {
+            parse();
+            Utils.removeDuplicateWithOrder(sectionsWithoutSequence);
+            fontSizeCache.clear();
+        }
     }
 
     /**
@@ -1454,6 +1651,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
     }
 
     public void setTheme(ThemeDTO theme) {
+        hydrate();
         fontSizeCache.clear();
         this.theme = theme;
     }
@@ -36,5 +36,17 @@ public interface ImageGroup {
      * in order.
      */
     ImageGroupSlide[] getSlides();
-    
+
+    /**
+     * Let go of any images held for this image group.
+     */
+    void dispose();
+
+    /**
+     * Let go of any images held for a panel that's no longer showing this
+     * image group.
+     * @param viewer the panel.
+     */
+    void release(Object viewer);
+
 }
@@ -19,17 +19,36 @@ package org.quelea.data.imagegroup;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import javafx.geometry.Dimension2D;
+import javafx.scene.image.Image;
+import org.quelea.services.utils.Utils;
 
 /**
  * An image group that can be displayed.
+ * <p/>
+ * Photos are often far larger than the projector, so each image is decoded
+ * at the size of the projector, in the background. Each panel showing the
+ * group has its own window of decoded slides, the one it's showing and the
+ * slides either side of it; images that fall outside every panel's window
+ * are let go, so moving through the preview never drops what's live.
  *
  * @author Arvid, based on PresentationDisplayable
  */
 public class ImageGroupPresentation implements ImageGroup {
 
+    /**
+     * How many slides either side of the one being shown are kept decoded.
+     */
+    private static final int PREFETCH_SLIDES = 2;
     private ImageGroupSlide[] slides;
     public File[] files;
+    private final Map<Integer, Image> images = new TreeMap<>();
+    private final Map<Object, Integer> windows = new HashMap<>();
+    private Dimension2D imageSize;
 
     /**
      * Create a presentation from a file.
@@ -63,18 +82,96 @@ public class ImageGroupPresentation implements ImageGroup {
     }
 
     /**
-     * Make the slides that go in this image group, this is what takes time and
-     * should only be done once.
+     * Let go of all the decoded images.
+     */
+    @Override
+    public synchronized void dispose() {
+        windows.clear();
+        clearImages();
+    }
+
+    /**
+     * Let go of a panel's window of decoded slides, once it's no longer
+     * showing this image group.
+     *
+     * @param viewer the panel.
+     */
+    @Override
+    public synchronized void release(Object viewer) {
+        if (windows.remove(viewer) != null) {
+            evict();
+        }
+    }
+
+    /**
+     * Get the image of a slide, moving the given panel's window of decoded
+     * slides to be around it. Slides that come into the window start loading
+     * in the background and those that are no longer in any window are let
+     * go.
+     *
+     * @param viewer the panel showing the slide.
+     * @param index the index of the slide.
+     * @return the image of the slide, which may still be loading.
+     */
+    synchronized Image getImage(Object viewer, int index) {
+        Dimension2D size = Utils.getProjectorSize();
+        if (!size.equals(imageSize)) {
+            clearImages();
+            imageSize = size;
+        }
+        windows.put(viewer, index);
+        evict();
+        Image image = images.computeIfAbsent(index, i -> slides[i].createImage(size));
+        for (int i = 1; i <= PREFETCH_SLIDES; i++) {
+            for (int next : new int[]{index + i, index - i}) {
+                if (next >= 0 && next < slides.length) {
+                    images.computeIfAbsent(next, n -> slides[n].createImage(size));
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Let go of the images that aren't in any panel's window.
+     */
+    private void evict() {
+        for (Iterator<Map.Entry<Integer, Image>> it = images.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Integer, Image> entry = it.next();
+            if (!inWindow(entry.getKey())) {
+                entry.getValue().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private boolean inWindow(int index) {
+        for (int centre : windows.values()) {
+            if (Math.abs(centre - index) <= PREFETCH_SLIDES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clearImages() {
+        for (Image image : images.values()) {
+            image.cancel();
+        }
+        images.clear();
+    }
+
+    /**
+     * Make the slides that go in this image group. The images themselves are
+     * loaded when they're needed.
      *
      * @return all the slides.
      */
     private ImageGroupSlide[] makeSlides() throws IOException {
-        ArrayList<ImageGroupSlide> ret = new ArrayList<>();
-        int i = 0;
-        for (File f : files) {
-            ret.add(new ImageGroupSlide(i + 1, f));
-            i++;
+        ImageGroupSlide[] ret = new ImageGroupSlide[files.length];
+        for (int i = 0; i < files.length; i++) {
+            ret[i] = new ImageGroupSlide(this, i, files[i]);
         }
-        return ret.toArray(new ImageGroupSlide[ret.size()]);
+        return ret;
     }
 }
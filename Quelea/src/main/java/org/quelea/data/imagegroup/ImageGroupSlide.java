@@ -19,34 +19,78 @@ package org.quelea.data.imagegroup;
 
 import java.io.File;
 import java.io.IOException;
+import javafx.geometry.Dimension2D;
 import javafx.scene.image.Image;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
- * A slide in an image group.
+ * A slide in an image group. Its image is decoded at the size of the
+ * projector rather than at full resolution, and only while the slide is near
+ * the one being shown - see ImageGroupPresentation.
  *
  * @author Arvid, based on PresentationSlide
  */
 public class ImageGroupSlide {
 
-    private final Image image;
-
+    private final ImageGroupPresentation presentation;
+    private final int index;
+    private final String url;
+    private final Image thumbnail;
 
     /**
      * Create a new image group slide.
      *
-     * @param numSlide slide number
-     * @param image the name of the file
+     * @param presentation the image group the slide is in.
+     * @param index the index of the slide in the group.
+     * @param image the image file.
      */
-    public ImageGroupSlide(int numSlide, File image) throws IOException {
-        this.image = new Image(image.toURI().toURL().toString());
+    ImageGroupSlide(ImageGroupPresentation presentation, int index, File image) throws IOException {
+        this.presentation = presentation;
+        this.index = index;
+        this.url = image.toURI().toURL().toString();
+        int thumbnailSize = QueleaProperties.get().getThumbnailSize();
+        thumbnail = new Image(url, thumbnailSize, thumbnailSize, true, true, true);
     }
 
     /**
-     * Get the image from this slide.
+     * Get the image from this slide. The image may still be loading in the
+     * background when it's returned.
      *
+     * @param viewer the panel showing the slide, whose window of decoded
+     * slides moves to be around this one.
      * @return the image of this slide.
      */
-    public final Image getImage() {
-        return image;
+    public final Image getImage(Object viewer) {
+        return presentation.getImage(viewer, index);
+    }
+
+    /**
+     * Get the thumbnail of this slide.
+     *
+     * @return the thumbnail of this slide.
+     */
+    public final Image getThumbnail() {
+        return thumbnail;
+    }
+
+    /**
+     * Decode the image of this slide on this thread, without caching it or
+     * moving the group's window of loaded slides.
+     *
+     * @param size the size to fit the image to, in pixels.
+     * @return the loaded image.
+     */
+    public final Image loadImage(Dimension2D size) {
+        return new Image(url, size.getWidth(), size.getHeight(), true, true);
+    }
+
+    /**
+     * Start loading the image of this slide in the background.
+     *
+     * @param size the size to fit the image to, in pixels.
+     * @return the image, which may still be loading.
+     */
+    Image createImage(Dimension2D size) {
+        return new Image(url, size.getWidth(), size.getHeight(), true, true, true);
     }
 }
@@ -17,22 +17,54 @@
  */
 package org.quelea.data.pdf;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.scene.image.Image;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import org.quelea.data.RenderedSlideCache;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.Utils;
 
 /**
  * A PDF presentation that can be displayed.
+ * <p/>
+ * Pages are rendered when they're needed rather than all up front. Loading a
+ * PDF just reads its page sizes; the thumbnails are then rendered in the
+ * background, several pages at a time, and a page is only rendered at full
+ * size (the size of the projector) when it's shown, along with the pages
+ * either side of it so moving through the slides doesn't wait on the
+ * renderer. Full size pages are kept in a cache of the most recently used
+ * ones across all PDFs.
  *
  * @author Arvid
  */
 public class PDFPresentation implements Pdf {
 
-    private PdfSlide[] slides;
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAX_CACHED_IMAGES = 12;
+    private static final RenderedSlideCache<PdfSlide> IMAGES = new RenderedSlideCache<>("PDF page renderer",
+            MAX_CACHED_IMAGES, 2, PdfSlide::renderImage);
+    private static final ExecutorService THUMBNAIL_EXECUTOR = RenderedSlideCache.newRenderPool("PDF thumbnail renderer",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+
+    private final PdfSlide[] slides;
+    private final Queue<PDDocument> documents = new ConcurrentLinkedQueue<>();
+    private final List<Future<?>> thumbnailTasks = new ArrayList<>();
+    private volatile boolean disposed;
     public String file;
 
     /**
@@ -43,6 +75,18 @@ public class PDFPresentation implements Pdf {
     public PDFPresentation(String file) throws IOException {
         this.file = file;
         slides = makeSlides();
+        for (PdfSlide slide : slides) {
+            thumbnailTasks.add(THUMBNAIL_EXECUTOR.submit(() -> {
+                if (disposed) {
+                    return;
+                }
+                try {
+                    slide.renderThumbnail();
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Couldn't render thumbnail for page " + (slide.getIndex() + 1) + " of " + file, ex);
+                }
+            }));
+        }
     }
 
     /**
@@ -67,23 +111,105 @@ public class PDFPresentation implements Pdf {
     }
 
     /**
-     * Make the slides that go in this PDF, this is what takes time and should
-     * only be done once.
+     * Stop rendering this PDF and let go of its pages and open documents.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (Future<?> task : thumbnailTasks) {
+            task.cancel(false);
+        }
+        IMAGES.remove(slides);
+        PDDocument document;
+        while ((document = documents.poll()) != null) {
+            close(document);
+        }
+    }
+
+    /**
+     * Make the slides that go in this PDF. This just reads the size of each
+     * page, the rendering is done later.
      *
      * @return all the slides.
      */
     private PdfSlide[] makeSlides() throws IOException {
-        File pdf = new File(file);
-        PDDocument document = PDDocument.load(pdf.getAbsoluteFile());
-        Path f = Files.createTempDirectory(null);
-        f.toFile().deleteOnExit();
-        ArrayList<PdfSlide> ret = new ArrayList<>();
-        PDFRenderer pdfRenderer = new PDFRenderer(document);
-        int totalPages = document.getNumberOfPages();
-        for (int i = 0; i < totalPages; i++) {
-            ret.add(new PdfSlide(i + 1, pdfRenderer));
+        PDDocument document = PDDocument.load(new File(file).getAbsoluteFile());
+        try {
+            int totalPages = document.getNumberOfPages();
+            PdfSlide[] ret = new PdfSlide[totalPages];
+            for (int i = 0; i < totalPages; i++) {
+                PDPage page = document.getPage(i);
+                PDRectangle box = page.getCropBox();
+                if (page.getRotation() % 180 == 0) {
+                    ret[i] = new PdfSlide(this, i, box.getWidth(), box.getHeight());
+                } else {
+                    ret[i] = new PdfSlide(this, i, box.getHeight(), box.getWidth());
+                }
+            }
+            documents.offer(document);
+            return ret;
+        } catch (IOException | RuntimeException ex) {
+            close(document);
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the full size image of a slide, rendering it on this thread if it
+     * isn't cached or being rendered already, and start rendering the slides
+     * around it.
+     *
+     * @param slide the slide.
+     * @return the image of the slide, or its thumbnail if it couldn't be
+     * rendered.
+     */
+    Image getImage(PdfSlide slide) {
+        if (disposed) {
+            return slide.getThumbnail();
+        }
+        try {
+            return IMAGES.get(slides, slide.getIndex(), Utils.getProjectorSize());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't render page " + (slide.getIndex() + 1) + " of " + file, ex);
+        }
+        return slide.getThumbnail();
+    }
+
+    /**
+     * Render a page of this PDF. PDFBox can't render a document on more than
+     * one thread at once, so each thread rendering takes a document that isn't
+     * in use, opening another copy if they're all busy.
+     *
+     * @param index the index of the page.
+     * @param scale the scale to render at, 1 being 72 DPI.
+     * @return the rendered page.
+     */
+    BufferedImage render(int index, float scale) throws IOException {
+        PDDocument document = documents.poll();
+        if (document == null) {
+            document = PDDocument.load(new File(file).getAbsoluteFile());
+        }
+        try {
+            return new PDFRenderer(document).renderImage(index, scale, ImageType.RGB);
+        } finally {
+            if (disposed) {
+                close(document);
+            } else {
+                documents.offer(document);
+                if (disposed && documents.remove(document)) {
+                    close(document);
+                }
+            }
+        }
+    }
+
+    private void close(PDDocument document) {
+        try {
+            document.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close " + file, ex);
         }
-        document.close();
-        return ret.toArray(new PdfSlide[ret.size()]);
     }
 }
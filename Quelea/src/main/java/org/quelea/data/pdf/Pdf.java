@@ -36,5 +36,10 @@ public interface Pdf {
      * in order.
      */
     PdfSlide[] getSlides();
-    
+
+    /**
+     * Let go of any resources held for rendering this PDF.
+     */
+    void dispose();
+
 }
@@ -20,57 +20,66 @@ package org.quelea.data.pdf;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Dimension2D;
 import javafx.scene.image.Image;
-import javax.imageio.ImageIO;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import javafx.scene.image.WritableImage;
 import org.quelea.services.utils.QueleaProperties;
 
 /**
- * A slide in a PDF presentation.
+ * A slide in a PDF presentation. The slide's thumbnail starts off blank and
+ * is filled in once it's been rendered in the background; the full size image
+ * is rendered when it's asked for.
  *
  * @author Arvid
  */
 public class PdfSlide {
 
-    private BufferedImage thumbnail;
-    private BufferedImage originalImage;
-    private final File outputfile;
-    private final File thumbnailFile;
-    private final int BIG_SIZE = 1920;
+    private final PDFPresentation presentation;
+    private final int index;
+    private final double width;
+    private final double height;
+    private final float thumbnailScale;
+    private final WritableImage thumbnail;
 
     /**
      * Create a new PDF slide.
      *
-     * @param numSlide slide number
-     * @param pdfRenderer the renderer of the file
+     * @param presentation the presentation the slide is in.
+     * @param index the index of the page in the PDF.
+     * @param width the width of the page in points.
+     * @param height the height of the page in points.
      */
-    public PdfSlide(int numSlide, PDFRenderer pdfRenderer) throws IOException {
-        originalImage = resizeImage(pdfRenderer.renderImageWithDPI(numSlide - 1, 200, ImageType.RGB), BIG_SIZE, BIG_SIZE);
-        outputfile = File.createTempFile("slide" + numSlide, ".png");
-        outputfile.deleteOnExit();
-        ImageIO.write(originalImage, "png", outputfile);
-
-        thumbnail = resizeImage(originalImage, QueleaProperties.get().getThumbnailSize(), QueleaProperties.get().getThumbnailSize());
-        thumbnailFile = File.createTempFile("thumb" + numSlide, ".png");
-        thumbnailFile.deleteOnExit();
-        ImageIO.write(thumbnail, "png", thumbnailFile);
-        
-        originalImage.flush();
-        originalImage = null;
-        thumbnail.flush();
-        thumbnail = null;
+    PdfSlide(PDFPresentation presentation, int index, double width, double height) {
+        this.presentation = presentation;
+        this.index = index;
+        this.width = width;
+        this.height = height;
+        thumbnailScale = (float) (QueleaProperties.get().getThumbnailSize() / Math.max(width, height));
+        thumbnail = new WritableImage(scaledSize(width, thumbnailScale), scaledSize(height, thumbnailScale));
     }
 
     /**
-     * Get the image from this slide.
+     * Get the image from this slide, rendered to fit the projector.
      *
      * @return the image of this slide.
      */
     public final Image getImage() {
-        return new Image("file:" + outputfile.getAbsolutePath());
+        return presentation.getImage(this);
+    }
+
+    /**
+     * Render the image of this slide on this thread, without caching it or
+     * prefetching the slides around it.
+     *
+     * @param size the size to fit the image to, in pixels.
+     * @return the rendered image.
+     * @throws IOException if the page couldn't be rendered.
+     */
+    public final Image loadImage(Dimension2D size) throws IOException {
+        return renderImage(size);
     }
 
     /**
@@ -79,29 +88,53 @@ public class PdfSlide {
      * @return the image of this slide.
      */
     public final Image getThumbnail() {
-        return new Image("file:" + thumbnailFile.getAbsolutePath());
+        return thumbnail;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Render the thumbnail of this slide and fill it in on the FX thread.
+     */
+    void renderThumbnail() throws IOException {
+        BufferedImage image = presentation.render(index, thumbnailScale);
+        int thumbWidth = (int) thumbnail.getWidth();
+        int thumbHeight = (int) thumbnail.getHeight();
+        BufferedImage thumb = image.getWidth() == thumbWidth && image.getHeight() == thumbHeight
+                ? image : resizeImage(image, thumbWidth, thumbHeight);
+        Platform.runLater(() -> SwingFXUtils.toFXImage(thumb, thumbnail));
     }
 
     /**
-     * Scale image to a smaller size of this slide.
+     * Render the full size image of this slide, as large as it'll fit in the
+     * given size.
      *
-     * @param originalImage source image to scale
-     * @param width desired width
-     * @param height desired height
-     * @return the resixed image
+     * @param size the size to fit the image to, in pixels.
+     * @return the rendered image.
      */
-    private BufferedImage resizeImage(BufferedImage originalImage, int width, int height) {
-        int finalw = width;
-        int finalh = height;
-        double factor;
-        if (originalImage.getWidth() > originalImage.getHeight()) {
-            factor = ((double) originalImage.getHeight() / (double) originalImage.getWidth());
-            finalh = (int) (finalw * factor);
-        } else {
-            factor = ((double) originalImage.getWidth() / (double) originalImage.getHeight());
-            finalw = (int) (finalh * factor);
-        }
+    Image renderImage(Dimension2D size) throws IOException {
+        float scale = (float) Math.min(size.getWidth() / width, size.getHeight() / height);
+        return SwingFXUtils.toFXImage(presentation.render(index, scale), null);
+    }
 
+    /**
+     * Get the size in pixels PDFBox renders a length in points to at a scale.
+     */
+    private static int scaledSize(double points, float scale) {
+        return (int) Math.max(Math.floor(points * scale), 1);
+    }
+
+    /**
+     * Scale an image to exactly the given size.
+     *
+     * @param originalImage source image to scale
+     * @param finalw desired width
+     * @param finalh desired height
+     * @return the resized image
+     */
+    private static BufferedImage resizeImage(BufferedImage originalImage, int finalw, int finalh) {
         BufferedImage scaledImage = new BufferedImage(finalw, finalh, BufferedImage.TYPE_INT_RGB);
         Graphics2D g2 = scaledImage.createGraphics();
         g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
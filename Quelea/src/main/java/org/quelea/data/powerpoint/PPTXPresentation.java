@@ -17,71 +17,29 @@
  */
 package org.quelea.data.powerpoint;
 
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
-import org.apache.poi.xslf.usermodel.XSLFSlide;
 
 /**
  * A presentation that uses the newer PPTX file format.
  *
  * @author Michael
  */
-public class PPTXPresentation implements Presentation {
-
-    private XMLSlideShow slideshow;
-    private PresentationSlide[] slides;
+public class PPTXPresentation extends SlideShowPresentation {
 
     /**
-     * Create a new XML presentation.
+     * Create a presentation from a file.
      *
      * @param file the file containing the presentation.
      */
     public PPTXPresentation(String file) throws IOException {
-        try(FileInputStream fis = new FileInputStream(file)) {
-            slideshow = new XMLSlideShow(fis);
-            slides = makeSlides();
-        }
+        super(load(file));
     }
 
-    /**
-     * Get the presentation slide at the given index in the presentation.
-     *
-     * @param index the index of the slide.
-     * @return the slide at the given index.
-     */
-    @Override
-    public PresentationSlide getSlide(int index) {
-        return slides[index];
-    }
-
-    /**
-     * Get all the slides in the presentation.
-     *
-     * @return all the slides.
-     */
-    @Override
-    public PresentationSlide[] getSlides() {
-        return slides;
-    }
-
-    /**
-     * Make the slides that go in this presentation, this is what takes time and
-     * should only be done once.
-     *
-     * @return all the slides.
-     */
-    private PresentationSlide[] makeSlides() {
-        List<XSLFSlide> lSlides = slideshow.getSlides();
-        ArrayList<PresentationSlide> ret = new ArrayList<>();
-        for (int i = 0; i < lSlides.size(); i++) {
-            if (lSlides.get(i) != null) {
-                ret.add(new PresentationSlide(lSlides.get(i), i + 1));
-            }
+    private static XMLSlideShow load(String file) throws IOException {
+        try(FileInputStream fis = new FileInputStream(file)) {
+            return new XMLSlideShow(fis);
         }
-        return ret.toArray(new PresentationSlide[ret.size()]);
     }
 }
@@ -36,5 +36,10 @@ public interface Presentation {
      * in order.
      */
     PresentationSlide[] getSlides();
-    
+
+    /**
+     * Let go of any resources held for rendering this presentation.
+     */
+    void dispose();
+
 }
@@ -24,14 +24,17 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Dimension2D;
 import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
 import org.apache.poi.sl.usermodel.Slide;
-import org.apache.poi.sl.usermodel.SlideShow;
-import org.apache.poi.xslf.usermodel.XSLFSlide;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
@@ -44,76 +47,195 @@ import org.quelea.services.utils.QueleaProperties;
 public class PresentationSlide {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
-    private WritableImage image;
-    private static final int WIDTH = 1920;
-    private static final int HEIGHT = 1080;
-    private static double scaleWidth = 0;
-    private static double scaleHeight = 0;
+    private final SlideShowPresentation presentation;
+    private final Slide<?, ?> slide;
+    private final int index;
+    private final int numSlide;
+    private final WritableImage thumbnail;
+    private File spill;
+    private Dimension2D spillSize;
 
     /**
-     * Create a new presentation slide.
+     * Create a new presentation slide. The slide isn't drawn until its
+     * thumbnail or image is rendered.
      *
+     * @param presentation the presentation the slide is in.
      * @param slide the underlying apache POI slide.
+     * @param index the index of the slide in the presentation.
+     * @param numSlide the number of the slide in the file.
      */
-    public PresentationSlide(Slide slide, int numSlide) {
-        SlideShow slideshow = slide.getSlideShow();
-        if (Math.abs(slideshow.getPageSize().getHeight() - HEIGHT) > 0.1) {
-            int adjustHeight = HEIGHT;
-            int adjustWidth = (int) ((adjustHeight / slideshow.getPageSize().getHeight()) * slideshow.getPageSize().getWidth());
-            scaleWidth = (double) adjustWidth / slideshow.getPageSize().getWidth();
-            scaleHeight = (double) adjustHeight / slideshow.getPageSize().getHeight();
-            slideshow.setPageSize(new Dimension(adjustWidth, adjustHeight));
+    PresentationSlide(SlideShowPresentation presentation, Slide<?, ?> slide, int index, int numSlide) {
+        this.presentation = presentation;
+        this.slide = slide;
+        this.index = index;
+        this.numSlide = numSlide;
+        Dimension pageSize = presentation.getPageSize();
+        double scale = QueleaProperties.get().getThumbnailSize() / Math.max(pageSize.getWidth(), pageSize.getHeight());
+        thumbnail = new WritableImage(scaledSize(pageSize.getWidth(), scale), scaledSize(pageSize.getHeight(), scale));
+    }
+
+    /**
+     * Get the image from this slide, rendered to fit the projector.
+     *
+     * @return the image of this slide.
+     */
+    public final Image getImage() {
+        return presentation.getImage(this);
+    }
+
+    /**
+     * Get the thumbnail of this slide. It's blank until it's been rendered in
+     * the background.
+     *
+     * @return the thumbnail of this slide.
+     */
+    public final Image getThumbnail() {
+        return thumbnail;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getNumber() {
+        return numSlide;
+    }
+
+    /**
+     * Render the thumbnail of this slide and fill it in on the FX thread.
+     */
+    void renderThumbnail() {
+        BufferedImage image = render((int) thumbnail.getWidth(), (int) thumbnail.getHeight());
+        Platform.runLater(() -> SwingFXUtils.toFXImage(image, thumbnail));
+    }
+
+    /**
+     * Get the full size image of this slide, as large as it'll fit in the
+     * given size. If the slide's been rendered at this size before it's read
+     * back from disk, otherwise it's drawn and a compressed copy written to
+     * disk in the background.
+     *
+     * @param size the size to fit the image to, in pixels.
+     * @return the image.
+     */
+    Image renderImage(Dimension2D size) {
+        File file = null;
+        synchronized (this) {
+            if (size.equals(spillSize)) {
+                file = spill;
+            }
         }
-        BufferedImage originalImage = new BufferedImage((int) slideshow.getPageSize().getWidth(), (int) slideshow.getPageSize().getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = originalImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        try {
-            g2.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
-            slide.draw(g2);
-        } catch (Exception ex) {
-            if (QueleaProperties.get().getUsePP()) {
-                LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
-                draw(g2, originalImage.getWidth(), originalImage.getHeight(), numSlide);
-            } else {
-                throw ex;
+        if (file != null) {
+            Image image = new Image(file.toURI().toString());
+            if (!image.isError()) {
+                return image;
             }
         }
-        image = new WritableImage(originalImage.getWidth(), originalImage.getHeight());
-        SwingFXUtils.toFXImage(originalImage, image);
-        originalImage.flush();
-        originalImage = null;
+        BufferedImage rendered = render(size);
+        Image image = SwingFXUtils.toFXImage(rendered, null);
+        presentation.execute(() -> spill(rendered, size));
+        return image;
     }
 
     /**
-     * Create a new presentation slide.
+     * Draw the image of this slide on this thread, without caching it or
+     * prefetching the slides around it.
      *
-     * @param slide the underlying apache POI slide.
+     * @param size the size to fit the image to, in pixels.
+     * @return the drawn image.
+     */
+    public final Image loadImage(Dimension2D size) {
+        return SwingFXUtils.toFXImage(render(size), null);
+    }
+
+    /**
+     * Delete the copy of this slide on disk, if there is one. This is done
+     * when the presentation is disposed.
      */
-    public PresentationSlide(XSLFSlide slide, int numSlide) {
-        org.apache.poi.xslf.usermodel.XMLSlideShow slideshow = slide.getSlideShow();
-        if (Math.abs(slideshow.getPageSize().getHeight() - HEIGHT) > 0.1) {
-            int adjustHeight = HEIGHT;
-            int adjustWidth = (int) ((adjustHeight / slideshow.getPageSize().getHeight()) * slideshow.getPageSize().getWidth());
-            scaleWidth = (double) adjustWidth / slideshow.getPageSize().getWidth();
-            scaleHeight = (double) adjustHeight / slideshow.getPageSize().getHeight();
-            slideshow.setPageSize(new Dimension(adjustWidth, adjustHeight));
+    synchronized void deleteSpill() {
+        if (spill != null) {
+            spill.delete();
+            spill = null;
+            spillSize = null;
+        }
+    }
+
+    /**
+     * Write a full size render of this slide to disk as a PNG. Each render is
+     * written to a new file, which then replaces the slide's previous one, so
+     * a file is never changed while it might be being read back.
+     */
+    private void spill(BufferedImage image, Dimension2D size) {
+        synchronized (this) {
+            if (presentation.isDisposed() || size.equals(spillSize)) {
+                return;
+            }
         }
-        BufferedImage originalImage = new BufferedImage((int) slideshow.getPageSize().getWidth(), (int) slideshow.getPageSize().getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = originalImage.createGraphics();
+        File file = null;
+        try {
+            file = File.createTempFile("slide" + numSlide, ".png");
+            file.deleteOnExit();
+            ImageIO.write(image, "png", file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't write slide " + numSlide + " to disk", ex);
+            if (file != null) {
+                file.delete();
+            }
+            return;
+        }
+        File old;
+        synchronized (this) {
+            if (presentation.isDisposed()) {
+                file.delete();
+                return;
+            }
+            old = spill;
+            spill = file;
+            spillSize = size;
+        }
+        if (old != null) {
+            old.delete();
+        }
+    }
+
+    /**
+     * Draw this slide as large as it'll fit in the given size.
+     */
+    private BufferedImage render(Dimension2D size) {
+        Dimension pageSize = presentation.getPageSize();
+        double scale = Math.min(size.getWidth() / pageSize.getWidth(), size.getHeight() / pageSize.getHeight());
+        return render(scaledSize(pageSize.getWidth(), scale), scaledSize(pageSize.getHeight(), scale));
+    }
+
+    /**
+     * Draw this slide to an image of the given size.
+     */
+    private BufferedImage render(int width, int height) {
+        Dimension pageSize = presentation.getPageSize();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         try {
-            g2.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
-            slide.draw(g2);
-        } catch (NullPointerException ex) {
+            synchronized (presentation.getDrawLock()) {
+                g2.setTransform(AffineTransform.getScaleInstance(width / pageSize.getWidth(), height / pageSize.getHeight()));
+                slide.draw(g2);
+            }
+        } catch (RuntimeException ex) {
             if (QueleaProperties.get().getUsePP()) {
                 LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
-                draw(g2, originalImage.getWidth(), originalImage.getHeight(), numSlide);
+                g2.setTransform(new AffineTransform());
+                draw(g2, width, height, numSlide);
             } else {
                 throw ex;
             }
+        } finally {
+            g2.dispose();
         }
-        image = new WritableImage(originalImage.getWidth(), originalImage.getHeight());
-        SwingFXUtils.toFXImage(originalImage, image);
+        return image;
+    }
+
+    private static int scaledSize(double points, double scale) {
+        return (int) Math.max(Math.round(points * scale), 1);
     }
 
     private void draw(Graphics2D graphics, int width, int height, int num) {
@@ -122,18 +244,9 @@ public class PresentationSlide {
         graphics.fillRect(0, 0, width, height);
         graphics.setFont(new Font("Calibri", Font.PLAIN, 1000));
         graphics.setColor(new Color(250, 250, 250));
-        while (graphics.getFontMetrics().stringWidth(slideText) > width - 1000) {
+        while (graphics.getFontMetrics().stringWidth(slideText) > width / 2 && graphics.getFont().getSize() > 2) {
             graphics.setFont(new Font("Calibri", Font.PLAIN, graphics.getFont().getSize() - 2));
         }
         graphics.drawString(slideText, 10, height / 2 - graphics.getFontMetrics().getHeight() / 4);
     }
-
-    /**
-     * Get the image from this slide.
-     *
-     * @return the image of this slide.
-     */
-    public final Image getImage() {
-        return image;
-    }
 }
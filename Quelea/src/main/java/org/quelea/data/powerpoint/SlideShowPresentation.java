@@ -0,0 +1,189 @@
+/* 
+ * This file is part of Quelea, free projection software for churches.
+ * 
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.powerpoint;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.scene.image.Image;
+import org.apache.poi.sl.usermodel.Slide;
+import org.apache.poi.sl.usermodel.SlideShow;
+import org.quelea.data.RenderedSlideCache;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.Utils;
+
+/**
+ * A presentation read by Apache POI, with its slides rendered when they're
+ * needed rather than all up front.
+ * <p/>
+ * Loading a presentation just creates its slides. Their thumbnails are then
+ * rendered in the background, and a slide is only rendered at full size (the
+ * size of the projector) when it's shown, along with the slides either side
+ * of it. Only the most recently used full size slides, across all
+ * presentations, are kept on the heap; each slide also keeps a compressed
+ * copy of its last full size render on disk, which is quicker to load again
+ * than drawing the slide.
+ * <p/>
+ * @author Michael
+ */
+abstract class SlideShowPresentation implements Presentation {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAX_CACHED_IMAGES = 8;
+    private static final RenderedSlideCache<PresentationSlide> IMAGES = new RenderedSlideCache<>("Presentation slide renderer",
+            MAX_CACHED_IMAGES, 2, PresentationSlide::renderImage);
+    private static final ExecutorService THUMBNAIL_EXECUTOR = RenderedSlideCache.newRenderPool("Presentation thumbnail renderer",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+    private static final ExecutorService SPILL_EXECUTOR = RenderedSlideCache.newRenderPool("Presentation slide spiller", 1);
+
+    private final SlideShow<?, ?> slideshow;
+    private final PresentationSlide[] slides;
+    private final List<Future<?>> thumbnailTasks = new ArrayList<>();
+    private volatile boolean disposed;
+
+    /**
+     * Create the slides for a slideshow and start rendering their
+     * thumbnails.
+     *
+     * @param slideshow the slideshow.
+     */
+    SlideShowPresentation(SlideShow<?, ?> slideshow) {
+        this.slideshow = slideshow;
+        List<? extends Slide<?, ?>> lSlides = slideshow.getSlides();
+        List<PresentationSlide> ret = new ArrayList<>();
+        for (int i = 0; i < lSlides.size(); i++) {
+            if (lSlides.get(i) != null) {
+                ret.add(new PresentationSlide(this, lSlides.get(i), ret.size(), i + 1));
+            }
+        }
+        slides = ret.toArray(new PresentationSlide[ret.size()]);
+        for (PresentationSlide slide : slides) {
+            thumbnailTasks.add(THUMBNAIL_EXECUTOR.submit(() -> {
+                if (disposed) {
+                    return;
+                }
+                try {
+                    slide.renderThumbnail();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Couldn't render thumbnail for slide " + slide.getNumber(), ex);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Get the presentation slide at the given index in the presentation.
+     *
+     * @param index the index of the slide.
+     * @return the slide at the given index.
+     */
+    @Override
+    public PresentationSlide getSlide(int index) {
+        return slides[index];
+    }
+
+    /**
+     * Get all the slides in the presentation.
+     *
+     * @return all the slides.
+     */
+    @Override
+    public PresentationSlide[] getSlides() {
+        return slides;
+    }
+
+    /**
+     * Stop rendering this presentation and let go of its rendered slides.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (Future<?> task : thumbnailTasks) {
+            task.cancel(false);
+        }
+        IMAGES.remove(slides);
+        for (PresentationSlide slide : slides) {
+            slide.deleteSpill();
+        }
+    }
+
+    /**
+     * Get the size of the slides in this presentation, in points.
+     *
+     * @return the page size.
+     */
+    Dimension getPageSize() {
+        synchronized (slideshow) {
+            return slideshow.getPageSize();
+        }
+    }
+
+    /**
+     * Get the lock that must be held while drawing a slide. POI's slideshows
+     * aren't safe to use from more than one thread at once, so only one slide
+     * of a presentation is drawn at a time - the rest of the work, converting
+     * and compressing the rendered slides, is done in parallel.
+     *
+     * @return the lock.
+     */
+    Object getDrawLock() {
+        return slideshow;
+    }
+
+    boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * Run a job that writes full size slides to disk. This has its own low
+     * priority thread so the writes don't hold up slides being rendered ahead.
+     *
+     * @param job the job.
+     */
+    void execute(Runnable job) {
+        SPILL_EXECUTOR.execute(job);
+    }
+
+    /**
+     * Get the full size image of a slide, rendering it on this thread if it
+     * isn't cached or being rendered already, and start rendering the slides
+     * around it.
+     *
+     * @param slide the slide.
+     * @return the image of the slide, or its thumbnail if it couldn't be
+     * rendered.
+     */
+    Image getImage(PresentationSlide slide) {
+        if (disposed) {
+            return slide.getThumbnail();
+        }
+        try {
+            return IMAGES.get(slides, slide.getIndex(), Utils.getProjectorSize());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't render slide " + slide.getNumber(), ex);
+        }
+        return slide.getThumbnail();
+    }
+}
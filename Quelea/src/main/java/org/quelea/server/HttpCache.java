@@ -0,0 +1,78 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+
+/**
+ * Conditional request support for the servers. A handler tags its response
+ * with an ETag, and if the client already holds that version it gets a bodyless
+ * 304 instead of the whole response again.
+ * <p/>
+ * @author Michael
+ */
+final class HttpCache {
+
+    /**
+     * Don't make me...
+     */
+    private HttpCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Tag the response with the given ETag and, if the client already has that
+     * version, send a 304 and close the exchange. The response is marked so
+     * clients revalidate it every time rather than using it unchecked.
+     * <p/>
+     * @param exchange the exchange to respond to.
+     * @param etag the quoted ETag of the current version.
+     * @return true if a 304 was sent and the handler should stop, false if it
+     * should send the full response.
+     * @throws IOException if the 304 couldn't be sent.
+     */
+    static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Determine if an If-None-Match header matches the given ETag, using the
+     * weak comparison the header calls for.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
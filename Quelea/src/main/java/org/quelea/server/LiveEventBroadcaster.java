@@ -0,0 +1,246 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * Pushes live events out to any number of clients as a server-sent event
+ * stream. Each event is rendered to bytes once and the same bytes written to
+ * every subscriber, so the cost of an update doesn't depend on how many
+ * phones are listening. The latest value of each event is kept and sent to
+ * new subscribers straight away.
+ * <p>
+ * Each subscriber has its own queue of events and its own thread writing
+ * them out, so a client on a bad connection only holds up itself, and the
+ * caller (usually the FX thread) never waits on a write. A client that falls
+ * more than a few events behind is dropped and its connection closed.
+ * <p>
+ * @author Michael
+ */
+class LiveEventBroadcaster {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final byte[] KEEP_ALIVE = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    /**
+     * How many events can be waiting to be written to a subscriber before
+     * it's dropped.
+     */
+    private static final int MAX_PENDING = 32;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Map<String, byte[]> latest = new LinkedHashMap<>();
+    private final ExecutorService writers;
+    private final ScheduledExecutorService keepAlive;
+
+    /**
+     * A client's event stream, and the events waiting to be written to it.
+     */
+    private class Subscriber implements Runnable {
+
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final BlockingQueue<byte[]> pending = new ArrayBlockingQueue<>(MAX_PENDING);
+        private volatile Thread thread;
+        private volatile boolean dropped;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        /**
+         * Queue an event to be written, dropping this subscriber if it's too
+         * far behind to take it.
+         */
+        void send(byte[] bytes) {
+            if (!pending.offer(bytes)) {
+                drop("too far behind");
+            }
+        }
+
+        /**
+         * Stop writing to this subscriber and close its connection. Interrupting
+         * the writer doesn't unblock a write stuck on a slow client, so the
+         * connection is closed as well, on another thread so this never waits
+         * on the client.
+         */
+        void drop(String reason) {
+            if (dropped) {
+                return;
+            }
+            dropped = true;
+            subscribers.remove(this);
+            LOGGER.log(Level.FINE, "Dropping event subscriber " + exchange.getRemoteAddress() + ", " + reason);
+            Thread writer = thread;
+            if (writer != null) {
+                writer.interrupt();
+            }
+            try {
+                writers.execute(this::close);
+            } catch (RejectedExecutionException ex) {
+                close();
+            }
+        }
+
+        /**
+         * Close the connection, if it hasn't been closed already.
+         */
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                exchange.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                while (!dropped) {
+                    byte[] bytes = pending.take();
+                    out.write(bytes);
+                    out.flush();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Dropping event subscriber " + exchange.getRemoteAddress(), ex);
+            } finally {
+                dropped = true;
+                subscribers.remove(this);
+                close();
+            }
+        }
+    }
+
+    /**
+     * Create a new broadcaster.
+     * <p>
+     * @param name the name of the threads used to write the events.
+     */
+    LiveEventBroadcaster(String name) {
+        writers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name + " keep-alive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepAlive.scheduleWithFixedDelay(() -> {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.send(KEEP_ALIVE);
+            }
+        }, 15, 15, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start streaming events to the client of the given exchange. This returns
+     * straight away; the exchange is kept open until the client goes away or
+     * the broadcaster is closed.
+     * <p>
+     * @param exchange the exchange to stream events to.
+     * @throws IOException if the response headers couldn't be sent.
+     */
+    void subscribe(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber(exchange);
+        synchronized (latest) {
+            for (byte[] event : latest.values()) {
+                subscriber.send(event);
+            }
+            subscribers.add(subscriber);
+        }
+        try {
+            writers.execute(subscriber);
+        } catch (RejectedExecutionException ex) {
+            subscribers.remove(subscriber);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Send an event to every subscriber, unless it's the same as the last
+     * event sent with that name.
+     * <p>
+     * @param name the name of the event.
+     * @param data the data of the event, which may span several lines.
+     */
+    void broadcast(String name, String data) {
+        StringBuilder event = new StringBuilder(data.length() + 32);
+        event.append("event: ").append(name).append('\n');
+        for (String line : data.split("\r\n|\r|\n", -1)) {
+            event.append("data: ").append(line).append('\n');
+        }
+        event.append('\n');
+        byte[] bytes = event.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (latest) {
+            byte[] previous = latest.put(name, bytes);
+            if (previous != null && Arrays.equals(previous, bytes)) {
+                return;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.send(bytes);
+            }
+        }
+    }
+
+    /**
+     * Get the number of clients currently subscribed.
+     * <p>
+     * @return the number of subscribers.
+     */
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Close every subscriber's stream and stop the broadcaster.
+     */
+    void close() {
+        keepAlive.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.drop("shutting down");
+        }
+        writers.shutdownNow();
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.data.bible.BibleBook;
+import org.quelea.data.displayable.BiblePassage;
+import org.quelea.data.displayable.Displayable;
+import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.data.displayable.TextDisplayable;
+import org.quelea.data.displayable.TextSection;
+import org.quelea.services.utils.LineTypeChecker;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.utils.Chord;
+import org.quelea.windows.library.LibraryBiblePanel;
+import org.quelea.windows.main.LivePanel;
+import org.quelea.windows.main.QueleaApp;
+
+/**
+ * An immutable snapshot of what's on the live panel, taken on the FX thread
+ * each time it changes. The servers answer their requests from the latest
+ * snapshot rather than reaching into JavaFX controls from their own threads,
+ * and the lyrics HTML is rendered once here rather than on every poll. Each
+ * snapshot has a version number, so a client that already has the latest
+ * lyrics can be told so with a 304.
+ * <p/>
+ * @author Michael
+ */
+public final class LiveState {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * Distinguishes the versions of this run from those of a previous one, so
+     * a client never mistakes an old ETag for a current one.
+     */
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), 36);
+    /**
+     * The state before anything has been published.
+     */
+    public static final LiveState EMPTY = new LiveState();
+    private final long version;
+    private final Displayable displayable;
+    private final List<TextSection> sections;
+    private final int sectionIndex;
+    private final boolean logo;
+    private final boolean black;
+    private final boolean clear;
+    private final boolean contentShowing;
+    private final String lyricsHtml;
+    private final String chordLyricsHtml;
+    private final String chordsHtml;
+    private final String title;
+    private final Map<String, String> translations;
+
+    private LiveState() {
+        version = 0;
+        displayable = null;
+        sections = Collections.emptyList();
+        sectionIndex = -1;
+        logo = false;
+        black = false;
+        clear = false;
+        contentShowing = false;
+        lyricsHtml = "";
+        chordLyricsHtml = "";
+        chordsHtml = "";
+        title = "";
+        translations = Collections.emptyMap();
+    }
+
+    private LiveState(LivePanel lp, long version) {
+        this.version = version;
+        displayable = lp.getDisplayable();
+        sections = Collections.unmodifiableList(new ArrayList<>(lp.getLyricsPanel().getLyricsList().getItems()));
+        sectionIndex = lp.getLyricsPanel().getCurrentIndex();
+        logo = lp.getLogoed();
+        black = lp.getBlacked();
+        clear = lp.getCleared();
+        contentShowing = lp.isContentShowing();
+        String lyrics = "";
+        String chordLyrics = "";
+        String chordsMerged = "";
+        String liveTitle = "";
+        TextSection section = getSection();
+        if (contentShowing && displayable instanceof TextDisplayable && section != null) {
+            try {
+                lyrics = renderLyrics(section, false);
+                chordLyrics = renderLyrics(section, true);
+                chordsMerged = renderChords(section);
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Error getting lyrics", ex);
+            }
+            liveTitle = renderTitle();
+        }
+        lyricsHtml = lyrics;
+        chordLyricsHtml = chordLyrics;
+        chordsHtml = chordsMerged;
+        title = liveTitle;
+        if (displayable instanceof SongDisplayable) {
+            translations = Collections.unmodifiableMap(new LinkedHashMap<>(((SongDisplayable) displayable).getTranslations()));
+        } else {
+            translations = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Take a snapshot of the given live panel. This must be called on the FX
+     * thread.
+     * <p/>
+     * @param lp the live panel.
+     * @param version the version of the snapshot, which should be higher than
+     * that of any snapshot taken before it.
+     * @return the snapshot.
+     */
+    public static LiveState capture(LivePanel lp, long version) {
+        return new LiveState(lp, version);
+    }
+
+    /**
+     * Get the latest snapshot published by the live panel. This can be called
+     * from any thread.
+     * <p/>
+     * @return the latest snapshot, or EMPTY if the live panel isn't up yet.
+     */
+    public static LiveState current() {
+        QueleaApp app = QueleaApp.get();
+        if (app == null || app.getMainWindow() == null || app.getMainWindow().getMainPanel() == null) {
+            return EMPTY;
+        }
+        LivePanel lp = app.getMainWindow().getMainPanel().getLivePanel();
+        if (lp == null) {
+            return EMPTY;
+        }
+        return lp.getLiveState();
+    }
+
+    /**
+     * Get the version of this snapshot.
+     * <p/>
+     * @return the version, 0 for the empty state.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get an ETag for one representation of this snapshot. The tag changes
+     * whenever the live panel does.
+     * <p/>
+     * @param variant the name of the representation, e.g. "lyrics".
+     * @return the quoted ETag.
+     */
+    public String getETag(String variant) {
+        return "\"" + RUN_ID + "-" + version + "-" + variant + "\"";
+    }
+
+    /**
+     * Get the displayable on the live panel.
+     * <p/>
+     * @return the live displayable, or null if there isn't one.
+     */
+    public Displayable getDisplayable() {
+        return displayable;
+    }
+
+    /**
+     * Get the sections of the live displayable.
+     * <p/>
+     * @return an unmodifiable list of the sections.
+     */
+    public List<TextSection> getSections() {
+        return sections;
+    }
+
+    /**
+     * Get the index of the selected section.
+     * <p/>
+     * @return the selected index, or -1 if nothing is selected.
+     */
+    public int getSectionIndex() {
+        return sectionIndex;
+    }
+
+    /**
+     * Get the selected section.
+     * <p/>
+     * @return the selected section, or null if nothing is selected.
+     */
+    public TextSection getSection() {
+        if (sectionIndex < 0 || sectionIndex >= sections.size()) {
+            return null;
+        }
+        return sections.get(sectionIndex);
+    }
+
+    public boolean getLogoed() {
+        return logo;
+    }
+
+    public boolean getBlacked() {
+        return black;
+    }
+
+    public boolean getCleared() {
+        return clear;
+    }
+
+    public boolean isContentShowing() {
+        return contentShowing;
+    }
+
+    /**
+     * Get the HTML of the selected section's lyrics, or an empty string if no
+     * lyrics are showing.
+     * <p/>
+     * @return the lyrics HTML.
+     */
+    public String getLyricsHtml() {
+        return lyricsHtml;
+    }
+
+    /**
+     * Get the HTML of the selected section's lyrics with the chord lines
+     * included, or an empty string if no lyrics are showing.
+     * <p/>
+     * @return the lyrics and chords HTML.
+     */
+    public String getChordLyricsHtml() {
+        return chordLyricsHtml;
+    }
+
+    /**
+     * Get the HTML of the selected section's lyrics with the chords merged
+     * into the lines, or an empty string if no lyrics are showing.
+     * <p/>
+     * @return the merged lyrics and chords HTML.
+     */
+    public String getChordsHtml() {
+        return chordsHtml;
+    }
+
+    /**
+     * Get the title of the live displayable, or an empty string if no lyrics
+     * are showing. Bible passages are prefixed with their book number.
+     * <p/>
+     * @return the title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the translations of the live song, keyed by language.
+     * <p/>
+     * @return an unmodifiable map of the translations, empty if the live
+     * displayable isn't a song or has none.
+     */
+    public Map<String, String> getTranslations() {
+        return translations;
+    }
+
+    private String renderLyrics(TextSection section, boolean chords) {
+        StringBuilder ret = new StringBuilder();
+        for (String line : section.getText(chords, false)) {
+            if (displayable instanceof BiblePassage) {
+                ret.append("<span class=\"bible\">").append(line);
+            } else if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS) {
+                ret.append("<span class=\"chord\">").append(line.replace(" ", "&#160;"));
+            } else if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.TITLE) {
+                ret.append("<span class=\"title\">").append(line);
+            } else {
+                ret.append("<span class=\"lyric\">").append(line);
+            }
+            ret.append("</span>").append("<br/>");
+        }
+        return ret.toString();
+    }
+
+    private static String renderChords(TextSection section) {
+        String[] arr = section.getText(true, false);
+        List<Chord> chords = new ArrayList<>();
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < arr.length; i++) {
+            String line = arr[i];
+            if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS && i < arr.length - 1) {
+                chords = Chord.getChordsFromLine(line);
+            } else {
+                html.append(mergeChords(line, chords));
+                html.append("\n");
+                chords = null;
+            }
+        }
+        return html.toString();
+    }
+
+    private static String mergeChords(String line, List<Chord> chords) {
+        if (chords == null || chords.isEmpty()) {
+            return line;
+        }
+
+        StringBuilder ret = new StringBuilder("<div class=\"line\">");
+        int chordidx = 0;
+        boolean initialWhitespace = true;
+        Chord chord = chords.get(chordidx);
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) != ' ') {
+                initialWhitespace = false;
+            }
+            if (chord != null && i == chord.getIdx()) {
+                ret.append("<span class=\"chord\">").append(chord.getChord()).append("</span>");
+                chordidx++;
+                if (chordidx < chords.size()) {
+                    chord = chords.get(chordidx);
+                } else {
+                    chord = null;
+                }
+            }
+            if (initialWhitespace && line.charAt(i) == ' ') {
+                ret.append('\u2000');
+            } else {
+                ret.append(line.charAt(i));
+            }
+        }
+        while (chordidx < chords.size()) {
+            ret.append("<span class=\"chord\">").append(chords.get(chordidx++).getChord()).append("</span>");
+        }
+        ret.append("</div>");
+        return ret.toString();
+    }
+
+    private String renderTitle() {
+        try {
+            String response = displayable.getPreviewText();
+            if (displayable instanceof BiblePassage) {
+                final LibraryBiblePanel lbp = QueleaApp.get().getMainWindow().getMainPanel().getLibraryPanel().getBiblePanel();
+                int chapterPos = 0;
+
+                for (int i = 1; i < response.length(); i++) {
+                    char c = response.charAt(i);
+                    if (Character.isDigit(c)) {
+                        chapterPos = i - 1;
+                        break;
+                    }
+                }
+                String bible = response.substring(response.indexOf("\n") + 1);
+                String book = response.substring(0, chapterPos);
+                int bookNumber = 0;
+                int bibleNumber = 0;
+
+                for (int i = 0; i < lbp.getBibleSelector().getItems().size(); i++) {
+                    if (lbp.getBibleSelector().getItems().get(i).toString().toLowerCase().contains(bible.toLowerCase())) {
+                        bibleNumber = i;
+                    }
+                }
+
+                BibleBook[] books = lbp.getBibleSelector().getItems().get(bibleNumber).getBooks();
+                for (int i = 0; i < books.length; i++) {
+                    if (books[i].getBookName().equalsIgnoreCase(book)) {
+                        bookNumber = i + 1;
+                    }
+                }
+
+                response = bookNumber + "<br/>" + response;
+            }
+            return response;
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error getting title", ex);
+            return "";
+        }
+    }
+}
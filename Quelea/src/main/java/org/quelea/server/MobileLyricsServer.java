@@ -17,6 +17,7 @@
  */
 package org.quelea.server;
 
+import com.sun.net.httpserver.Filter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
@@ -30,25 +31,14 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.quelea.data.bible.BibleBook;
-import org.quelea.data.displayable.BiblePassage;
-import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.data.displayable.TextDisplayable;
-import org.quelea.data.displayable.TextSection;
 import org.quelea.services.languages.LabelGrabber;
-import org.quelea.services.utils.LineTypeChecker;
-import org.quelea.services.utils.LineTypeChecker.Type;
 import org.quelea.services.utils.LoggerUtils;
-import org.quelea.utils.Chord;
-import org.quelea.windows.library.LibraryBiblePanel;
-import org.quelea.windows.main.LivePanel;
-import org.quelea.windows.main.MainPanel;
-import org.quelea.windows.main.QueleaApp;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
  * The mobile lyrics server, responsible for handling the mobile HTTP calls and
@@ -63,8 +53,9 @@ public class MobileLyricsServer {
     private final HttpServer server;
     private boolean running;
     private String pageContent;
-    private final Map<String, byte[]> fileCache;
     private String text = "";
+    private final LiveEventBroadcaster broadcaster;
+    private final ExecutorService executor;
 
     /**
      * Create a new mobile lyrics server on a specified port. The port must not
@@ -74,24 +65,28 @@ public class MobileLyricsServer {
      * @throws IOException if something goes wrong.
      */
     public MobileLyricsServer(int port) throws IOException {
-        fileCache = new HashMap<>();
+        broadcaster = new LiveEventBroadcaster("Mobile lyrics events");
+        Filter requests = ServerExecutors.limit("mobile lyrics", QueleaProperties.get().getServerMaxRequests(),
+                QueleaProperties.get().getServerRequestTimeout());
         server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/", new RootHandler());
-        server.createContext("/lyrics", new LyricsHandler());
-        server.createContext("/chords", new ChordsHandler());
-        server.createContext("/chordsv2", new ChordsHandlerv2());
-        server.createContext("/title", new TitleHandler());
-        server.createContext("/songtranslations", new SongTranslationsHandler());
-        server.createContext("/gettranslation", new SongTranslationsHandler());
-        server.createContext("/livetext", new LiveTextHandler());
-        server.createContext("/jscolor.js", new FileHandler("icons/jscolor.js"));
-        server.createContext("/arrow.gif", new FileHandler("icons/arrow.gif"));
-        server.createContext("/gear.png", new FileHandler("icons/gear.png"));
-        server.createContext("/translate.png", new FileHandler("icons/translate_on.png"));
-        server.createContext("/cross.gif", new FileHandler("icons/cross.gif"));
-        server.createContext("/hs.png", new FileHandler("icons/hs.png"));
-        server.createContext("/hv.png", new FileHandler("icons/hv.png"));
-        server.setExecutor(null);
+        server.createContext("/", new RootHandler()).getFilters().add(requests);
+        server.createContext("/lyrics", new LyricsHandler()).getFilters().add(requests);
+        server.createContext("/chords", new ChordsHandler()).getFilters().add(requests);
+        server.createContext("/chordsv2", new ChordsHandlerv2()).getFilters().add(requests);
+        server.createContext("/title", new TitleHandler()).getFilters().add(requests);
+        server.createContext("/songtranslations", new SongTranslationsHandler()).getFilters().add(requests);
+        server.createContext("/gettranslation", new SongTranslationsHandler()).getFilters().add(requests);
+        server.createContext("/livetext", new LiveTextHandler()).getFilters().add(requests);
+        server.createContext("/events", new EventsHandler());
+        server.createContext("/jscolor.js", StaticAssets.file("icons/jscolor.js")).getFilters().add(requests);
+        server.createContext("/arrow.gif", StaticAssets.file("icons/arrow.gif")).getFilters().add(requests);
+        server.createContext("/gear.png", StaticAssets.file("icons/gear.png")).getFilters().add(requests);
+        server.createContext("/translate.png", StaticAssets.file("icons/translate_on.png")).getFilters().add(requests);
+        server.createContext("/cross.gif", StaticAssets.file("icons/cross.gif")).getFilters().add(requests);
+        server.createContext("/hs.png", StaticAssets.file("icons/hs.png")).getFilters().add(requests);
+        server.createContext("/hv.png", StaticAssets.file("icons/hv.png")).getFilters().add(requests);
+        executor = ServerExecutors.create("Mobile lyrics server");
+        server.setExecutor(executor);
     }
 
     /**
@@ -111,7 +106,9 @@ public class MobileLyricsServer {
     public void stop() {
         if (server != null) {
             running = false;
+            broadcaster.close();
             server.stop(0);
+            executor.shutdownNow();
         }
     }
 
@@ -154,44 +151,23 @@ public class MobileLyricsServer {
 
     }
 
-    private class FileHandler implements HttpHandler {
-
-        private String file;
-
-        public FileHandler(String file) {
-            this.file = file;
-        }
-
-        @Override
-        public void handle(HttpExchange t) throws IOException {
-            byte[] ret = fileCache.get(file);
-            if (ret == null) {
-                ret = Files.readAllBytes(Paths.get(file));
-                if (USE_CACHE) {
-                    fileCache.put(file, ret);
-                }
-            }
-            t.sendResponseHeaders(200, ret.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(ret);
-            }
-        }
-
-    }
-
     private class LyricsHandler implements HttpHandler {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
+            LiveState state = LiveState.current();
+            boolean all = t.getRequestURI().toString().contains("all");
+            t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            if (HttpCache.notModified(t, state.getETag(all ? "all" : "lyrics"))) {
+                return;
+            }
             String response;
-            if (t.getRequestURI().toString().contains("all")) {
-                response = allLyrics();
+            if (all) {
+                response = allLyrics(state);
             } else {
-                response = getLyrics(false);
+                response = getLyrics(state);
             }
             byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
             t.sendResponseHeaders(200, bytes.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(bytes);
@@ -199,78 +175,47 @@ public class MobileLyricsServer {
         }
     }
 
+    /**
+     * Streams the live lyrics, chords and live text to the client as
+     * server-sent events whenever they change, so clients that support it
+     * don't need to poll.
+     */
+    private class EventsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            broadcaster.subscribe(t);
+        }
+    }
+
     private class ChordsHandlerv2 implements HttpHandler {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String[] arr = getRawLiveLyrics();
-            List<Chord> chords = new ArrayList<>();
-            StringBuilder html = new StringBuilder();
-            for (int i = 0; i < arr.length; i++) {
-                String line = arr[i];
-                if (new LineTypeChecker(line).getLineType() == Type.CHORDS && i < arr.length - 1) {
-                    chords = Chord.getChordsFromLine(line);
-                } else {
-                    html.append(mergeChords(line, chords));
-                    html.append("\n");
-                    chords = null;
-                }
-            }
-            
-            byte[] bytes = html.toString().getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+            LiveState state = LiveState.current();
             t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            if (HttpCache.notModified(t, state.getETag("chordsv2"))) {
+                return;
+            }
+            byte[] bytes = getChordsHtml(state).getBytes("UTF-8");
             t.sendResponseHeaders(200, bytes.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(bytes);
             }
         }
-        
-        private String mergeChords(String line, List<Chord> chords) {
-            if (chords == null || chords.isEmpty()) {
-                return line;
-            }
-
-            String ret = "<div class=\"line\">";
-            int chordidx = 0;
-            boolean initialWhitespace = true;
-            Chord chord = chords.get(chordidx);
-            for (int i = 0; i < line.length(); i++) {
-                if (line.charAt(i) != ' ') {
-                    initialWhitespace = false;
-                }
-                if (chord != null && i == chord.getIdx()) {
-                    ret += "<span class=\"chord\">" + chord.getChord() + "</span>";
-                    chordidx++;
-                    if (chordidx < chords.size()) {
-                        chord = chords.get(chordidx);
-                    } else {
-                        chord = null;
-                    }
-                }
-                if(initialWhitespace && line.charAt(i)==' ') {
-                    ret += "\u2000";
-                }
-                else {
-                    ret += line.charAt(i);                    
-                }
-            }
-            while (chordidx < chords.size()) {
-                ret += "<span class=\"chord\">" + chords.get(chordidx++).getChord() + "</span>";
-            }
-            ret += "</div>";
-            return ret;
-        }
     }
 
     private class ChordsHandler implements HttpHandler {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getLyrics(true);
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+            LiveState state = LiveState.current();
             t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            if (HttpCache.notModified(t, state.getETag("chords"))) {
+                return;
+            }
+            String response = running ? state.getChordLyricsHtml() : "";
+            byte[] bytes = response.getBytes("UTF-8");
             t.sendResponseHeaders(200, bytes.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(bytes);
@@ -297,10 +242,13 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getTitle();
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+            LiveState state = LiveState.current();
             t.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            if (HttpCache.notModified(t, state.getETag("title"))) {
+                return;
+            }
+            String response = running ? state.getTitle() : "";
+            byte[] bytes = response.getBytes("UTF-8");
             t.sendResponseHeaders(200, bytes.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(bytes);
@@ -313,14 +261,14 @@ public class MobileLyricsServer {
         @Override
         public void handle(HttpExchange he) throws IOException {
             String response = "";
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.getDisplayable() instanceof TextDisplayable) {
+            LiveState state = LiveState.current();
+            if (running && state.getDisplayable() instanceof TextDisplayable) {
                 if (he.getRequestURI().toString().contains("/songtranslations")) {
-                    response = listSongTranslations(he);
+                    response = listSongTranslations(state);
                 } else {
-                    response = getSongTranslation(he);
+                    response = getSongTranslation(he, state);
                 }
-                if (getLyrics(false).equals("")) {
+                if (getLyrics(state).isEmpty()) {
                     response = "";
                 }
             }
@@ -333,64 +281,36 @@ public class MobileLyricsServer {
         }
     }
     
-    private String[] getRawLiveLyrics() {
-        try {
-            if (!checkInitialised()) {
-                return new String[0];
-            }
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.isContentShowing() && lp.getDisplayable() instanceof TextDisplayable) {
-                TextSection currentSection = lp.getLyricsPanel().getLyricsList().getSelectionModel().getSelectedItem();
-                return currentSection.getText(true, false);
-            } else {
-                return new String[0];
-            }
-        } catch (Exception ex) {
-            LOGGER.log(Level.WARNING, "Error getting lyrics", ex);
-            return new String[0];
-        }
+    /**
+     * Get the live lyrics as HTML from the given snapshot.
+     * <p>
+     * @param state the live state.
+     * @return the lyrics HTML, or an empty string if none are showing.
+     */
+    private String getLyrics(LiveState state) {
+        return running ? state.getLyricsHtml() : "";
     }
 
-    private String getLyrics(boolean chords) {
-        try {
-            if (!checkInitialised()) {
-                return "";
-            }
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.isContentShowing() && lp.getDisplayable() instanceof TextDisplayable) {
-                TextSection currentSection = lp.getLyricsPanel().getLyricsList().getSelectionModel().getSelectedItem();
-                StringBuilder ret = new StringBuilder();
-                for (String line : currentSection.getText(chords, false)) {
-                    if (lp.getDisplayable() instanceof BiblePassage) {
-                        ret.append("<span class=\"bible\">").append(line);
-                    } else if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS) {
-                        ret.append("<span class=\"chord\">").append(line.replace(" ", "&#160;"));
-                    } else if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.TITLE) {
-                        ret.append("<span class=\"title\">").append(line);
-                    } else {
-                        ret.append("<span class=\"lyric\">").append(line);
-                    }
-                    ret.append("</span>").append("<br/>");
-                }
-//                if(chords) {
-//                    return ret.toString().replace(" ", "&#160;");
-//                }
-                return ret.toString();
-            } else {
-                return "";
-            }
-        } catch (Exception ex) {
-            LOGGER.log(Level.WARNING, "Error getting lyrics", ex);
-            return "";
-        }
+    /**
+     * Get the live lyrics as HTML with the chords merged into the lines.
+     * <p>
+     * @param state the live state.
+     * @return the lyrics and chords HTML.
+     */
+    private String getChordsHtml(LiveState state) {
+        return running ? state.getChordsHtml() : "";
     }
 
     public String allLyrics() {
+        return allLyrics(LiveState.current());
+    }
+
+    private String allLyrics(LiveState state) {
         StringBuilder sb = new StringBuilder();
         sb.append("<div id=\"outer\">");
         int i = 0;
-        for (String lyricBlock : getAllLyrics()) {
-            if (i == RCHandler.currentLyricSection()) {
+        for (String lyricBlock : getAllLyrics(state)) {
+            if (i == state.getSectionIndex()) {
                 sb.append("<div class=\"inner current\">");
             } else {
                 sb.append("<div class=\"inner\">");
@@ -404,17 +324,16 @@ public class MobileLyricsServer {
     }
 
     //Method returns all lyrics as an ArrayList of slides
-    private List<String> getAllLyrics() {
+    private List<String> getAllLyrics(LiveState state) {
         try {
-            if (!checkInitialised()) {
+            if (state.getSection() == null) {
                 List<String> tmp = new ArrayList<>();
                 tmp.add("");
                 return tmp;
             }
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.getDisplayable() instanceof TextDisplayable) {
+            if (running && state.getDisplayable() instanceof TextDisplayable) {
                 ArrayList<String> als = new ArrayList<>();
-                lp.getLyricsPanel().getLyricsList().getItems().stream().map((currentSection) -> {
+                state.getSections().stream().map((currentSection) -> {
                     StringBuilder ret = new StringBuilder();
                     for (String line : currentSection.getText(false, false)) {
                         ret.append("<span class=\"lyric\">").append(line).append("</span>").append("<br/>");
@@ -436,89 +355,42 @@ public class MobileLyricsServer {
         }
     }
 
-    private String getTitle() {
-        try {
-            if (!checkInitialised()) {
-                return "";
-            }
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.isContentShowing() && lp.getDisplayable() instanceof TextDisplayable) {
-                String response = lp.getDisplayable().getPreviewText();
-                if (lp.getDisplayable() instanceof BiblePassage) {
-                    final LibraryBiblePanel lbp = QueleaApp.get().getMainWindow().getMainPanel().getLibraryPanel().getBiblePanel();
-                    int chapterPos = 0;
-
-                    for (int i = 1; i < response.length(); i++) {
-                        char c = response.charAt(i);
-                        if (Character.isDigit(c)) {
-                            chapterPos = i - 1;
-                            break;
-                        }
-                    }
-                    String bible = response.substring(response.indexOf("\n") + 1);
-                    String book = response.substring(0, chapterPos);
-                    int bookNumber = 0;
-                    int bibleNumber = 0;
-
-                    for (int i = 0; i < lbp.getBibleSelector().getItems().size(); i++) {
-                        if (lbp.getBibleSelector().getItems().get(i).toString().toLowerCase().contains(bible.toLowerCase())) {
-                            bibleNumber = i;
-                        }
-                    }
-
-                    BibleBook[] books = lbp.getBibleSelector().getItems().get(bibleNumber).getBooks();
-                    for (int i = 0; i < books.length; i++) {
-                        if (books[i].getBookName().equalsIgnoreCase(book)) {
-                            bookNumber = i + 1;
-                        }
-                    }
-
-                    response = bookNumber + "<br/>" + response;
-                }
-                return response;
-            } else {
-                return "";
-            }
-        } catch (Exception ex) {
-            LOGGER.log(Level.WARNING, "Error getting title", ex);
-            return "";
-        }
-    }
-
-    public static String listSongTranslations(HttpExchange he) {
+    /**
+     * List the languages the live song has been translated into.
+     * <p>
+     * @param state the live state.
+     * @return the languages, one per line, or "None" if there aren't any.
+     */
+    private static String listSongTranslations(LiveState state) {
         StringBuilder ret = new StringBuilder();
-        final MainPanel p = QueleaApp.get().getMainWindow().getMainPanel();
-        int current = p.getSchedulePanel().getScheduleList().getItems().indexOf(p.getLivePanel().getDisplayable());
-        SongDisplayable d = ((SongDisplayable) QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getItems().get(current));
-        for (String b : d.getTranslations().keySet()) {
+        for (String b : state.getTranslations().keySet()) {
             ret.append(b).append("\n");
         }
-        if (d.getTranslations().size() < 1) {
+        if (state.getTranslations().isEmpty()) {
             ret.append("None");
         }
         return ret.toString();
     }
 
-    public static String getSongTranslation(HttpExchange he) throws UnsupportedEncodingException {
-        String language;
-        StringBuilder lyrics = new StringBuilder();
+    /**
+     * Get the live section of the live song in the language named at the end
+     * of the request URI.
+     * <p>
+     * @param he the exchange.
+     * @param state the live state.
+     * @return the translated section as HTML.
+     */
+    private static String getSongTranslation(HttpExchange he, LiveState state) throws UnsupportedEncodingException {
         StringBuilder sb = new StringBuilder();
         if (he.getRequestURI().toString().contains("/gettranslation/")) {
             String uri = URLDecoder.decode(he.getRequestURI().toString(), "UTF-8");
-            language = uri.split("/gettranslation/", 2)[1];
-            final MainPanel p = QueleaApp.get().getMainWindow().getMainPanel();
-            int currentSong = p.getSchedulePanel().getScheduleList().getItems().indexOf(p.getLivePanel().getDisplayable());
-            SongDisplayable d = ((SongDisplayable) QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getItems().get(currentSong));
-            for (String b : d.getTranslations().keySet()) {
-                if (b.equals(language)) {
-                    lyrics.append(d.getTranslations().get(language));
-                }
-            }
-            String[] translation = lyrics.toString().split("\n\n");
+            String language = uri.split("/gettranslation/", 2)[1];
+            String lyrics = state.getTranslations().getOrDefault(language, "");
+            String[] translation = lyrics.split("\n\n");
 
             int i = 0;
             for (String currentSlide : translation) {
-                if (i == RCHandler.currentLyricSection()) {
+                if (i == state.getSectionIndex()) {
                     sb.append("<div class=\"inner current\">");
                     sb.append(currentSlide);
                     sb.append("</div>");
@@ -535,44 +407,21 @@ public class MobileLyricsServer {
     
     public void setText(String text) {
         this.text = text;
+        broadcaster.broadcast("livetext", text);
     }
 
     /**
-     * A bunch of checks to check whether the live panel that we grab the lyrics
-     * from has fully initialised. Rather hacky but works for now at least.
-     * <p>
-     * @return true if we're initialised properly and ok to continue, false if
-     * not.
+     * Called when what's showing on the live panel changes, to push the new
+     * lyrics out to any clients listening for events. This must be called on
+     * the FX thread; the lyrics are rendered once here and the same payload
+     * sent to every client.
      */
-    private boolean checkInitialised() {
-        if (QueleaApp.get() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList().getSelectionModel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList().getSelectionModel().getSelectedItem() == null) {
-            return false;
+    public void liveChanged(LiveState state) {
+        if (!running) {
+            return;
         }
-        return true;
+        broadcaster.broadcast("lyrics", getLyrics(state));
+        broadcaster.broadcast("chords", getChordsHtml(state));
     }
 
     /**
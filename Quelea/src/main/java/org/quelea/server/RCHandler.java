@@ -19,22 +19,18 @@ package org.quelea.server;
 
 import com.sun.net.httpserver.HttpExchange;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.TreeSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
-
-import javax.imageio.ImageIO;
 
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.bible.Bible;
@@ -48,6 +44,7 @@ import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.data.displayable.TimerDisplayable;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.lucene.SongSearchIndex;
+import org.quelea.services.lucene.SongSearchResult;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.Utils;
@@ -69,7 +66,7 @@ import org.quelea.windows.newsong.SongEntryWindow;
  */
 public class RCHandler {
 
-    private static final ArrayList<String> devices = new ArrayList<>();
+    private static final List<String> devices = new CopyOnWriteArrayList<>();
     private static final Logger LOGGER = LoggerUtils.getLogger();
 
     public static void logo() {
@@ -153,7 +150,7 @@ public class RCHandler {
     }
 
     public static int currentLyricSection() {
-        return QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getCurrentIndex();
+        return LiveState.current().getSectionIndex();
     }
 
     public static void setLyrics(final String index) {
@@ -202,15 +199,15 @@ public class RCHandler {
     }
 
     public static boolean getLogo() {
-        return QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLogoed();
+        return LiveState.current().getLogoed();
     }
 
     public static boolean getBlack() {
-        return QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getBlacked();
+        return LiveState.current().getBlacked();
     }
 
     public static boolean getClear() {
-        return QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getCleared();
+        return LiveState.current().getCleared();
     }
 
     public static String videoStatus() {
@@ -288,24 +285,15 @@ public class RCHandler {
         if (he.getRequestURI().toString().contains("/search/")) {
             String uri = URLDecoder.decode(he.getRequestURI().toString(), "UTF-8");
             searchString = uri.split("/search/", 2)[1];
-            TreeSet<SongDisplayable> songs = new TreeSet<>();
+            Set<SongDisplayable> songs = new LinkedHashSet<>();
             if (searchString == null || searchString.trim().isEmpty() || Pattern.compile("[^\\w ]", Pattern.UNICODE_CHARACTER_CLASS).matcher(searchString).replaceAll("").isEmpty()) {
                 return LabelGrabber.INSTANCE.getLabel("invalid.search");
             } else {
-                SongDisplayable[] titleSongs = SongManager.get().getIndex().filter(searchString, SongSearchIndex.FilterType.TITLE);
-                for (SongDisplayable song : titleSongs) {
-                    song.setLastSearch(searchString);
-                    songs.add(song);
-                }
-
-                SongDisplayable[] lyricSongs = SongManager.get().getIndex().filter(searchString, SongSearchIndex.FilterType.BODY);
-                for (SongDisplayable song : lyricSongs) {
-                    song.setLastSearch(null);
+                for (SongSearchResult result : SongManager.get().getIndex().search(searchString)) {
+                    SongDisplayable song = result.getSong();
+                    song.setLastSearch(result.getMatchedField() == SongSearchIndex.FilterType.TITLE ? searchString : null);
                     songs.add(song);
                 }
-
-                SongDisplayable[] authorSongs = SongManager.get().getIndex().filter(searchString, SongSearchIndex.FilterType.AUTHOR);
-                songs.addAll(Arrays.asList(authorSongs));
             }
 
             StringBuilder response = new StringBuilder();
@@ -478,47 +466,27 @@ public class RCHandler {
     }
 
     public static byte[] getPresentationSlides(HttpExchange he) {
-        String targetPath = he.getRequestURI().getPath().replace("/slides", "");
-        Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
+        Displayable d = LiveState.current().getDisplayable();
         if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
-            if (targetPath.contains("/")) {
-                try {
-                    BufferedImage image;
-                    int slide = Integer.parseInt(targetPath.replace("/slide", "").replace(".png", ""));
-                    if (d instanceof PresentationDisplayable) {
-                        image = SwingFXUtils.fromFXImage(((PresentationDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
-                    } else if (d instanceof PdfDisplayable) {
-                        image = SwingFXUtils.fromFXImage(((PdfDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
-                    } else {
-                        image = SwingFXUtils.fromFXImage(((ImageGroupDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
-                    }
-                    ByteArrayOutputStream output = new ByteArrayOutputStream();
-                    ImageIO.write(image, "png", output);
-                    return output.toByteArray();
-                } catch (IOException ex) {
-                    LOGGER.log(Level.WARNING, "Error getting PowerPoint slides", ex);
-                }
-            } else {
-                StringBuilder sb = new StringBuilder();
-                sb.append("\n<html>");
-                int numberOfFiles;
-                if (d instanceof PresentationDisplayable)
-                    numberOfFiles = ((PresentationDisplayable) d).getPresentation().getSlides().length;
-                else if (d instanceof PdfDisplayable)
-                    numberOfFiles = ((PdfDisplayable) d).getPresentation().getSlides().length;
-                else
-                    numberOfFiles = ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
-                for (int i = 0; i < numberOfFiles; i++) {
-                    if (currentLyricSection() == i) {
-                        sb.append("<div class=\"inner current\">");
-                    }
-                    sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\">");
-                    sb.append("<a href='").append("/").append("slides/slide").append(i).append("'>").append("</a>");
-                    sb.append("</p>");
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n<html>");
+            int numberOfFiles;
+            if (d instanceof PresentationDisplayable)
+                numberOfFiles = ((PresentationDisplayable) d).getPresentation().getSlides().length;
+            else if (d instanceof PdfDisplayable)
+                numberOfFiles = ((PdfDisplayable) d).getPresentation().getSlides().length;
+            else
+                numberOfFiles = ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
+            for (int i = 0; i < numberOfFiles; i++) {
+                if (currentLyricSection() == i) {
+                    sb.append("<div class=\"inner current\">");
                 }
-                sb.append("\n</html>");
-                return sb.toString().getBytes();
+                sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\">");
+                sb.append("<a href='").append("/").append("slides/slide").append(i).append("'>").append("</a>");
+                sb.append("</p>");
             }
+            sb.append("\n</html>");
+            return sb.toString().getBytes();
         }
         return "".getBytes();
     }
@@ -563,36 +531,37 @@ public class RCHandler {
         return "";
     }
 
-    public static String listSongTranslations(HttpExchange he) {
+    /**
+     * List the languages the live song has been translated into.
+     * <p/>
+     * @param state the live state.
+     * @return the languages, one per line, or "None" if there aren't any.
+     */
+    public static String listSongTranslations(LiveState state) {
         StringBuilder ret = new StringBuilder();
-        final MainPanel p = QueleaApp.get().getMainWindow().getMainPanel();
-        int current = p.getSchedulePanel().getScheduleList().getItems().indexOf(p.getLivePanel().getDisplayable());
-        SongDisplayable d = ((SongDisplayable) QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getItems().get(current));
-        for (String b : d.getTranslations().keySet()) {
+        for (String b : state.getTranslations().keySet()) {
             ret.append(b).append("\n");
         }
-        if (d.getTranslations().size() < 1) {
+        if (state.getTranslations().isEmpty()) {
             ret.append("None");
         }
         return ret.toString();
     }
 
-    public static String getSongTranslation(HttpExchange he) throws UnsupportedEncodingException {
-        String language;
-        StringBuilder ret = new StringBuilder();
+    /**
+     * Get the live song in the language named at the end of the request URI.
+     * <p/>
+     * @param he the exchange.
+     * @param state the live state.
+     * @return the translation, or an empty string if there isn't one.
+     */
+    public static String getSongTranslation(HttpExchange he, LiveState state) throws UnsupportedEncodingException {
         if (he.getRequestURI().toString().contains("/gettranslation/")) {
             String uri = URLDecoder.decode(he.getRequestURI().toString(), "UTF-8");
-            language = uri.split("/gettranslation/", 2)[1];
-            final MainPanel p = QueleaApp.get().getMainWindow().getMainPanel();
-            int current = p.getSchedulePanel().getScheduleList().getItems().indexOf(p.getLivePanel().getDisplayable());
-            SongDisplayable d = ((SongDisplayable) QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getItems().get(current));
-            for (String b : d.getTranslations().keySet()) {
-                if (b.equals(language)) {
-                    ret.append(d.getTranslations().get(language));
-                }
-            }
+            String language = uri.split("/gettranslation/", 2)[1];
+            return state.getTranslations().getOrDefault(language, "");
         }
-        return ret.toString();
+        return "";
     }
 
     public static void transposeSong(HttpExchange he) throws UnsupportedEncodingException {
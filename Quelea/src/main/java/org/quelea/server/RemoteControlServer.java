@@ -23,17 +23,13 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
-import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.FileNameMap;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -43,12 +39,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javafx.embed.swing.SwingFXUtils;
-
-import javax.imageio.ImageIO;
 import javax.sound.midi.InvalidMidiDataException;
 
 import org.quelea.data.displayable.Displayable;
@@ -62,12 +56,8 @@ import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.LineTypeChecker;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
-import org.quelea.services.utils.Utils;
-import org.quelea.windows.main.LivePanel;
 import org.quelea.windows.main.QueleaApp;
-import org.quelea.windows.main.ThemePreviewPanel;
 import org.quelea.windows.main.actionhandlers.RecordingsHandler;
-import org.quelea.windows.main.schedule.ScheduleThemeNode;
 import org.quelea.windows.main.toolbars.MainToolbar;
 
 /**
@@ -84,7 +74,9 @@ public class RemoteControlServer {
     private final HttpServer server;
     private boolean running;
     private String pageContent;
-    private final Map<String, byte[]> fileCache;
+    private final ExecutorService executor;
+    private final SlideImageCache slideCache;
+    private final ThemeThumbnailCache themeThumbnails;
     public int count = 0;
     private static final String STATIC_DIRECTORY = "server/static/";
     private static final String ICON_DIRECTORY = "icons/";
@@ -98,50 +90,68 @@ public class RemoteControlServer {
      * @throws IOException if something goes wrong.
      */
     public RemoteControlServer(int port) throws IOException {
-        fileCache = new HashMap<>();
+        slideCache = new SlideImageCache();
+        themeThumbnails = new ThemeThumbnailCache();
+        QueleaProperties props = QueleaProperties.get();
+        Filter requests = ServerExecutors.limit("remote control", props.getServerMaxRequests(), props.getServerRequestTimeout());
+        Filter control = null;
+        Filter slow = ServerExecutors.limit("slow remote control", props.getServerMaxSlowRequests(), props.getServerSlowRequestTimeout());
         server = HttpServer.create(new InetSocketAddress(port), 0);
-        HttpContext rootcontext = server.createContext("/", new RootHandler());
-        server.createContext("/logout", new LogoutHandler());
-        server.createContext("/tlogo", new LogoToggleHandler());
-        server.createContext("/black", new BlackToggleHandler());
-        server.createContext("/clear", new ClearToggleHandler());
-        server.createContext("/next", new NextSlideHandler());
-        server.createContext("/prev", new PreviousSlideHandler());
-        server.createContext("/nextitem", new NextItemHandler());
-        server.createContext("/previtem", new PreviousItemHandler());
-        server.createContext("/play", new PlayHandler());
-        server.createContext("/lyrics", new LyricsHandler());
-        server.createContext("/chords", new ChordsHandler());
-        server.createContext("/status", new StatusHandler());
-        server.createContext("/schedule", new ScheduleHandler());
-        server.createContext("/songsearch", new SongSearchHandler());
-        server.createContext("/search", new DatabaseSearchHandler());
-        server.createContext("/song", new SongDisplayHandler());
-        server.createContext("/add", new AddSongHandler());
-        server.createContext("/addbible", new AddBibleHandler());
-        server.createContext("/translations", new ListBibleTranslationsHandler());
-        server.createContext("/books", new ListBibleBooksHandler());
-        server.createContext("/passage", new PassageSelecterHandler());
-        server.createContext("/sidebar.png", new FileHandler("icons/sidebar.png"));
-        server.createContext("/logo.png", new FileHandler("icons/logo-square.png"));
-        server.createContext("/section", new SectionHandler());
-        server.createContext("/songtranslations", new SongTranslationsHandler());
-        server.createContext("/gettranslation", new SongTranslationsHandler());
-        server.createContext("/record", new RecordToggleHandler());
-        server.createContext("/gotoitem", new GotoItemHandler());
-        server.createContext("/remove", new RemoveItemHandler());
-        server.createContext("/getthemes", new GetThemesHandler());
-        server.createContext("/settheme", new SetThemeHandler());
-        server.createContext("/moveup", new MoveItemUpHandler());
-        server.createContext("/movedown", new MoveItemDownHandler());
-        server.createContext("/themethumb", new ThemeThumbnailsHandler());
-        server.createContext("/slides", new PresentationSlidesHandler());
-        server.createContext("/transpose", new TransposeSongHandler());
+        HttpContext rootcontext = createContext("/", new RootHandler(), requests);
+        createContext("/logout", new LogoutHandler(), control);
+        createContext("/tlogo", new LogoToggleHandler(), control);
+        createContext("/black", new BlackToggleHandler(), control);
+        createContext("/clear", new ClearToggleHandler(), control);
+        createContext("/next", new NextSlideHandler(), control);
+        createContext("/prev", new PreviousSlideHandler(), control);
+        createContext("/nextitem", new NextItemHandler(), control);
+        createContext("/previtem", new PreviousItemHandler(), control);
+        createContext("/play", new PlayHandler(), control);
+        createContext("/lyrics", new LyricsHandler(), requests);
+        createContext("/chords", new ChordsHandler(), requests);
+        createContext("/status", new StatusHandler(), control);
+        createContext("/schedule", new ScheduleHandler(), requests);
+        createContext("/songsearch", new SongSearchHandler(), requests);
+        createContext("/search", new DatabaseSearchHandler(), requests);
+        createContext("/song", new SongDisplayHandler(), requests);
+        createContext("/add", new AddSongHandler(), requests);
+        createContext("/addbible", new AddBibleHandler(), requests);
+        createContext("/translations", new ListBibleTranslationsHandler(), requests);
+        createContext("/books", new ListBibleBooksHandler(), requests);
+        createContext("/passage", new PassageSelecterHandler(), requests);
+        createContext("/sidebar.png", StaticAssets.file("icons/sidebar.png"), requests);
+        createContext("/logo.png", StaticAssets.file("icons/logo-square.png"), requests);
+        createContext("/section", new SectionHandler(), control);
+        createContext("/songtranslations", new SongTranslationsHandler(), requests);
+        createContext("/gettranslation", new SongTranslationsHandler(), requests);
+        createContext("/record", new RecordToggleHandler(), control);
+        createContext("/gotoitem", new GotoItemHandler(), control);
+        createContext("/remove", new RemoveItemHandler(), requests);
+        createContext("/getthemes", new GetThemesHandler(), requests);
+        createContext("/settheme", new SetThemeHandler(), requests);
+        createContext("/moveup", new MoveItemUpHandler(), requests);
+        createContext("/movedown", new MoveItemDownHandler(), requests);
+        createContext("/themethumb", new ThemeThumbnailsHandler(), slow);
+        createContext("/slides", new PresentationSlidesHandler(), slow);
+        createContext("/transpose", new TransposeSongHandler(), requests);
         // Add context for static files
-        server.createContext("/static/", new StaticFileHandler(STATIC_DIRECTORY, "/static/"));
-        server.createContext("/icons/", new StaticFileHandler(ICON_DIRECTORY, "/icons/"));
-        rootcontext.getFilters().add(new ParameterFilter());
-        server.setExecutor(null);
+        createContext("/static/", StaticAssets.directory(STATIC_DIRECTORY, "/static/", true), requests);
+        createContext("/icons/", StaticAssets.directory(ICON_DIRECTORY, "/icons/", false), requests);
+        rootcontext.getFilters().add(0, new ParameterFilter());
+        executor = ServerExecutors.create("Remote control server");
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Create a context on the server, limited by the given filter. Control
+     * requests pass a null filter so they're never held up behind others.
+     */
+    private HttpContext createContext(String path, HttpHandler handler, Filter lane) {
+        HttpContext context = server.createContext(path, handler);
+        if (lane != null) {
+            context.getFilters().add(lane);
+        }
+        return context;
     }
 
     /**
@@ -162,6 +172,31 @@ public class RemoteControlServer {
         if (server != null) {
             running = false;
             server.stop(0);
+            executor.shutdownNow();
+            slideCache.close();
+            themeThumbnails.close();
+        }
+    }
+
+    /**
+     * Called when the themes change, so the theme thumbnails can be rendered
+     * again.
+     */
+    public void themesChanged() {
+        themeThumbnails.invalidate();
+    }
+
+    /**
+     * Called on the FX thread when what's showing on the live panel changes,
+     * so the slides of a presentation that's just gone live can be encoded
+     * before anyone asks for them.
+     * <p/>
+     *
+     * @param state the new live state.
+     */
+    public void liveChanged(LiveState state) {
+        if (running) {
+            slideCache.prepare(state.getDisplayable());
         }
     }
 
@@ -252,21 +287,23 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
+            if (!RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
+                passwordPage(he);
+                return;
+            }
             String response = "";
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.getDisplayable() instanceof TextDisplayable) {
-                if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
-
-                    if (he.getRequestURI().toString().contains("/songtranslations")) {
-                        response = RCHandler.listSongTranslations(he);
-                    } else {
-                        response = RCHandler.getSongTranslation(he);
-                    }
+            LiveState state = LiveState.current();
+            boolean list = he.getRequestURI().toString().contains("/songtranslations");
+            if (HttpCache.notModified(he, state.getETag(list ? "rctranslations" : "rctranslation"))) {
+                return;
+            }
+            if (running && state.getDisplayable() instanceof TextDisplayable) {
+                if (list) {
+                    response = RCHandler.listSongTranslations(state);
                 } else {
-                    passwordPage(he);
+                    response = RCHandler.getSongTranslation(he, state);
                 }
             }
-            he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
             he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
             try (OutputStream os = he.getResponseBody()) {
                 os.write(response.getBytes(Charset.forName("UTF-8")));
@@ -315,28 +352,28 @@ public class RemoteControlServer {
 
     private class ThemeThumbnailsHandler implements HttpHandler {
 
-        FileNameMap fileNameMap = URLConnection.getFileNameMap();
-
-        public void handle(HttpExchange t) {
-            Utils.fxRunAndWait(() -> {
-                try {
-                    ScheduleThemeNode stn = QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getThemeNode();
-                    int themeNum = Integer.parseInt(t.getRequestURI().getPath().replace("/themethumb", ""));
-                    BufferedImage image = SwingFXUtils.fromFXImage(((ThemePreviewPanel) stn.getThemePreviews().getChildren().get(themeNum)).getThemePreviewImage(), null);
-                    ByteArrayOutputStream output = new ByteArrayOutputStream();
-                    ImageIO.write(image, "png", output);
-                    byte[] byteArray = output.toByteArray();
-                    t.sendResponseHeaders(200, byteArray.length);
-                    try (OutputStream out = t.getResponseBody()) {
-                        out.write(byteArray);
-                    }
-
-                } catch (IOException e) {
-                    System.out.println("Failed saving");
-                } catch (Exception e) {
-                    System.out.println("Exception " + e);
-                }
-            });
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            ThemeThumbnailCache.Thumbnail thumbnail = null;
+            try {
+                int themeNum = Integer.parseInt(t.getRequestURI().getPath().replace("/themethumb", ""));
+                thumbnail = themeThumbnails.get(themeNum, QueleaProperties.get().getServerSlowRequestTimeout());
+            } catch (NumberFormatException ex) {
+                LOGGER.log(Level.FINE, "Bad theme thumbnail request {0}", t.getRequestURI());
+            }
+            if (thumbnail == null) {
+                t.sendResponseHeaders(404, -1);
+                t.close();
+                return;
+            }
+            if (HttpCache.notModified(t, thumbnail.getETag())) {
+                return;
+            }
+            t.getResponseHeaders().add("Content-Type", "image/png");
+            t.sendResponseHeaders(200, thumbnail.getBytes().length);
+            try (OutputStream out = t.getResponseBody()) {
+                out.write(thumbnail.getBytes());
+            }
         }
     }
 
@@ -345,6 +382,10 @@ public class RemoteControlServer {
         @Override
         public void handle(HttpExchange t) throws IOException {
             if (RCHandler.isLoggedOn(t.getRemoteAddress().getAddress().toString())) {
+                if (t.getRequestURI().getPath().startsWith("/slides/")) {
+                    sendSlide(t);
+                    return;
+                }
                 byte[] byteArray = RCHandler.getPresentationSlides(t);
                 t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
                 t.sendResponseHeaders(200, byteArray.length);
@@ -357,6 +398,40 @@ public class RemoteControlServer {
         }
     }
 
+    /**
+     * Send a slide image from the cache. A request naming the current
+     * presentation's ID can be cached forever, since a different presentation
+     * gets a different ID; any other request has to be revalidated.
+     */
+    private void sendSlide(HttpExchange t) throws IOException {
+        String query = t.getRequestURI().getRawQuery();
+        Displayable d = LiveState.current().getDisplayable();
+        SlideImageCache.SlideImage image = null;
+        try {
+            int slide = Integer.parseInt(t.getRequestURI().getPath().replace("/slides/slide", "").replace(".png", ""));
+            image = slideCache.get(d, slide, SlideImageCache.Size.fromQuery(query));
+        } catch (NumberFormatException ex) {
+            LOGGER.log(Level.FINE, "Bad slide request {0}", t.getRequestURI());
+        }
+        if (image == null) {
+            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+            t.sendResponseHeaders(404, -1);
+            t.close();
+            return;
+        }
+        if (slideCache.getId(d).equals(SlideImageCache.getParameter(query, "v"))) {
+            t.getResponseHeaders().add("Cache-Control", "public, max-age=31536000, immutable");
+            t.getResponseHeaders().add("ETag", image.getETag());
+        } else if (HttpCache.notModified(t, image.getETag())) {
+            return;
+        }
+        t.getResponseHeaders().add("Content-Type", image.getContentType());
+        t.sendResponseHeaders(200, image.getBytes().length);
+        try (OutputStream out = t.getResponseBody()) {
+            out.write(image.getBytes());
+        }
+    }
+
     private class AddSongHandler implements HttpHandler {
 
         @Override
@@ -704,17 +779,21 @@ public class RemoteControlServer {
             RecordingsHandler recHandler = toolbar.getRecordButtonHandler().getRecordingsHandler();
             if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
                 StringBuilder sb = new StringBuilder();
-                sb.append(RCHandler.getLogo()).append(",");
-                sb.append(RCHandler.getBlack()).append(",");
-                sb.append(RCHandler.getClear()).append(",");
+                LiveState state = LiveState.current();
+                sb.append(state.getLogoed()).append(",");
+                sb.append(state.getBlacked()).append(",");
+                sb.append(state.getCleared()).append(",");
                 sb.append(RCHandler.videoStatus()).append(",");
                 if (toolbar.getRecordButtonHandler() != null && recHandler != null) {
                     sb.append(recHandler.getIsRecording());
                 } else {
                     sb.append("false");
                 }
-                byte[] bytes = sb.toString().getBytes(Charset.forName("UTF-8"));
-                he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+                String status = sb.toString();
+                if (HttpCache.notModified(he, "\"status-" + Integer.toHexString(status.hashCode()) + "\"")) {
+                    return;
+                }
+                byte[] bytes = status.getBytes(Charset.forName("UTF-8"));
                 he.sendResponseHeaders(200, bytes.length);
                 try (OutputStream os = he.getResponseBody()) {
                     os.write(bytes);
@@ -808,7 +887,7 @@ public class RemoteControlServer {
             if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
                 if (pageContent == null || !USE_CACHE) {
                     pageContent = readFile("server/defaultrcspage.htm");
-                    pageContent = langStrings(pageContent);
+                    pageContent = StaticAssets.fingerprint(langStrings(pageContent), STATIC_DIRECTORY);
                 }
                 byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
                 he.sendResponseHeaders(200, bytes.length);
@@ -834,7 +913,7 @@ public class RemoteControlServer {
                 RCHandler.addDevice(he.getRemoteAddress().getAddress().toString());
                 if (pageContent == null || !USE_CACHE) {
                     pageContent = readFile("server/defaultrcspage.htm");
-                    pageContent = langStrings(pageContent);
+                    pageContent = StaticAssets.fingerprint(langStrings(pageContent), STATIC_DIRECTORY);
                 }
                 byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
                 he.sendResponseHeaders(200, bytes.length);
@@ -871,15 +950,22 @@ public class RemoteControlServer {
         @Override
         public void handle(HttpExchange t) throws IOException {
             String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
+            LiveState state = LiveState.current();
+            Displayable d = state.getDisplayable();
+            // Which slide of a presentation is showing isn't part of the live
+            // state, so only text and media responses can be revalidated
+            boolean slides = d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable;
+            if (!slides && HttpCache.notModified(t, state.getETag("rclyrics"))) {
+                return;
+            }
             if (d instanceof TextDisplayable) {
                 response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
-                response += lyrics(false);
+                response += lyrics(state, false);
             } else if (d instanceof MultimediaDisplayable) {
                 response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
                 response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
                 response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            } else if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
+            } else if (slides) {
                 StringBuilder sb = new StringBuilder();
                 sb.append("\n<html><i>").append(LabelGrabber.INSTANCE.getLabel("currently.displaying.text")).append(": ").append(d.getPreviewText()).append("<br/>" + "</i>");
                 int numberOfImages;
@@ -904,7 +990,7 @@ public class RemoteControlServer {
                     } else {
                         sb.append("<div class=\"inner\">");
                     }
-                    sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\"><img src=\"/slides/slide").append(i + 1).append(".png\" style=\"width:192px;height:108px;\">");
+                    sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\"><img src=\"/slides/slide").append(i + 1).append(".png?size=phone&amp;v=").append(slideCache.getId(d)).append("\" style=\"width:192px;height:108px;\">");
                     sb.append("<br/>Slide ").append(i + 1).append("</p></div><br/><br/>");
                 }
                 response = sb.append("\n</html>").toString();
@@ -914,7 +1000,9 @@ public class RemoteControlServer {
             }
             byte[] bytes = response.getBytes("UTF-8");
 
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+            if (slides) {
+                t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+            }
             t.sendResponseHeaders(200, bytes.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(bytes);
@@ -927,22 +1015,24 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
+            LiveState state = LiveState.current();
+            if (HttpCache.notModified(t, state.getETag("rcchords"))) {
+                return;
+            }
             String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (lp.getDisplayable() instanceof TextDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/>" + "</i>";
-                response += lyrics(true);
-            } else if (lp.getDisplayable() instanceof MultimediaDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/>" + "</i>";
+            Displayable d = state.getDisplayable();
+            if (d instanceof TextDisplayable) {
+                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
+                response += lyrics(state, true);
+            } else if (d instanceof MultimediaDisplayable) {
+                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
                 response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
                 response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            } else if (lp.getDisplayable() != null) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/><br/>" + "</i>";
+            } else if (d != null) {
+                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/><br/>" + "</i>";
                 response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
             }
             byte[] bytes = response.getBytes("UTF-8");
-
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
             t.sendResponseHeaders(200, bytes.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(bytes);
@@ -959,12 +1049,16 @@ public class RemoteControlServer {
      * @return All lyrics formatted in a HTML table
      */
     public String lyrics(boolean chords) {
+        return lyrics(LiveState.current(), chords);
+    }
+
+    private String lyrics(LiveState state, boolean chords) {
         StringBuilder sb = new StringBuilder();
         sb.append("<div id=\"outer\">");
         int i = 0;
-        List<TextSection> textSections = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList().getItems();
-        for (String lyricBlock : getLyrics(chords)) {
-            if (i == RCHandler.currentLyricSection()) {
+        List<TextSection> textSections = state.getSections();
+        for (String lyricBlock : getLyrics(state, chords)) {
+            if (i == state.getSectionIndex()) {
                 sb.append("<div class=\"inner current\">");
             } else {
                 sb.append("<div class=\"inner\">");
@@ -983,17 +1077,16 @@ public class RemoteControlServer {
     }
 
     //Method returns all lyrics as an ArrayList of slides
-    private List<String> getLyrics(boolean chords) {
+    private List<String> getLyrics(LiveState state, boolean chords) {
         try {
-            if (!checkInitialised()) {
+            if (state.getSection() == null) {
                 List<String> tmp = new ArrayList<>();
                 tmp.add("");
                 return tmp;
             }
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.getDisplayable() instanceof TextDisplayable) {
+            if (running && state.getDisplayable() instanceof TextDisplayable) {
                 ArrayList<String> als = new ArrayList<>();
-                for (TextSection currentSection : lp.getLyricsPanel().getLyricsList().getItems()) {
+                for (TextSection currentSection : state.getSections()) {
                     StringBuilder ret = new StringBuilder();
                     for (String line : currentSection.getText(chords, false)) {
                         if (chords) {
@@ -1041,45 +1134,6 @@ public class RemoteControlServer {
         return pageContent;
     }
 
-    /**
-     * A bunch of checks to check whether the live panel that we grab the lyrics
-     * from has fully initialised. Rather hacky but works for now at least.
-     * <p>
-     *
-     * @return true if we're initialised properly and ok to continue, false if
-     * not.
-     */
-    private boolean checkInitialised() {
-        if (QueleaApp.get() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList().getSelectionModel() == null) {
-            return false;
-        }
-        if (QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().getLyricsList().getSelectionModel().getSelectedItem() == null) {
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Read a file and return it as a string.
      * <p>
@@ -1175,76 +1229,6 @@ public class RemoteControlServer {
         }
     }
 
-    private class FileHandler implements HttpHandler {
-
-        private final String file;
-
-        public FileHandler(String file) {
-            this.file = file;
-        }
-
-        @Override
-        public void handle(HttpExchange t) throws IOException {
-            byte[] ret = fileCache.get(file);
-            if (ret == null) {
-                ret = Files.readAllBytes(Paths.get(file));
-                if (USE_CACHE) {
-                    fileCache.put(file, ret);
-                }
-            }
-            t.sendResponseHeaders(200, ret.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(ret);
-            }
-        }
-
-    }
-
-    // Static file handler
-    private class StaticFileHandler implements HttpHandler {
-        private final String baseDirectory;
-        private final String prefix;
-        private final Map<String, byte[]> fileCache = new HashMap<>();
-        private final boolean cacheEnabled = USE_CACHE;
-
-        public StaticFileHandler(String baseDirectory, String prefix) {
-            this.baseDirectory = baseDirectory;
-            this.prefix = prefix;
-        }
-
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            String requestPath = exchange.getRequestURI().getPath();
-            // Remove the prefix from the request path
-            String filePath = baseDirectory + requestPath.replace(prefix, "");
-
-            byte[] fileBytes;
-
-            // Check cache first
-            if (cacheEnabled && fileCache.containsKey(filePath)) {
-                fileBytes = fileCache.get(filePath);
-            } else {
-                // If file is not cached, read it from disk
-                if (Files.exists(Paths.get(filePath))) {
-                    fileBytes = Files.readAllBytes(Paths.get(filePath));
-                    // Store the file in cache if USE_CACHE is enabled
-                    if (cacheEnabled) {
-                        fileCache.put(filePath, fileBytes);
-                    }
-                    exchange.sendResponseHeaders(200, fileBytes.length);
-                } else {
-                    String response = "File not found";
-                    fileBytes = response.getBytes();
-                    exchange.sendResponseHeaders(404, fileBytes.length);
-                }
-            }
-
-            // Send the file or error response
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(fileBytes);
-            }
-        }
-    }
 
     //--------------- Set of MIDI control functions
     private boolean isMidiActive(){
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * Threading for the built in HTTP servers. Left to itself the JDK server
+ * handles every request on its one dispatcher thread, so a phone asking for
+ * slide thumbnails holds up everyone else's "next slide". Each server instead
+ * hands its requests to an executor from here, and the contexts are put in
+ * lanes: control requests run straight away, while ordinary and slow requests
+ * each wait for a permit from their own limited pool. A request that can't
+ * get a permit in time is turned away with a 503 rather than left queueing.
+ * <p/>
+ * @author Michael
+ */
+final class ServerExecutors {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+
+    /**
+     * Don't make me...
+     */
+    private ServerExecutors() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Create the executor a server should handle its requests on.
+     * <p/>
+     * @param name the name of the server, used to name its threads.
+     * @return the executor. It should be shut down when the server stops.
+     */
+    static ExecutorService create(String name) {
+        if (QueleaProperties.get().getServerUseVirtualThreads()) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(Math.max(1, QueleaProperties.get().getServerThreads()), factory);
+    }
+
+    /**
+     * Get a filter that limits how many requests through it are handled at
+     * once. The same filter should be added to every context in a lane.
+     * <p/>
+     * @param lane the name of the lane, for logging.
+     * @param permits the maximum number of requests handled at once.
+     * @param timeout how long a request waits for a permit, in milliseconds.
+     * @return the filter.
+     */
+    static Filter limit(String lane, int permits, long timeout) {
+        return new LimitFilter(lane, Math.max(1, permits), timeout);
+    }
+
+    private static class LimitFilter extends Filter {
+
+        private final String lane;
+        private final Semaphore permits;
+        private final long timeout;
+
+        LimitFilter(String lane, int permits, long timeout) {
+            this.lane = lane;
+            this.permits = new Semaphore(permits, true);
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                LOGGER.log(Level.INFO, "Too busy for {0}, rejecting request", exchange.getRequestURI());
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Limits concurrent " + lane + " requests";
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+import org.quelea.data.displayable.Displayable;
+import org.quelea.data.displayable.ImageGroupDisplayable;
+import org.quelea.data.displayable.PdfDisplayable;
+import org.quelea.data.displayable.PresentationDisplayable;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.Utils;
+
+/**
+ * A cache of encoded slide images for the remote control's /slides endpoint.
+ * Encoding a full size slide as a PNG takes a while and produces megabytes,
+ * so each slide is encoded once per size and the bytes kept. When a
+ * presentation goes live its phone and tablet sized images are encoded in the
+ * background, ready for the first request, from a single render of each
+ * slide; full size images are only encoded when asked for. Slides are
+ * rendered here rather than taken from the presentation's own image cache, so
+ * encoding a deck doesn't push out the slides the panels are showing. Slides
+ * that look like photographs are sent as JPEGs.
+ * <p/>
+ * Each presentation is given an ID that's part of its slide URLs, so clients
+ * can cache the images for as long as they like.
+ * <p/>
+ * @author Michael
+ */
+class SlideImageCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), 36);
+    private static final int MAX_DECKS = 3;
+    private final ExecutorService encoder;
+    private final Map<Displayable, Deck> decks;
+    private int nextId;
+
+    /**
+     * The sizes a slide can be requested at.
+     */
+    enum Size {
+
+        PHONE(480), TABLET(1024), FULL(0);
+        private final int width;
+
+        Size(int width) {
+            this.width = width;
+        }
+
+        /**
+         * Get the size named by the "size" parameter of a query string.
+         * <p/>
+         * @param query the query string, may be null.
+         * @return the size, FULL if none or an unknown one is given.
+         */
+        static Size fromQuery(String query) {
+            String name = getParameter(query, "size");
+            for (Size size : values()) {
+                if (size.name().equalsIgnoreCase(name)) {
+                    return size;
+                }
+            }
+            return FULL;
+        }
+    }
+
+    /**
+     * An encoded slide image.
+     */
+    static final class SlideImage {
+
+        private final byte[] bytes;
+        private final String contentType;
+        private final String etag;
+
+        private SlideImage(byte[] bytes, String contentType) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        String getETag() {
+            return etag;
+        }
+    }
+
+    /**
+     * The encoded images of one presentation.
+     */
+    private static class Deck {
+
+        private final Displayable displayable;
+        private final String id;
+        private final Map<String, CompletableFuture<SlideImage>> images = new ConcurrentHashMap<>();
+        private final AtomicBoolean prepared = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        Deck(Displayable displayable, String id) {
+            this.displayable = displayable;
+            this.id = id;
+        }
+
+        CompletableFuture<SlideImage> get(int slide, Size size) {
+            return images.get(slide + "-" + size);
+        }
+
+        /**
+         * Encode a slide at each of the given sizes it isn't already encoded
+         * or being encoded at, rendering the slide just once for all of them.
+         */
+        void encode(int slide, Size... sizes) {
+            Map<Size, CompletableFuture<SlideImage>> claimed = new EnumMap<>(Size.class);
+            for (Size size : sizes) {
+                CompletableFuture<SlideImage> future = new CompletableFuture<>();
+                if (images.putIfAbsent(slide + "-" + size, future) == null) {
+                    claimed.put(size, future);
+                }
+            }
+            if (claimed.isEmpty()) {
+                return;
+            }
+            try {
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                BufferedImage image = SwingFXUtils.fromFXImage(renderSlide(displayable, slide), null);
+                for (Map.Entry<Size, CompletableFuture<SlideImage>> entry : claimed.entrySet()) {
+                    entry.getValue().complete(SlideImageCache.encode(image, entry.getKey()));
+                }
+            } catch (IOException | RuntimeException ex) {
+                for (CompletableFuture<SlideImage> future : claimed.values()) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Create a new, empty slide image cache.
+     */
+    SlideImageCache() {
+        encoder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Slide encoder");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        decks = new LinkedHashMap<Displayable, Deck>(8, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Displayable, Deck> eldest) {
+                if (size() > MAX_DECKS) {
+                    eldest.getValue().cancel();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Determine if the given displayable has slides this cache can serve.
+     * <p/>
+     * @param d the displayable.
+     * @return true if it's a presentation, PDF or image group.
+     */
+    static boolean hasSlides(Displayable d) {
+        return d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable;
+    }
+
+    /**
+     * Start encoding the phone and tablet sized images of a presentation in
+     * the background. Does nothing if it isn't a presentation, or if it's
+     * already been prepared.
+     * <p/>
+     * @param d the displayable that's gone live.
+     */
+    void prepare(Displayable d) {
+        if (!hasSlides(d)) {
+            return;
+        }
+        Deck deck = getDeck(d);
+        if (!deck.prepared.compareAndSet(false, true)) {
+            return;
+        }
+        int count = getSlideCount(d);
+        for (int i = 1; i <= count; i++) {
+            int slide = i;
+            encoder.execute(() -> deck.encode(slide, Size.PHONE, Size.TABLET));
+        }
+    }
+
+    /**
+     * Get the ID of a presentation, which changes if a different presentation
+     * is shown but stays the same while this one is cached.
+     * <p/>
+     * @param d the presentation.
+     * @return its ID.
+     */
+    String getId(Displayable d) {
+        return getDeck(d).id;
+    }
+
+    /**
+     * Get an encoded slide image, encoding it on this thread if it isn't
+     * already encoded or being encoded.
+     * <p/>
+     * @param d the presentation.
+     * @param slide the number of the slide, starting at 1.
+     * @param size the size wanted.
+     * @return the encoded image, or null if it couldn't be encoded.
+     */
+    SlideImage get(Displayable d, int slide, Size size) {
+        if (!hasSlides(d) || slide < 1 || slide > getSlideCount(d)) {
+            return null;
+        }
+        Deck deck = getDeck(d);
+        deck.encode(slide, size);
+        try {
+            return deck.get(slide, size).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Error encoding slide " + slide, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stop encoding and throw away everything cached.
+     */
+    void close() {
+        encoder.shutdownNow();
+        synchronized (decks) {
+            for (Deck deck : decks.values()) {
+                deck.cancel();
+            }
+            decks.clear();
+        }
+    }
+
+    private Deck getDeck(Displayable d) {
+        synchronized (decks) {
+            Deck deck = decks.get(d);
+            if (deck == null) {
+                deck = new Deck(d, RUN_ID + "-" + nextId++);
+                decks.put(d, deck);
+            }
+            return deck;
+        }
+    }
+
+    private static int getSlideCount(Displayable d) {
+        if (d instanceof PresentationDisplayable) {
+            return ((PresentationDisplayable) d).getPresentation().getSlides().length;
+        } else if (d instanceof PdfDisplayable) {
+            return ((PdfDisplayable) d).getPresentation().getSlides().length;
+        } else {
+            return ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
+        }
+    }
+
+    /**
+     * Render a slide at the projector's size on this thread, without going
+     * through the presentation's cache.
+     */
+    private static Image renderSlide(Displayable d, int slide) throws IOException {
+        if (d instanceof PresentationDisplayable) {
+            return ((PresentationDisplayable) d).getPresentation().getSlide(slide - 1).loadImage(Utils.getProjectorSize());
+        } else if (d instanceof PdfDisplayable) {
+            return ((PdfDisplayable) d).getPresentation().getSlide(slide - 1).loadImage(Utils.getProjectorSize());
+        } else {
+            return ((ImageGroupDisplayable) d).getPresentation().getSlide(slide - 1).loadImage(Utils.getProjectorSize());
+        }
+    }
+
+    /**
+     * Scale and encode a slide image. Photographic slides are encoded as
+     * JPEGs, everything else as PNGs.
+     */
+    private static SlideImage encode(BufferedImage image, Size size) throws IOException {
+        boolean photo = isPhotographic(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (size.width > 0 && width > size.width) {
+            height = Math.max(1, (int) Math.round(height * (double) size.width / width));
+            width = size.width;
+        }
+        BufferedImage scaled = scale(image, width, height, photo ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(scaled, photo ? "jpg" : "png", out);
+        return new SlideImage(out.toByteArray(), photo ? "image/jpeg" : "image/png");
+    }
+
+    /**
+     * Scale an image, halving it in steps first so large reductions don't
+     * alias.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height, int type) {
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    /**
+     * Guess whether an image is a photograph, by counting the distinct colours
+     * in a sample of its pixels. Text and diagrams use a handful of colours;
+     * photographs use thousands.
+     */
+    private static boolean isPhotographic(BufferedImage image) {
+        int step = Math.max(1, (int) Math.sqrt((double) image.getWidth() * image.getHeight() / 4096));
+        Set<Integer> colours = new HashSet<>();
+        for (int y = 0; y < image.getHeight(); y += step) {
+            for (int x = 0; x < image.getWidth(); x += step) {
+                colours.add(image.getRGB(x, y) & 0xFFFFFF);
+                if (colours.size() > 1024) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the value of a parameter from a query string.
+     */
+    static String getParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0 && param.substring(0, eq).equals(name)) {
+                return param.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+}
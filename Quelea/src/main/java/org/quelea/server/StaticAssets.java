@@ -0,0 +1,279 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * The static files (scripts, stylesheets, icons) served by the remote control
+ * and mobile lyrics servers. Each file is read once and kept in memory along
+ * with a gzipped copy if it compresses well, and tagged with a hash of its
+ * content. Clients are sent the gzipped copy if they accept it, get a 304 if
+ * they already have the file, and may cache it forever if they asked for it
+ * by its hash - see fingerprint(). A file that changes on disk is picked up
+ * on the next request.
+ * <p/>
+ * @author Michael
+ */
+final class StaticAssets {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final Pattern STATIC_REFERENCE = Pattern.compile("((?:src|href)=\")(/?static/)([^\"?#]+)\"");
+    private static final Map<Path, Asset> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * A file held in memory.
+     */
+    private static final class Asset {
+
+        private final FileTime modified;
+        private final byte[] bytes;
+        private final byte[] gzipped;
+        private final String contentType;
+        private final String hash;
+
+        Asset(Path path, FileTime modified, byte[] bytes) throws IOException {
+            this.modified = modified;
+            this.bytes = bytes;
+            this.contentType = getContentType(path.getFileName().toString());
+            this.hash = hash(bytes);
+            this.gzipped = isCompressible(contentType) ? gzip(bytes) : null;
+        }
+    }
+
+    /**
+     * Don't make me...
+     */
+    private StaticAssets() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get a handler that serves the files in a directory.
+     * <p/>
+     * @param baseDirectory the directory to serve files from.
+     * @param prefix the context path the handler is registered under, which
+     * is stripped from the request path.
+     * @param preload true to read the whole directory into memory up front,
+     * false to read each file when it's first asked for.
+     * @return the handler.
+     */
+    static HttpHandler directory(String baseDirectory, String prefix, boolean preload) {
+        Path base = Paths.get(baseDirectory).toAbsolutePath().normalize();
+        if (preload) {
+            preload(base);
+        }
+        return exchange -> {
+            String requestPath = exchange.getRequestURI().getPath();
+            Path path = base.resolve(requestPath.substring(Math.min(prefix.length(), requestPath.length()))).normalize();
+            if (!path.startsWith(base)) {
+                notFound(exchange);
+                return;
+            }
+            send(exchange, path);
+        };
+    }
+
+    /**
+     * Get a handler that serves a single file.
+     * <p/>
+     * @param file the file to serve.
+     * @return the handler.
+     */
+    static HttpHandler file(String file) {
+        Path path = Paths.get(file).toAbsolutePath().normalize();
+        return exchange -> send(exchange, path);
+    }
+
+    /**
+     * Add the content hash of each static file referenced from a page to its
+     * URL, so the browser can cache the files forever and still pick up a new
+     * version as soon as the page changes.
+     * <p/>
+     * @param html the page, referencing files as src="static/..." or
+     * href="static/...".
+     * @param baseDirectory the directory the static files are served from.
+     * @return the page with the references fingerprinted.
+     */
+    static String fingerprint(String html, String baseDirectory) {
+        Path base = Paths.get(baseDirectory).toAbsolutePath().normalize();
+        Matcher matcher = STATIC_REFERENCE.matcher(html);
+        StringBuffer ret = new StringBuffer(html.length() + 256);
+        while (matcher.find()) {
+            String replacement = matcher.group();
+            Asset asset = get(base.resolve(matcher.group(3)).normalize());
+            if (asset != null) {
+                replacement = matcher.group(1) + matcher.group(2) + matcher.group(3) + "?v=" + asset.hash + "\"";
+            }
+            matcher.appendReplacement(ret, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(ret);
+        return ret.toString();
+    }
+
+    /**
+     * Read every file in a directory into the cache on a background thread,
+     * so the first client doesn't have to wait for them.
+     */
+    private static void preload(Path base) {
+        Thread thread = new Thread(() -> {
+            try (Stream<Path> files = Files.walk(base)) {
+                files.filter(Files::isRegularFile).forEach(StaticAssets::get);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't preload " + base, ex);
+            }
+        }, "Static asset preloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get a file from the cache, reading it if it isn't there or has changed.
+     * <p/>
+     * @param path the absolute path of the file.
+     * @return the file, or null if it doesn't exist or couldn't be read.
+     */
+    private static Asset get(Path path) {
+        try {
+            if (!Files.isRegularFile(path)) {
+                CACHE.remove(path);
+                return null;
+            }
+            FileTime modified = Files.getLastModifiedTime(path);
+            Asset asset = CACHE.get(path);
+            if (asset == null || !asset.modified.equals(modified)) {
+                asset = new Asset(path, modified, Files.readAllBytes(path));
+                CACHE.put(path, asset);
+            }
+            return asset;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't read " + path, ex);
+            return null;
+        }
+    }
+
+    private static void send(HttpExchange exchange, Path path) throws IOException {
+        Asset asset = get(path);
+        if (asset == null) {
+            notFound(exchange);
+            return;
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = asset.gzipped != null && acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        String etag = "\"" + asset.hash + (gzip ? "-gz" : "") + "\"";
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null && query.contains("v=" + asset.hash)) {
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=31536000, immutable");
+        } else if (HttpCache.notModified(exchange, etag)) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", asset.contentType);
+        if (asset.gzipped != null) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        }
+        byte[] body = gzip ? asset.gzipped : asset.bytes;
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static void notFound(HttpExchange exchange) throws IOException {
+        byte[] bytes = "File not found".getBytes("UTF-8");
+        exchange.sendResponseHeaders(404, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static String getContentType(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".js")) {
+            return "text/javascript; charset=utf-8";
+        } else if (lower.endsWith(".css")) {
+            return "text/css; charset=utf-8";
+        } else if (lower.endsWith(".json")) {
+            return "application/json; charset=utf-8";
+        } else if (lower.endsWith(".svg")) {
+            return "image/svg+xml";
+        } else if (lower.endsWith(".htm") || lower.endsWith(".html")) {
+            return "text/html; charset=utf-8";
+        }
+        String type = URLConnection.guessContentTypeFromName(name);
+        return type == null ? "application/octet-stream" : type;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.contains("json")
+                || contentType.contains("javascript") || contentType.contains("xml");
+    }
+
+    /**
+     * Gzip the given bytes, or return null if that doesn't make them much
+     * smaller.
+     */
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size() < bytes.length * 9 / 10 ? out.toByteArray() : null;
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder ret = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                ret.append(String.format("%02x", digest[i]));
+            }
+            return ret.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.windows.main.QueleaApp;
+import org.quelea.windows.main.ThemePreviewPanel;
+import org.quelea.windows.main.schedule.ScheduleThemeNode;
+
+/**
+ * The theme thumbnails shown by the remote control's theme picker, encoded
+ * once each time the themes change rather than on every request. The FX
+ * thread is only used briefly to snapshot the theme previews; the encoding
+ * happens in the background and requests are answered from the encoded
+ * bytes without going near the FX thread at all.
+ * <p/>
+ * @author Michael
+ */
+class ThemeThumbnailCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private final ExecutorService encoder;
+    private volatile CompletableFuture<List<Thumbnail>> current;
+    private volatile List<Thumbnail> latest;
+
+    /**
+     * A single encoded thumbnail.
+     */
+    static final class Thumbnail {
+
+        private final byte[] bytes;
+        private final String etag;
+
+        private Thumbnail(byte[] bytes) {
+            this.bytes = bytes;
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        String getETag() {
+            return etag;
+        }
+    }
+
+    /**
+     * Create a new, empty thumbnail cache. Nothing is rendered until the
+     * themes change or a thumbnail is asked for.
+     */
+    ThemeThumbnailCache() {
+        encoder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Theme thumbnail encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Throw away the current thumbnails and start rendering new ones. This
+     * can be called from any thread.
+     */
+    void invalidate() {
+        CompletableFuture<List<Thumbnail>> next = new CompletableFuture<>();
+        current = next;
+        Platform.runLater(() -> {
+            List<Image> images = new ArrayList<>();
+            try {
+                ScheduleThemeNode stn = QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getThemeNode();
+                if (stn.getThemePreviews() != null) {
+                    for (Node node : stn.getThemePreviews().getChildren()) {
+                        images.add(node instanceof ThemePreviewPanel ? ((ThemePreviewPanel) node).getThemePreviewImage() : null);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                next.completeExceptionally(ex);
+                return;
+            }
+            encoder.execute(() -> {
+                try {
+                    List<Thumbnail> thumbnails = new ArrayList<>(images.size());
+                    for (Image image : images) {
+                        thumbnails.add(image == null ? null : encode(image));
+                    }
+                    next.complete(Collections.unmodifiableList(thumbnails));
+                } catch (IOException | RuntimeException ex) {
+                    next.completeExceptionally(ex);
+                }
+            });
+        });
+    }
+
+    /**
+     * Get a thumbnail, waiting for it to be rendered if the themes have just
+     * changed. If rendering takes too long the previous thumbnails are used.
+     * <p/>
+     * @param index the index of the theme in the theme picker.
+     * @param timeout how long to wait for rendering, in milliseconds.
+     * @return the thumbnail, or null if there isn't one.
+     */
+    Thumbnail get(int index, long timeout) {
+        CompletableFuture<List<Thumbnail>> future = current;
+        if (future == null) {
+            synchronized (this) {
+                if (current == null) {
+                    invalidate();
+                }
+                future = current;
+            }
+        }
+        List<Thumbnail> thumbnails;
+        try {
+            thumbnails = future.get(timeout, TimeUnit.MILLISECONDS);
+            latest = thumbnails;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            thumbnails = latest;
+        } catch (ExecutionException | TimeoutException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't render theme thumbnails", ex);
+            thumbnails = latest;
+        }
+        if (thumbnails == null || index < 0 || index >= thumbnails.size()) {
+            return null;
+        }
+        return thumbnails.get(index);
+    }
+
+    /**
+     * Stop rendering thumbnails.
+     */
+    void close() {
+        encoder.shutdownNow();
+    }
+
+    private static Thumbnail encode(Image image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(SwingFXUtils.fromFXImage(image, null), "png", output);
+        return new Thumbnail(output.toByteArray());
+    }
+}
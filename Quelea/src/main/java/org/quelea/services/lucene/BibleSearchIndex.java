@@ -21,10 +21,14 @@ package org.quelea.services.lucene;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.lucene.analysis.Analyzer;
@@ -34,46 +38,79 @@ import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
-import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser;
+import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Matches;
+import org.apache.lucene.search.MatchesIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.quelea.data.bible.BibleChapter;
+import org.quelea.data.bible.BibleVerse;
 import org.quelea.services.utils.LoggerUtils;
 
 /**
- * Search index used for indexing the bibles.
+ * Search index used for indexing the bibles. Each verse is indexed as its own
+ * document, with its translation, book, chapter and verse number held as doc
+ * values, so searches come back as individual verses (with the offsets of the
+ * matched words) rather than whole chapters that have to be scanned again.
  * @author Michael
  */
 public class BibleSearchIndex implements SearchIndex<BibleChapter> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
-    private Analyzer analyzer;
-    private Directory index;
-    private Map<Integer, BibleChapter> chapters;
+    private static final FieldType TEXT_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+    private static final Sort VERSE_ORDER = new Sort(
+            new SortField("translation", SortField.Type.STRING),
+            new SortField("book", SortField.Type.INT),
+            new SortField("chapter", SortField.Type.INT),
+            new SortField("verse", SortField.Type.INT));
+
+    static {
+        TEXT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_TYPE.freeze();
+    }
+
+    private final Analyzer analyzer;
+    private final SearchIndexEngine engine;
+    private final Map<Integer, BibleChapter> chapters;
 
     /**
      * Create a new empty search index.
      */
     public BibleSearchIndex() {
-        chapters = new HashMap<>();
+        chapters = new ConcurrentHashMap<>();
+        SearchIndexUtils.deleteStaleTempIndexes("quelea-mmap-bible");
         try {
             analyzer = CustomAnalyzer.builder()
                     .withTokenizer(StandardTokenizerFactory.class)
                     .addTokenFilter(LowerCaseFilterFactory.class)
                     .addTokenFilter(ASCIIFoldingFilterFactory.class)
                     .build();
-            index = new MMapDirectory(Files.createTempDirectory("quelea-mmap-bible").toAbsolutePath());
+            Directory index = new MMapDirectory(Files.createTempDirectory("quelea-mmap-bible").toAbsolutePath());
+            engine = new SearchIndexEngine(index, analyzer, true);
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't create song search index");
             throw new RuntimeException("Couldn't create song search index", ex);
@@ -105,19 +142,63 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      * @param bibleList the list of chapters to add.
      */
     @Override
-    public void addAll(Collection<? extends BibleChapter> bibleList) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
-            for(BibleChapter chapter : bibleList) {
+    public synchronized void addAll(Collection<? extends BibleChapter> bibleList) {
+        try {
+            addChapters(bibleList, () -> false);
+            engine.commit(null);
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
+        }
+    }
+
+    /**
+     * Add some chapters to the index without committing them. This may be
+     * called from several threads at once, such as one per translation, in
+     * which case each thread writes its own segment.
+     * Nothing is visible to searches until commit() is called.
+     *
+     * @param bibleList the chapters to add.
+     * @param cancelled checked between chapters; if it returns true the
+     * remaining chapters are skipped.
+     * @return true if all the chapters were added, false if it was cancelled.
+     * @throws IOException if the chapters couldn't be added.
+     */
+    public boolean addChapters(Collection<? extends BibleChapter> bibleList, BooleanSupplier cancelled) throws IOException {
+        IndexWriter writer = engine.getWriter();
+        for(BibleChapter chapter : bibleList) {
+            if(cancelled.getAsBoolean()) {
+                return false;
+            }
+            String translation = getTranslation(chapter);
+            for(BibleVerse verse : chapter.getVerses()) {
                 Document doc = new Document();
-                doc.add(new TextField("text", chapter.getText(), Field.Store.NO));
-                doc.add(new TextField("number", Integer.toString(chapter.getID()), Field.Store.YES));
+                doc.add(new Field("text", verse.getVerseText(), TEXT_TYPE));
+                doc.add(new StringField("id", Integer.toString(chapter.getID()), Field.Store.NO));
+                doc.add(new StringField("translation", translation, Field.Store.NO));
+                doc.add(new SortedDocValuesField("translation", new BytesRef(translation)));
+                doc.add(new NumericDocValuesField("id", chapter.getID()));
+                doc.add(new NumericDocValuesField("book", chapter.getBook() == null ? 0 : chapter.getBook().getBookNumber()));
+                doc.add(new NumericDocValuesField("chapter", chapter.getNum()));
+                doc.add(new NumericDocValuesField("verse", verse.getNum()));
                 writer.addDocument(doc);
-                chapters.put(chapter.getID(), chapter);
-                LOGGER.log(Level.FINE, "Added bible chapter to index: {0}", chapter.getID());
             }
+            chapters.put(chapter.getID(), chapter);
+            LOGGER.log(Level.FINE, "Added bible chapter to index: {0}", chapter.getID());
+        }
+        return true;
+    }
+
+    /**
+     * Commit everything added with addChapters() so it's visible to
+     * searches.
+     */
+    public synchronized void commit() {
+        try {
+            engine.commit(null);
         }
         catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
+            LOGGER.log(Level.SEVERE, "Couldn't commit the index", ex);
         }
     }
 
@@ -127,15 +208,41 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      * @param chapter the chapter to remove.
      */
     @Override
-    public void remove(BibleChapter chapter) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
-            writer.deleteDocuments(new Term("number", Integer.toString(chapter.getID())));
+    public synchronized void remove(BibleChapter chapter) {
+        try {
+            engine.getWriter().deleteDocuments(new Term("id", Integer.toString(chapter.getID())));
+            engine.commit(null);
+            chapters.remove(chapter.getID());
         }
         catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
         }
     }
 
+    /**
+     * Remove the given bible chapters from the index in one go, such as all
+     * the chapters of a translation.
+     *
+     * @param bibleList the chapters to remove.
+     */
+    public synchronized void removeAll(Collection<? extends BibleChapter> bibleList) {
+        Term[] terms = new Term[bibleList.size()];
+        int i = 0;
+        for(BibleChapter chapter : bibleList) {
+            terms[i++] = new Term("id", Integer.toString(chapter.getID()));
+        }
+        try {
+            engine.getWriter().deleteDocuments(terms);
+            engine.commit(null);
+            for(BibleChapter chapter : bibleList) {
+                chapters.remove(chapter.getID());
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't remove values from index", ex);
+        }
+    }
+
     /**
      * Update the given bible chapter in the index.
      *
@@ -156,38 +263,157 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      */
     @Override
     public BibleChapter[] filter(String queryString, FilterType type) {
-        String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
-        if(chapters.isEmpty() || sanctifyQueryString.isEmpty()) {
+        if(chapters.isEmpty() || SearchIndexUtils.makeLuceneQuery(queryString).isEmpty()) {
             return chapters.values().toArray(new BibleChapter[chapters.size()]);
         }
-        List<BibleChapter> ret;
-        try (DirectoryReader dr = DirectoryReader.open(index)) {
-            IndexSearcher searcher = new IndexSearcher(dr);
+        Set<BibleChapter> ret = new LinkedHashSet<>();
+        for(BibleSearchResult result : search(queryString, null, false)) {
+            ret.add(result.getVerse().getChapter());
+        }
+        return ret.toArray(new BibleChapter[ret.size()]);
+    }
+
+    /**
+     * Search for the verses that match the given query, in bible order.
+     *
+     * @param queryString the query string to search for.
+     * @param translation the name of the bible to search, or null to search
+     * all of them.
+     * @param allWords true if the verses should contain a word starting with
+     * each word of the query in any order, false if they should contain the
+     * query as a phrase (with a partial match for the last word.)
+     * @return the matching verses, with the offsets of the matches in each.
+     */
+    public List<BibleSearchResult> search(String queryString, String translation, boolean allWords) {
+        List<BibleSearchResult> ret = new ArrayList<>();
+        if(chapters.isEmpty()) {
+            return ret;
+        }
+        try {
             BooleanQuery.setMaxClauseCount(Integer.MAX_VALUE);
-            Query q = new ComplexPhraseQueryParser("text", analyzer).parse(sanctifyQueryString);
-            TopScoreDocCollector collector = TopScoreDocCollector.create(10000,10000);
-            searcher.search(q, collector);
-            ScoreDoc[] hits = collector.topDocs().scoreDocs;
-            ret = new ArrayList<>();
-            for(int i = 0; i < hits.length; ++i) {
-                int docId = hits[i].doc;
-                Document d = searcher.doc(docId);
-                BibleChapter chapter = chapters.get(Integer.parseInt(d.get("number")));
-                ret.add(chapter);
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            boolean empty = true;
+            for(String word : allWords ? queryString.trim().split("\\s+") : new String[]{queryString}) {
+                String sanctifyWord = SearchIndexUtils.makeLuceneQuery(word);
+                if(!sanctifyWord.isEmpty()) {
+                    builder.add(new ComplexPhraseQueryParser("text", analyzer).parse(sanctifyWord), BooleanClause.Occur.MUST);
+                    empty = false;
+                }
             }
-            return ret.toArray(new BibleChapter[ret.size()]);
+            if(empty) {
+                return ret;
+            }
+            if(translation != null) {
+                builder.add(new TermQuery(new Term("translation", translation)), BooleanClause.Occur.FILTER);
+            }
+            Query q = builder.build();
+            return engine.search(searcher -> collect(searcher, q));
         }
         catch (ParseException | IOException ex) {
-            LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
-            return new BibleChapter[0];
+            LOGGER.log(Level.WARNING, "Invalid query string: " + queryString, ex);
+            return ret;
         }
     }
-    
+
+    /**
+     * Run the given query and turn the hits into verses with match offsets.
+     * The doc values are read in doc ID order, since that's the only way
+     * they can be iterated, then the results are put back in bible order.
+     * Every hit is collected, since sorting by verse would otherwise cut off
+     * the end of the bible rather than the weakest matches.
+     */
+    private List<BibleSearchResult> collect(IndexSearcher searcher, Query q) throws IOException {
+        int count = searcher.count(q);
+        if(count == 0) {
+            return new ArrayList<>();
+        }
+        ScoreDoc[] hits = searcher.search(q, count, VERSE_ORDER).scoreDocs;
+        Integer[] byDoc = new Integer[hits.length];
+        for(int i = 0; i < hits.length; i++) {
+            byDoc[i] = i;
+        }
+        Arrays.sort(byDoc, (a, b) -> Integer.compare(hits[a].doc, hits[b].doc));
+        Weight weight = searcher.createWeight(searcher.rewrite(q), ScoreMode.COMPLETE_NO_SCORES, 1);
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        BibleSearchResult[] results = new BibleSearchResult[hits.length];
+        LeafReaderContext leaf = null;
+        NumericDocValues ids = null;
+        NumericDocValues verseNums = null;
+        for(int i : byDoc) {
+            int doc = hits[i].doc;
+            if(leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                ids = DocValues.getNumeric(leaf.reader(), "id");
+                verseNums = DocValues.getNumeric(leaf.reader(), "verse");
+            }
+            int leafDoc = doc - leaf.docBase;
+            if(!ids.advanceExact(leafDoc) || !verseNums.advanceExact(leafDoc)) {
+                continue;
+            }
+            BibleChapter chapter = chapters.get((int) ids.longValue());
+            BibleVerse verse = chapter == null ? null : chapter.getVerse((int) verseNums.longValue());
+            if(verse != null) {
+                results[i] = new BibleSearchResult(verse, getOffsets(weight.matches(leaf, leafDoc)));
+            }
+        }
+        List<BibleSearchResult> ret = new ArrayList<>(hits.length);
+        for(BibleSearchResult result : results) {
+            if(result != null) {
+                ret.add(result);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the offsets of the matches in the text field, as sorted and merged
+     * start / end pairs.
+     */
+    private static int[] getOffsets(Matches matches) throws IOException {
+        MatchesIterator it = matches == null ? null : matches.getMatches("text");
+        if(it == null) {
+            return new int[0];
+        }
+        List<int[]> found = new ArrayList<>();
+        while(it.next()) {
+            if(it.startOffset() >= 0) {
+                found.add(new int[]{it.startOffset(), it.endOffset()});
+            }
+        }
+        found.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] ret = new int[found.size() * 2];
+        int n = 0;
+        for(int[] match : found) {
+            if(n > 0 && match[0] <= ret[n - 1]) {
+                ret[n - 1] = Math.max(ret[n - 1], match[1]);
+            }
+            else {
+                ret[n++] = match[0];
+                ret[n++] = match[1];
+            }
+        }
+        return Arrays.copyOf(ret, n);
+    }
+
+    private static String getTranslation(BibleChapter chapter) {
+        if(chapter.getBook() == null || chapter.getBook().getBible() == null || chapter.getBook().getBible().getName() == null) {
+            return "";
+        }
+        return chapter.getBook().getBible().getName();
+    }
+
     /**
      * Remove everything from this index.
      */
     @Override
-    public void clear() {
-        SearchIndexUtils.clearIndex(index);
+    public synchronized void clear() {
+        try {
+            engine.getWriter().deleteAll();
+            engine.commit(null);
+            chapters.clear();
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        }
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import org.quelea.data.bible.BibleVerse;
+
+/**
+ * A single verse returned from a bible search, along with the character
+ * offsets of the matches in its text.
+ *
+ * @author Michael
+ */
+public class BibleSearchResult {
+
+    private final BibleVerse verse;
+    private final int[] offsets;
+
+    /**
+     * Create a new search result.
+     *
+     * @param verse the verse that matched.
+     * @param offsets the start and end offsets of each match in the verse
+     * text, as consecutive pairs in ascending order.
+     */
+    public BibleSearchResult(BibleVerse verse, int[] offsets) {
+        this.verse = verse;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Get the verse that matched.
+     *
+     * @return the verse.
+     */
+    public BibleVerse getVerse() {
+        return verse;
+    }
+
+    /**
+     * Get the number of matches in the verse text.
+     *
+     * @return the number of matches.
+     */
+    public int getMatchCount() {
+        return offsets.length / 2;
+    }
+
+    /**
+     * Get the offset in the verse text of the start of the given match.
+     *
+     * @param i the index of the match.
+     * @return the offset of the first character of the match.
+     */
+    public int getMatchStart(int i) {
+        return offsets[i * 2];
+    }
+
+    /**
+     * Get the offset in the verse text of the end of the given match.
+     *
+     * @param i the index of the match.
+     * @return the offset after the last character of the match.
+     */
+    public int getMatchEnd(int i) {
+        return offsets[i * 2 + 1];
+    }
+
+    /**
+     * Get the verse text with each match surrounded by the given markers.
+     *
+     * @param before the marker to insert before each match.
+     * @param after the marker to insert after each match.
+     * @return the highlighted verse text.
+     */
+    public String highlight(String before, String after) {
+        String text = verse.getVerseText();
+        StringBuilder ret = new StringBuilder(text.length() + getMatchCount() * (before.length() + after.length()));
+        int pos = 0;
+        for (int i = 0; i < getMatchCount(); i++) {
+            int start = Math.max(pos, Math.min(getMatchStart(i), text.length()));
+            int end = Math.max(start, Math.min(getMatchEnd(i), text.length()));
+            ret.append(text, pos, start).append(before).append(text, start, end).append(after);
+            pos = end;
+        }
+        ret.append(text.substring(pos));
+        return ret.toString();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * The lucene plumbing shared by the search indexes. There's one long-lived
+ * writer per index, and searches go through a near-real-time searcher manager
+ * that's refreshed whenever changes are committed. Searches don't lock
+ * anything, so any number of threads can query the index at once while it's
+ * being written to.
+ *
+ * @author Michael
+ */
+class SearchIndexEngine implements Closeable {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    /**
+     * A search to run against the current searcher.
+     *
+     * @param <R> the result type of the search.
+     */
+    interface Search<R> {
+
+        R search(IndexSearcher searcher) throws IOException;
+    }
+
+    /**
+     * Open an engine on the given directory.
+     *
+     * @param directory the directory holding the index.
+     * @param analyzer the analyzer used when adding documents.
+     * @param create true if any existing index in the directory should be
+     * discarded, false if it should be appended to.
+     * @throws IOException if the index couldn't be opened.
+     */
+    SearchIndexEngine(Directory directory, Analyzer analyzer, boolean create) throws IOException {
+        this.directory = directory;
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(create ? IndexWriterConfig.OpenMode.CREATE : IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Get the directory backing this engine.
+     *
+     * @return the index directory.
+     */
+    Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the shared writer. Changes made through it become visible to
+     * searches after the next call to commit().
+     *
+     * @return the index writer.
+     */
+    IndexWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Commit any pending changes and refresh the searcher so they're visible.
+     *
+     * @param commitData the user data to store with this commit, or null to
+     * keep the existing data.
+     * @throws IOException if the commit failed.
+     */
+    void commit(Map<String, String> commitData) throws IOException {
+        if (commitData != null) {
+            writer.setLiveCommitData(commitData.entrySet());
+        }
+        writer.commit();
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Run a search against the latest refreshed searcher.
+     *
+     * @param <R> the result type.
+     * @param search the search to run.
+     * @return the result of the search.
+     * @throws IOException if the index couldn't be read.
+     */
+    <R> R search(Search<R> search) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return search.search(searcher);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Close the searcher manager and the writer, committing anything pending.
+     */
+    @Override
+    public void close() {
+        try {
+            searcherManager.close();
+            writer.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close search index", ex);
+        }
+    }
+}
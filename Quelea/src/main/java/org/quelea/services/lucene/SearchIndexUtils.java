@@ -18,15 +18,11 @@
  */
 package org.quelea.services.lucene;
 
-import java.io.IOException;
+import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import org.apache.lucene.analysis.CharArraySet;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.store.Directory;
+import org.apache.commons.io.FileUtils;
 import org.quelea.services.utils.LoggerUtils;
 
 /**
@@ -46,17 +42,20 @@ public class SearchIndexUtils {
     }
 
     /**
-     * Clear the given index.
+     * Delete any index directories left behind in the system temp directory by
+     * older versions, which created a fresh temporary index on every launch.
      * <p/>
-     * @param index the index to clear.
+     * @param prefix the prefix of the temporary directory names to delete.
      */
-    public static void clearIndex(Directory index) {
-        try(IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(new StandardAnalyzer(CharArraySet.EMPTY_SET)))) {
-            writer.deleteAll();
-            writer.commit();
+    public static void deleteStaleTempIndexes(String prefix) {
+        File[] stale = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith(prefix));
+        if(stale == null) {
+            return;
         }
-        catch(IOException ex) {
-            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        for(File dir : stale) {
+            if(dir.isDirectory() && FileUtils.deleteQuietly(dir)) {
+                LOGGER.log(Level.FINE, "Deleted stale index directory {0}", dir.getAbsolutePath());
+            }
         }
     }
 
@@ -18,14 +18,15 @@
  */
 package org.quelea.services.lucene;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -36,52 +37,142 @@ import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.ThreadInterruptedException;
 import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.services.utils.LineTypeChecker;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
- * The search index of songs.
+ * The search index of songs. The index is kept on disk under the Quelea user
+ * home and reused between launches - each document carries a hash of the
+ * indexed content, and the commit carries a stamp of the whole song table, so
+ * only songs that have changed since the last launch need to be re-indexed.
  *
  * @author Michael
  */
 public class SongSearchIndex implements SearchIndex<SongDisplayable> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * Bump this whenever the document layout changes so old indexes are
+     * rebuilt rather than reused.
+     */
+    private static final String FORMAT_VERSION = "3";
+    private static final String FORMAT_KEY = "quelea.format";
+    private static final String STAMP_KEY = "quelea.songstamp";
+    private static final String ID_FIELD = "id";
+    private static final String HASH_FIELD = "hash";
+    private static final Pattern NON_WORD = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
+    /**
+     * The most songs a single search returns.
+     */
+    private static final int MAX_RESULTS = 1000;
     private final Analyzer analyzer;
-    private final Directory index;
-    private final Map<Long, SongDisplayable> songs;
+    private final SearchIndexEngine engine;
+    /**
+     * The indexed songs by ID. This is replaced rather than cleared when the
+     * index is resynchronised, so searches running at the same time see
+     * either the old songs or the new ones and never an empty map.
+     */
+    private volatile Map<Long, SongDisplayable> songs;
+    private final Map<Long, Long> hashes;
+    private long stamp;
 
     /**
-     * Create a new empty search index.
+     * Create a new search index backed by the default index directory in the
+     * Quelea user home.
      */
     public SongSearchIndex() {
-        songs = new HashMap<>();
+        this(new File(QueleaProperties.get().getIndexDir(), "songs"));
+    }
+
+    /**
+     * Create a new search index backed by the given directory, reusing any
+     * compatible index that is already there.
+     *
+     * @param indexDir the directory to store the index in.
+     */
+    public SongSearchIndex(File indexDir) {
+        songs = new ConcurrentHashMap<>();
+        hashes = new HashMap<>();
         try {
             analyzer = CustomAnalyzer.builder()
                     .withTokenizer(StandardTokenizerFactory.class)
                     .addTokenFilter(LowerCaseFilterFactory.class)
                     .addTokenFilter(ASCIIFoldingFilterFactory.class)
                     .build();
-            index = new MMapDirectory(Files.createTempDirectory("quelea-mmap-song").toAbsolutePath());
+            indexDir.mkdirs();
+            Directory directory = new MMapDirectory(indexDir.toPath());
+            Long committedStamp = readCommittedStamp(directory);
+            stamp = committedStamp == null ? 0 : committedStamp;
+            engine = new SearchIndexEngine(directory, analyzer, committedStamp == null);
+            if (committedStamp == null) {
+                engine.commit(commitData(stamp));
+            }
         }
         catch(IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't create song search index");
             throw new RuntimeException("Couldn't create song search index", ex);
         }
+        SearchIndexUtils.deleteStaleTempIndexes("quelea-mmap-song");
+    }
+
+    /**
+     * Read the song table stamp from the last commit of the on-disk index.
+     *
+     * @param directory the index directory.
+     * @return the committed stamp, or null if there's no usable index and it
+     * should be created from scratch.
+     */
+    private static Long readCommittedStamp(Directory directory) {
+        try {
+            if (!DirectoryReader.indexExists(directory)) {
+                return null;
+            }
+            Map<String, String> userData = SegmentInfos.readLatestCommit(directory).getUserData();
+            if (FORMAT_VERSION.equals(userData.get(FORMAT_KEY)) && userData.containsKey(STAMP_KEY)) {
+                return Long.parseLong(userData.get(STAMP_KEY));
+            }
+            LOGGER.log(Level.INFO, "Song search index is from an older version, rebuilding");
+        } catch (IOException | NumberFormatException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't read song search index, rebuilding", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Close the underlying index, committing anything that's pending. The
+     * index can't be used after this has been called.
+     */
+    public synchronized void close() {
+        engine.close();
     }
 
     @Override
@@ -89,6 +180,84 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
         return songs.size();
     }
 
+    /**
+     * Bring the on-disk index in line with the given songs, which should be
+     * the full contents of the song database. If the stamp of the songs matches
+     * the one committed with the index nothing is written at all, otherwise
+     * only the songs that were added, changed or removed are re-indexed.
+     *
+     * @param current all the songs currently in the database.
+     */
+    public synchronized void sync(Collection<? extends SongDisplayable> current) {
+        Map<Long, SongDisplayable> synced = new ConcurrentHashMap<>();
+        hashes.clear();
+        long currentStamp = 0;
+        for (SongDisplayable song : current) {
+            long hash = hash(song);
+            synced.put(song.getID(), song);
+            hashes.put(song.getID(), hash);
+            currentStamp += stampOf(song.getID(), hash);
+        }
+        songs = synced;
+        if (currentStamp == stamp) {
+            LOGGER.log(Level.INFO, "Song search index is up to date ({0} songs)", songs.size());
+            return;
+        }
+        Map<Long, Long> indexed = readIndexedHashes();
+        int changed = 0;
+        int removed = 0;
+        try {
+            IndexWriter writer = engine.getWriter();
+            for (SongDisplayable song : current) {
+                Long indexedHash = indexed.remove(song.getID());
+                if (indexedHash == null || indexedHash.longValue() != hashes.get(song.getID())) {
+                    writer.updateDocument(idTerm(song.getID()), createDocument(song, hashes.get(song.getID())));
+                    changed++;
+                }
+            }
+            for (Long staleId : indexed.keySet()) {
+                writer.deleteDocuments(idTerm(staleId));
+                removed++;
+            }
+            stamp = currentStamp;
+            engine.commit(commitData(stamp));
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't synchronise song search index", ex);
+        }
+        LOGGER.log(Level.INFO, "Song search index synchronised: {0} songs re-indexed, {1} removed", new Object[]{changed, removed});
+    }
+
+    /**
+     * Read the content hash of every song currently in the on-disk index.
+     *
+     * @return a map of song ID to content hash.
+     */
+    private Map<Long, Long> readIndexedHashes() {
+        try {
+            return engine.search(searcher -> {
+                Map<Long, Long> ret = new HashMap<>();
+                for (LeafReaderContext ctx : searcher.getIndexReader().leaves()) {
+                    LeafReader leaf = ctx.reader();
+                    NumericDocValues ids = leaf.getNumericDocValues(ID_FIELD);
+                    NumericDocValues docHashes = leaf.getNumericDocValues(HASH_FIELD);
+                    if (ids == null || docHashes == null) {
+                        continue;
+                    }
+                    Bits live = leaf.getLiveDocs();
+                    for (int doc = ids.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = ids.nextDoc()) {
+                        if ((live == null || live.get(doc)) && docHashes.advanceExact(doc)) {
+                            ret.put(ids.longValue(), docHashes.longValue());
+                        }
+                    }
+                }
+                return ret;
+            });
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't read indexed songs, re-indexing everything", ex);
+            return new HashMap<>();
+        }
+    }
+
     /**
      * Add a song to the index.
      *
@@ -110,24 +279,20 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public synchronized void addAll(Collection<? extends SongDisplayable> songList) {
-        Pattern p = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
+        try {
+            IndexWriter writer = engine.getWriter();
             for (SongDisplayable song : songList) {
-                Document doc = new Document();
-                if (song.getTitle() != null) {
-                    doc.add(new TextField("title", p.matcher(song.getTitle()).replaceAll(""), Field.Store.NO));
-                }
-                if (song.getAuthor() != null) {
-                    doc.add(new TextField("author", p.matcher(song.getAuthor()).replaceAll(""), Field.Store.NO));
+                long hash = hash(song);
+                writer.updateDocument(idTerm(song.getID()), createDocument(song, hash));
+                Long oldHash = hashes.put(song.getID(), hash);
+                if (oldHash != null) {
+                    stamp -= stampOf(song.getID(), oldHash);
                 }
-                if (song.getLyrics(false, false, false) != null) {
-                    doc.add(new TextField("lyrics", p.matcher(song.getLyrics(false, false, false)).replaceAll(""), Field.Store.NO));
-                }
-                doc.add(new TextField("number", p.matcher(Long.toString(song.getID())).replaceAll(""), Field.Store.YES));
-                writer.addDocument(doc);
+                stamp += stampOf(song.getID(), hash);
                 songs.put(song.getID(), song);
                 LOGGER.log(Level.FINE, "Added song to index: {0}", song.getTitle());
             }
+            engine.commit(commitData(stamp));
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
         }
@@ -140,21 +305,27 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public synchronized void remove(SongDisplayable song) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
-            writer.deleteDocuments(new Term("number", Long.toString(song.getID())));
+        try {
+            engine.getWriter().deleteDocuments(idTerm(song.getID()));
+            Long oldHash = hashes.remove(song.getID());
+            if (oldHash != null) {
+                stamp -= stampOf(song.getID(), oldHash);
+            }
+            songs.remove(song.getID());
+            engine.commit(commitData(stamp));
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
         }
     }
 
     /**
-     * Update the given song in the index.
+     * Update the given song in the index. Documents are keyed on the song ID,
+     * so this replaces the old document in a single operation.
      *
      * @param song the song to update.
      */
     @Override
     public void update(SongDisplayable song) {
-        remove(song);
         add(song);
     }
 
@@ -164,55 +335,53 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      * @param id the id of the song.
      * @return the song with the given id.
      */
-    public synchronized SongDisplayable getByID(long id) {
+    public SongDisplayable getByID(long id) {
         return songs.get(id);
     }
 
     /**
-     * Search for songs that match the given filter.
+     * Search for songs that match the given filter. This doesn't lock the
+     * index, so it's safe to call from any number of threads at once.
      *
      * @param queryString the query to use to search.
      * @param type TITLE or BODY, depending on what to search in. BODY is
-     * equivalent to the lyrics, TITLE the title.
+     * equivalent to the lyrics, TITLE the title. Songs whose title matches are
+     * left out of BODY results.
      * @return an array of songs that match the filter.
      */
     @Override
-    public synchronized SongDisplayable[] filter(String queryString, FilterType type) {
+    public SongDisplayable[] filter(String queryString, FilterType type) {
         String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
-        if (songs.isEmpty() || sanctifyQueryString.trim().isEmpty()) {
-            return songs.values().toArray(new SongDisplayable[songs.size()]);
-        }
-        String typeStr;
-        if (type == FilterType.BODY) {
-            typeStr = "lyrics";
-        } else if (type == FilterType.TITLE) {
-            typeStr = "title";
-        } else if (type == FilterType.AUTHOR) {
-            typeStr = "author";
-        } else {
+        Map<Long, SongDisplayable> indexed = songs;
+        if (indexed.isEmpty() || sanctifyQueryString.trim().isEmpty()) {
+            return indexed.values().toArray(new SongDisplayable[0]);
+        }
+        if (type == null) {
             LOGGER.log(Level.SEVERE, "Unknown type: {0}", type);
             return new SongDisplayable[0];
         }
-        List<SongDisplayable> ret;
-        try (DirectoryReader dr = DirectoryReader.open(index)) {
-            IndexSearcher searcher = new IndexSearcher(dr);
-            Query q = new ComplexPhraseQueryParser(typeStr, analyzer).parse(sanctifyQueryString);
-            TopScoreDocCollector collector = TopScoreDocCollector.create(1000,10000);
-            searcher.search(q, collector);
-            ScoreDoc[] hits = collector.topDocs().scoreDocs;
-            ret = new ArrayList<>();
-            for (int i = 0; i < hits.length; ++i) {
-                int docId = hits[i].doc;
-                Document d = searcher.doc(docId);
-                final Long songNumber = Long.parseLong(d.get("number"));
-                SongDisplayable song = songs.get(songNumber);
-                ret.add(song);
-            }
+        try {
+            Query q = parse(sanctifyQueryString, type);
             if (type == FilterType.BODY) {
-                for (SongDisplayable song : filter(queryString, FilterType.TITLE)) {
-                    ret.remove(song);
-                }
+                q = new BooleanQuery.Builder()
+                        .add(q, BooleanClause.Occur.MUST)
+                        .add(parse(sanctifyQueryString, FilterType.TITLE), BooleanClause.Occur.MUST_NOT)
+                        .build();
             }
+            final Query query = q;
+            List<SongDisplayable> ret = engine.search(searcher -> {
+                TopScoreDocCollector collector = TopScoreDocCollector.create(MAX_RESULTS, 10000);
+                searcher.search(query, collector);
+                ScoreDoc[] hits = collector.topDocs().scoreDocs;
+                List<SongDisplayable> found = new ArrayList<>();
+                for (int i = 0; i < hits.length; ++i) {
+                    SongDisplayable song = getSong(searcher, hits[i].doc);
+                    if (song != null) {
+                        found.add(song);
+                    }
+                }
+                return found;
+            });
             return ret.toArray(new SongDisplayable[ret.size()]);
         }
         catch(ClosedByInterruptException|ThreadInterruptedException ex) {
@@ -225,11 +394,202 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
         }
     }
 
+    /**
+     * Search the title, lyrics and author of every song in a single query.
+     * Each song appears at most once in the results, which are ranked by
+     * score with title matches boosted above author matches, and author
+     * matches above lyric matches.
+     *
+     * @param queryString the query to use to search.
+     * @return the matching songs in rank order, or an empty list if the query
+     * is empty or invalid.
+     */
+    public List<SongSearchResult> search(String queryString) {
+        String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
+        if (songs.isEmpty() || sanctifyQueryString.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            final FilterType[] fields = {FilterType.TITLE, FilterType.BODY, FilterType.AUTHOR};
+            final Query[] fieldQueries = new Query[fields.length];
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            for (int i = 0; i < fields.length; i++) {
+                fieldQueries[i] = parse(sanctifyQueryString, fields[i]);
+                builder.add(new BoostQuery(fieldQueries[i], getBoost(fields[i])), BooleanClause.Occur.SHOULD);
+            }
+            final Query query = builder.build();
+            return engine.search(searcher -> {
+                ScoreDoc[] hits = searcher.search(query, MAX_RESULTS).scoreDocs;
+                Weight[] weights = new Weight[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    weights[i] = searcher.createWeight(searcher.rewrite(fieldQueries[i]), ScoreMode.COMPLETE_NO_SCORES, 1);
+                }
+                List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+                List<SongSearchResult> ret = new ArrayList<>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    SongDisplayable song = getSong(searcher, hit.doc);
+                    if (song == null) {
+                        continue;
+                    }
+                    LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(hit.doc, leaves));
+                    FilterType matched = fields[fields.length - 1];
+                    for (int i = 0; i < fields.length; i++) {
+                        if (weights[i].matches(leaf, hit.doc - leaf.docBase) != null) {
+                            matched = fields[i];
+                            break;
+                        }
+                    }
+                    ret.add(new SongSearchResult(song, matched, hit.score));
+                }
+                return ret;
+            });
+        }
+        catch(ClosedByInterruptException|ThreadInterruptedException ex) {
+            //Ignore, thread is being shut down by other character being typed
+            return new ArrayList<>();
+        }
+        catch (ParseException | IOException ex) {
+            LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
+            return new ArrayList<>();
+        }
+    }
+
+    private Query parse(String sanctifyQueryString, FilterType type) throws ParseException {
+        return new ComplexPhraseQueryParser(getFieldName(type), analyzer).parse(sanctifyQueryString);
+    }
+
+    private SongDisplayable getSong(IndexSearcher searcher, int docId) throws IOException {
+        Document d = searcher.doc(docId);
+        return songs.get(Long.parseLong(d.get("number")));
+    }
+
+    private static String getFieldName(FilterType type) {
+        switch (type) {
+            case BODY:
+                return "lyrics";
+            case AUTHOR:
+                return "author";
+            default:
+                return "title";
+        }
+    }
+
+    private static float getBoost(FilterType type) {
+        switch (type) {
+            case TITLE:
+                return 4;
+            case AUTHOR:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
     /**
      * Remove everything from this index.
      */
     @Override
     public synchronized void clear() {
-        SearchIndexUtils.clearIndex(index);
+        try {
+            engine.getWriter().deleteAll();
+            songs = new ConcurrentHashMap<>();
+            hashes.clear();
+            stamp = 0;
+            engine.commit(commitData(stamp));
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        }
+    }
+
+    /**
+     * Create the lucene document for the given song.
+     *
+     * @param song the song to index.
+     * @param hash the content hash of the song.
+     * @return the document to add to the index.
+     */
+    private Document createDocument(SongDisplayable song, long hash) {
+        Document doc = new Document();
+        if (song.getTitle() != null) {
+            doc.add(new TextField("title", NON_WORD.matcher(song.getTitle()).replaceAll(""), Field.Store.NO));
+        }
+        if (song.getAuthor() != null) {
+            doc.add(new TextField("author", NON_WORD.matcher(song.getAuthor()).replaceAll(""), Field.Store.NO));
+        }
+        doc.add(new TextField("lyrics", NON_WORD.matcher(searchableLyrics(song)).replaceAll(""), Field.Store.NO));
+        doc.add(new StringField("number", Long.toString(song.getID()), Field.Store.YES));
+        doc.add(new NumericDocValuesField(ID_FIELD, song.getID()));
+        doc.add(new NumericDocValuesField(HASH_FIELD, hash));
+        return doc;
+    }
+
+    /**
+     * Get the lyrics of a song to index without its chords. They're taken
+     * from the raw lyrics so songs that haven't been parsed yet don't have to
+     * be.
+     *
+     * @param song the song.
+     * @return the lyrics to index.
+     */
+    private static String searchableLyrics(SongDisplayable song) {
+        StringBuilder ret = new StringBuilder();
+        for (String line : song.getRawLyrics().replace("<>", " ").split("\n")) {
+            if (new LineTypeChecker(line).getLineType() != LineTypeChecker.Type.CHORDS) {
+                ret.append(line.replace("_", "")).append("\n");
+            }
+        }
+        return ret.toString();
+    }
+
+    private static Term idTerm(long id) {
+        return new Term("number", Long.toString(id));
+    }
+
+    /**
+     * Get the format version and song table stamp to store with a commit.
+     */
+    private static Map<String, String> commitData(long stamp) {
+        Map<String, String> data = new HashMap<>();
+        data.put(FORMAT_KEY, FORMAT_VERSION);
+        data.put(STAMP_KEY, Long.toString(stamp));
+        return data;
+    }
+
+    /**
+     * Get a 64 bit FNV-1a hash of everything about a song that ends up in
+     * the index, so changed songs can be detected without re-indexing them.
+     * This uses the raw lyrics so that lazily loaded songs don't have to be
+     * parsed just to check whether they've changed.
+     */
+    private static long hash(SongDisplayable song) {
+        long h = 0xcbf29ce484222325L;
+        h = hash(h, song.getTitle());
+        h = hash(h, song.getAuthor());
+        h = hash(h, song.getRawLyrics());
+        return h;
+    }
+
+    private static long hash(long h, String str) {
+        if (str != null) {
+            for (int i = 0; i < str.length(); i++) {
+                h ^= str.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        }
+        h ^= 0xff;
+        h *= 0x100000001b3L;
+        return h;
+    }
+
+    /**
+     * Get the contribution of one song to the stamp of the whole table. The
+     * stamp is a plain sum so it can be updated incrementally on add / remove.
+     */
+    private static long stampOf(long id, long hash) {
+        long h = hash ^ (id * 0x9e3779b97f4a7c15L);
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
     }
 }
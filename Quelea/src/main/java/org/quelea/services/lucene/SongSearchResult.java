@@ -0,0 +1,77 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.services.lucene.SearchIndex.FilterType;
+
+/**
+ * A single song returned from a multi-field song search, along with the field
+ * it matched on.
+ *
+ * @author Michael
+ */
+public class SongSearchResult {
+
+    private final SongDisplayable song;
+    private final FilterType matchedField;
+    private final float score;
+
+    /**
+     * Create a new search result.
+     *
+     * @param song the song that matched.
+     * @param matchedField the most relevant field the song matched on.
+     * @param score the score of the song in the search.
+     */
+    public SongSearchResult(SongDisplayable song, FilterType matchedField, float score) {
+        this.song = song;
+        this.matchedField = matchedField;
+        this.score = score;
+    }
+
+    /**
+     * Get the song that matched.
+     *
+     * @return the song.
+     */
+    public SongDisplayable getSong() {
+        return song;
+    }
+
+    /**
+     * Get the field the song matched on. If the song matched on more than one
+     * field, this is the title in preference to the lyrics, and the lyrics in
+     * preference to the author.
+     *
+     * @return the matched field.
+     */
+    public FilterType getMatchedField() {
+        return matchedField;
+    }
+
+    /**
+     * Get the score of this result, taking the field boosts into account.
+     *
+     * @return the score.
+     */
+    public float getScore() {
+        return score;
+    }
+}
@@ -968,6 +968,27 @@ public final class QueleaProperties extends SortedProperties {
         return new File(getQueleaUserHome(), "bibles");
     }
 
+    /**
+     * Get the directory used for caching the bibles in their binary form.
+     * <p>
+     *
+     * @return the bible cache directory.
+     */
+    public File getBibleCacheDir() {
+        return new File(getQueleaUserHome(), "biblecache");
+    }
+
+    /**
+     * Get the directory used for caching the thumbnails shown in the image and
+     * video libraries.
+     * <p>
+     *
+     * @return the thumbnail cache directory.
+     */
+    public File getThumbnailCacheDir() {
+        return new File(getQueleaUserHome(), "thumbnailcache");
+    }
+
     /**
      * Get the directory used for storing images.
      * <p>
@@ -1008,6 +1029,16 @@ public final class QueleaProperties extends SortedProperties {
         return new File(getQueleaUserHome(), "temp");
     }
 
+    /**
+     * Get the directory used for storing the persistent search indexes.
+     * <p>
+     *
+     * @return the index directory
+     */
+    public File getIndexDir() {
+        return new File(getQueleaUserHome(), "index");
+    }
+
     /**
      * Get the extension used for quelea schedules.
      * <p>
@@ -2567,6 +2598,102 @@ public final class QueleaProperties extends SortedProperties {
         return Boolean.parseBoolean(getProperty(disableDirectShowForWVC1Key, "true"));
     }
 
+    /**
+     * Get the maximum number of songs that are kept fully loaded (with their
+     * lyrics parsed into sections) in memory at once.
+     *
+     * @return the maximum number of fully loaded songs.
+     */
+    public int getSongCacheSize() {
+        return Integer.parseInt(getProperty(songCacheSizeKey, "500"));
+    }
+
+    /**
+     * Determine whether the remote control and mobile lyrics servers should
+     * handle each request on its own virtual thread, rather than on a fixed
+     * pool of threads.
+     *
+     * @return true if virtual threads should be used, false otherwise.
+     */
+    public boolean getServerUseVirtualThreads() {
+        return Boolean.parseBoolean(getProperty(serverVirtualThreadsKey, "true"));
+    }
+
+    /**
+     * Get the number of threads the servers use to handle requests when
+     * virtual threads are turned off.
+     *
+     * @return the number of request threads.
+     */
+    public int getServerThreads() {
+        return Integer.parseInt(getProperty(serverThreadsKey, "16"));
+    }
+
+    /**
+     * Get the maximum number of ordinary requests a server handles at once.
+     * Control requests (next, previous, status and so on) aren't counted.
+     *
+     * @return the maximum number of concurrent requests.
+     */
+    public int getServerMaxRequests() {
+        return Integer.parseInt(getProperty(serverMaxRequestsKey, "32"));
+    }
+
+    /**
+     * Get how long, in milliseconds, an ordinary request waits for its turn
+     * before the server gives up and tells the client to try again.
+     *
+     * @return the request timeout in milliseconds.
+     */
+    public int getServerRequestTimeout() {
+        return Integer.parseInt(getProperty(serverRequestTimeoutKey, "5000"));
+    }
+
+    /**
+     * Get the maximum number of slow requests (those that render slides or
+     * theme thumbnails) a server handles at once.
+     *
+     * @return the maximum number of concurrent slow requests.
+     */
+    public int getServerMaxSlowRequests() {
+        return Integer.parseInt(getProperty(serverMaxSlowRequestsKey, "2"));
+    }
+
+    /**
+     * Get how long, in milliseconds, a slow request waits for its turn before
+     * the server gives up and tells the client to try again.
+     *
+     * @return the slow request timeout in milliseconds.
+     */
+    public int getServerSlowRequestTimeout() {
+        return Integer.parseInt(getProperty(serverSlowRequestTimeoutKey, "10000"));
+    }
+
+    /**
+     * Get the most frames per second of a video that should be shown. Frames
+     * that arrive faster than this are dropped rather than drawn. 0 means the
+     * refresh rate of the display.
+     *
+     * @return the maximum video frame rate, or 0 for the display refresh rate.
+     */
+    public double getVideoMaxFrameRate() {
+        return Double.parseDouble(getProperty(videoMaxFrameRateKey, "0"));
+    }
+
+    /**
+     * Get the number of videos the video library should make previews of at
+     * once. 0 means one per processor core.
+     *
+     * @return the number of video previews to make at once, at least 1.
+     */
+    public int getVideoPreviewThreads() {
+        int threads = Integer.parseInt(getProperty(videoPreviewThreadsKey, "0"));
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, threads);
+    }
+
 	//---------------------MIDI section
     public boolean getUseMidiControl() {
         return Boolean.parseBoolean(getProperty(midiEnabled, "true"));
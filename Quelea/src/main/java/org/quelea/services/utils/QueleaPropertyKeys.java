@@ -142,6 +142,15 @@ public class QueleaPropertyKeys {
     public static final String useDefaultTranslation = "use.default.translation";
     public static final String defaultTranslationName = "default.translation.name";
     public static final String disableDirectShowForWVC1Key = "disable.directshow.for.wvc1";
+    public static final String songCacheSizeKey = "song.cache.size";
+    public static final String serverVirtualThreadsKey = "server.virtual.threads";
+    public static final String serverThreadsKey = "server.threads";
+    public static final String serverMaxRequestsKey = "server.max.requests";
+    public static final String serverRequestTimeoutKey = "server.request.timeout";
+    public static final String serverMaxSlowRequestsKey = "server.max.slow.requests";
+    public static final String serverSlowRequestTimeoutKey = "server.slow.request.timeout";
+    public static final String videoMaxFrameRateKey = "video.max.frame.rate";
+    public static final String videoPreviewThreadsKey = "video.preview.threads";
 
 	// ----------------- MIDI section begin -----------------
     public static final String midiEnabled = "midi.enabled";// midi
@@ -17,6 +17,7 @@
  */
 package org.quelea.services.utils;
 
+import java.util.regex.Pattern;
 import org.apache.commons.text.similarity.LevenshteinDistance;
 import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.SongDisplayable;
@@ -29,6 +30,9 @@ import org.quelea.data.displayable.SongDisplayable;
  */
 public class SongDuplicateChecker {
 
+    private static final Pattern COMMENT = Pattern.compile("//(lyrics|chords|title)\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NON_LETTER = Pattern.compile("[^\\p{L}]");
+
     public static void main(String[] args) {
         new SongDuplicateChecker().checkSongs(null);
     }
@@ -37,13 +41,13 @@ public class SongDuplicateChecker {
         final SongDisplayable[] songs = SongManager.get().getSongs();
         final String[] songLyrics = new String[songs.length];
         for (int i = 0; i < songLyrics.length; i++) {
-            songLyrics[i] = songs[i].getLyrics(false, false, false).replaceAll("[^\\p{L}]", "");
+            songLyrics[i] = comparableLyrics(songs[i]);
         }
         boolean[] sameArr = new boolean[newSongs.length];
         for(int i=0 ; i<newSongs.length ; i++) {
             //System.out.println(i + " of " + newSongs.length);
             SongDisplayable newSong = newSongs[i];
-            String newLyrics = newSong.getLyrics(false, false, false).replaceAll("[^\\p{L}]", "");
+            String newLyrics = comparableLyrics(newSong);
             int distance = new AparapiLevenshteinDistance().leastCompare(newLyrics, songLyrics);
             if(distance<30) {
                 sameArr[i] = true;
@@ -64,9 +68,9 @@ public class SongDuplicateChecker {
      * false otherwise.
      */
     public boolean checkSong(SongDisplayable newSong) {
+        String newLyrics = comparableLyrics(newSong);
         for(SongDisplayable databaseSong : SongManager.get().getSongs()) {
-            String databaseLyrics = databaseSong.getLyrics(false, false, false).replaceAll("[^\\p{L}]", "");
-            String newLyrics = newSong.getLyrics(false, false, false).replaceAll("[^\\p{L}]", "");
+            String databaseLyrics = comparableLyrics(databaseSong);
             int maxDistance;
             if(newLyrics.length() < databaseLyrics.length()) {
                 maxDistance = newLyrics.length() / 10;
@@ -80,4 +84,22 @@ public class SongDuplicateChecker {
         }
         return false;
     }
+
+    /**
+     * Get the letters of a song's lyrics, without its chords or comments, to
+     * compare it with others. They're taken from the raw lyrics so the songs
+     * in the database don't all have to be loaded and parsed to check one.
+     *
+     * @param song the song.
+     * @return the letters of the lyrics.
+     */
+    private static String comparableLyrics(SongDisplayable song) {
+        StringBuilder ret = new StringBuilder();
+        for (String line : song.getRawLyrics().replace("<>", " ").split("\n")) {
+            if (new LineTypeChecker(line).getLineType() != LineTypeChecker.Type.CHORDS) {
+                ret.append(COMMENT.matcher(line).replaceAll(""));
+            }
+        }
+        return NON_LETTER.matcher(ret).replaceAll("");
+    }
 }
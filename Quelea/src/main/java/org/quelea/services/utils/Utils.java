@@ -70,6 +70,7 @@ import javafx.embed.swing.SwingFXUtils;
 import javafx.event.EventHandler;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
+import javafx.geometry.Dimension2D;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
 import javafx.scene.control.ToggleButton;
@@ -320,6 +321,33 @@ public final class Utils {
 		return new BoundingBox(rect.getMinX(), rect.getMinY(), rect.getWidth(), rect.getHeight());
 	}
 
+	/**
+	 * Get the size of the projector output in device pixels, for sizing
+	 * images that are going to be shown on it. If there's no projector (or it's
+	 * set to a screen that isn't there) a 1920x1080 output is assumed.
+	 * <p/>
+	 * @return the size of the projector output.
+	 */
+	public static Dimension2D getProjectorSize() {
+		QueleaProperties props = QueleaProperties.get();
+		if (props.isProjectorModeCoords()) {
+			Bounds coords = props.getProjectorCoords();
+			if (coords.getWidth() > 0 && coords.getHeight() > 0) {
+				return new Dimension2D(coords.getWidth(), coords.getHeight());
+			}
+		} else {
+			ObservableList<Screen> screens = Screen.getScreens();
+			int screen = props.getProjectorScreen();
+			if (screen >= 0 && screen < screens.size()) {
+				Screen projector = screens.get(screen);
+				Rectangle2D bounds = projector.getBounds();
+				return new Dimension2D(bounds.getWidth() * projector.getOutputScaleX(),
+						bounds.getHeight() * projector.getOutputScaleY());
+			}
+		}
+		return new Dimension2D(1920, 1080);
+	}
+
 	/**
 	 * Determine if we're running in a 64 bit JVM.
 	 * <p/>
@@ -0,0 +1,123 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * Font metrics that work at any size without measuring again. The advance of
+ * each character is measured once per font at a large reference size and
+ * scaled linearly, so the width of a string at a given size is just a sum -
+ * no Font or Text node per size tried. This makes it cheap to try lots of
+ * sizes when fitting text; since hinting and kerning mean the scaled widths
+ * can be very slightly out, the size finally chosen should be checked with
+ * FXFontMetrics.
+ * <p/>
+ * This class is thread safe.
+ *
+ * @author Michael
+ */
+public final class GlyphMetrics {
+
+    private static final double REFERENCE_SIZE = 256;
+    private static final Map<String, GlyphMetrics> METRICS = new ConcurrentHashMap<>();
+    private final String fontName;
+    private final double lineHeight;
+    private final double bracketWidth;
+    private final double[] latinAdvances;
+    private final Map<Character, Double> otherAdvances = new ConcurrentHashMap<>();
+
+    private GlyphMetrics(String fontName) {
+        this.fontName = fontName;
+        Text text = new Text();
+        text.setFont(new Font(fontName, REFERENCE_SIZE));
+        lineHeight = text.getLayoutBounds().getHeight() / REFERENCE_SIZE;
+        text.setText("HH");
+        bracketWidth = text.getLayoutBounds().getWidth();
+        latinAdvances = new double[256];
+        Arrays.fill(latinAdvances, Double.NaN);
+    }
+
+    /**
+     * Get the metrics for the given font. Only the font's name is used; the
+     * metrics work for any size.
+     *
+     * @param font the font.
+     * @return the metrics for that font.
+     */
+    public static GlyphMetrics get(Font font) {
+        return METRICS.computeIfAbsent(font.getName(), GlyphMetrics::new);
+    }
+
+    /**
+     * Get the height of a line of text at the given size.
+     *
+     * @param size the font size.
+     * @return the line height.
+     */
+    public double getLineHeight(double size) {
+        return lineHeight * size;
+    }
+
+    /**
+     * Get the width of a string at the given size.
+     *
+     * @param str the string to measure, null is treated as empty.
+     * @param size the font size.
+     * @return the width of the string.
+     */
+    public double computeStringWidth(String str, double size) {
+        if (str == null) {
+            return 0;
+        }
+        double width = 0;
+        for (int i = 0; i < str.length(); i++) {
+            width += getAdvance(str.charAt(i));
+        }
+        return width * size;
+    }
+
+    /**
+     * Get the advance of a character at size 1.
+     */
+    private double getAdvance(char c) {
+        if (c < latinAdvances.length) {
+            double advance = latinAdvances[c];
+            if (Double.isNaN(advance)) {
+                advance = measure(c);
+                latinAdvances[c] = advance;
+            }
+            return advance;
+        }
+        return otherAdvances.computeIfAbsent(c, this::measure);
+    }
+
+    /**
+     * Measure a character between two others, so characters like spaces that
+     * have no width of their own on the end of a string still count.
+     */
+    private double measure(char c) {
+        Text text = new Text("H" + c + "H");
+        text.setFont(new Font(fontName, REFERENCE_SIZE));
+        return Math.max(0, text.getLayoutBounds().getWidth() - bracketWidth) / REFERENCE_SIZE;
+    }
+}
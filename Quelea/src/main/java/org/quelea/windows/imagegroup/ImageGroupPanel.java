@@ -136,7 +136,7 @@ public class ImageGroupPanel extends AbstractPanel {
     }
 
     private void drawSlide(ImageGroupSlide newSlide, DisplayCanvas canvas) {
-        Image displayImage = newSlide.getImage();
+        Image displayImage = newSlide.getImage(this);
         ImageDisplayable imageDisplayable = new ImageDisplayable(displayImage);
         drawer.setCanvas(canvas);
         drawer.draw(imageDisplayable);
@@ -162,6 +162,9 @@ public class ImageGroupPanel extends AbstractPanel {
         if (this.displayable == displayable) {
             return;
         }
+        if (this.displayable != null) {
+            this.displayable.getPresentation().release(this);
+        }
         this.displayable = displayable;
         if (displayable == null) {
             imageGroupPreview.clear();
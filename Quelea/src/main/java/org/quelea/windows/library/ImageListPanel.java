@@ -60,7 +60,6 @@ public class ImageListPanel extends BorderPane {
     private static final String BORDER_STYLE_DESELECTED = "-fx-padding: 0.2em;-fx-border-color: rgb(0,0,0,0);-fx-border-radius: 5;-fx-border-width: 0.1em;";
     private final TilePane imageList;
     private String dir;
-    private Thread updateThread;
 
     /**
      * Create a new image list panel.
@@ -122,54 +121,54 @@ public class ImageListPanel extends BorderPane {
     private void updateImages() {
         imageList.getChildren().clear();
         final File[] files = new File(dir).listFiles();
-        if(updateThread != null && updateThread.isAlive()) {
+        if(files == null) {
             return;
         }
-        updateThread = new Thread(() -> {
-            for(final File file : files) {
-                if(Utils.fileIsImage(file) && !file.isDirectory()) {
-                    final HBox viewBox = new HBox();
-                    final ImageView view = new ImageView(ImageManager.INSTANCE.getImage(file.toURI().toString(), 160, 90, false));
-                    view.setPreserveRatio(true);
-                    view.setFitWidth(160);
-                    view.setFitHeight(90);
-                    view.setOnMouseClicked((MouseEvent t) -> {
-                        if(t.getButton() == MouseButton.PRIMARY && t.getClickCount() > 1) {
-                            QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().add(new ImageDisplayable(file));
-                        }
-                        else if(t.getButton() == MouseButton.SECONDARY) {
-                            ContextMenu removeMenu = new ContextMenu();
-                            MenuItem removeItem = new MenuItem(LabelGrabber.INSTANCE.getLabel("remove.image.text"));
-                            removeItem.setOnAction(actionEvent -> {
-                                final boolean[] reallyDelete = new boolean[]{false};
-                                Dialog.buildConfirmation(LabelGrabber.INSTANCE.getLabel("delete.image.title"),
-                                        LabelGrabber.INSTANCE.getLabel("delete.image.confirmation"))
-                                        .addYesButton(actionEvent1 -> reallyDelete[0] = true)
-                                        .addNoButton(actionEvent1 -> {
-                                        }).build().showAndWait();
-                                if(reallyDelete[0]) {
-                                    file.delete();
-                                    imageList.getChildren().remove(viewBox);
-                                }
-                            });
-                            removeMenu.getItems().add(removeItem);
-                            removeMenu.show(view, t.getScreenX(), t.getScreenY());
-                        }
-                    });
-                    view.setOnDragDetected(mouseEvent -> {
-                        Dragboard db = startDragAndDrop(TransferMode.ANY);
-                        ClipboardContent content = new ClipboardContent();
-                        content.putString(file.getAbsolutePath());
-                        db.setContent(content);
-                        mouseEvent.consume();
-                    });
-                    viewBox.getChildren().add(view);
-                    setupHover(viewBox);
-                    Platform.runLater(() -> imageList.getChildren().add(viewBox));
-                }
+        for(final File file : files) {
+            if(Utils.fileIsImage(file) && !file.isDirectory()) {
+                final HBox viewBox = new HBox();
+                final ImageView view = new ImageView();
+                view.setPreserveRatio(true);
+                view.setFitWidth(ThumbnailStore.WIDTH);
+                view.setFitHeight(ThumbnailStore.HEIGHT);
+                viewBox.setMinSize(ThumbnailStore.WIDTH, ThumbnailStore.HEIGHT);
+                view.setOnMouseClicked((MouseEvent t) -> {
+                    if(t.getButton() == MouseButton.PRIMARY && t.getClickCount() > 1) {
+                        QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().add(new ImageDisplayable(file));
+                    }
+                    else if(t.getButton() == MouseButton.SECONDARY) {
+                        ContextMenu removeMenu = new ContextMenu();
+                        MenuItem removeItem = new MenuItem(LabelGrabber.INSTANCE.getLabel("remove.image.text"));
+                        removeItem.setOnAction(actionEvent -> {
+                            final boolean[] reallyDelete = new boolean[]{false};
+                            Dialog.buildConfirmation(LabelGrabber.INSTANCE.getLabel("delete.image.title"),
+                                    LabelGrabber.INSTANCE.getLabel("delete.image.confirmation"))
+                                    .addYesButton(actionEvent1 -> reallyDelete[0] = true)
+                                    .addNoButton(actionEvent1 -> {
+                                    }).build().showAndWait();
+                            if(reallyDelete[0]) {
+                                file.delete();
+                                imageList.getChildren().remove(viewBox);
+                            }
+                        });
+                        removeMenu.getItems().add(removeItem);
+                        removeMenu.show(view, t.getScreenX(), t.getScreenY());
+                    }
+                });
+                view.setOnDragDetected(mouseEvent -> {
+                    Dragboard db = startDragAndDrop(TransferMode.ANY);
+                    ClipboardContent content = new ClipboardContent();
+                    content.putString(file.getAbsolutePath());
+                    db.setContent(content);
+                    mouseEvent.consume();
+                });
+                viewBox.getChildren().add(view);
+                setupHover(viewBox);
+                imageList.getChildren().add(viewBox);
+                ThumbnailStore.get(file, f -> ImageManager.INSTANCE.getImage(f.toURI().toString(), ThumbnailStore.WIDTH * 2, ThumbnailStore.HEIGHT * 2, true))
+                        .thenAccept(image -> Platform.runLater(() -> view.setImage(image)));
             }
-        });
-        updateThread.start();
+        }
     }
 
     private void setupHover(final Node view) {
@@ -36,15 +36,17 @@ import org.quelea.data.bible.Bible;
 import org.quelea.data.bible.BibleChangeListener;
 import org.quelea.data.bible.BibleManager;
 import org.quelea.data.bible.BibleVerse;
-import org.quelea.data.bible.BibleChapter;
 import org.quelea.data.displayable.BiblePassage;
+import org.quelea.services.lucene.BibleSearchResult;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.schedule.SchedulePanel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The panel used to search and manage Bible passages.
@@ -81,6 +83,9 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
     // List to hold Bible verses currently being managed or displayed
     private final List<BibleVerse> verses;
 
+    // The search result for each verse, holding the offsets of the matched words
+    private final Map<BibleVerse, BibleSearchResult> results;
+
     // To keep track of the selected verse
     private BibleVerse selectedVerse;
 
@@ -94,6 +99,7 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
     public LibraryBibleSearchPanel() {
         // Initialize the list of verses
         verses = new ArrayList<>();
+        results = new IdentityHashMap<>();
         selectedVerse = null;
 
         // Initialize the search field before it is used
@@ -228,6 +234,7 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
     private void resetPreviewToCleared() {
         setMatchesCount(0);
         verses.clear();
+        results.clear();
         selectedVerse = null;
         clearPreview();
         updateButtonState(); // Disable buttons when no verse is selected
@@ -302,7 +309,11 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
 
                 // Clear previous results
                 verses.clear();
-                verses.addAll( performSearch(searchTextFinal) );
+                results.clear();
+                for (BibleSearchResult result : performSearch(searchTextFinal)) {
+                    verses.add(result.getVerse());
+                    results.put(result.getVerse(), result);
+                }
 
                 // Auto-select the first verse from the search results if available
                 if (!verses.isEmpty()) {
@@ -324,18 +335,15 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
 
     /**
      * Perform a search operation on the input text and return the matching verses.
+     * The index matches each word of the search against the start of the words in
+     * the verses, and gives back the offsets of the matches for highlighting.
      *
      * @param searchText the text to search for.
      * @return a list of matching Bible verses.
      */
-    private List<BibleVerse> performSearch(String searchText) {
-        List<BibleVerse> matchingVerses = new ArrayList<>();
-
-        // Trim leading and trailing white space
-        searchText = searchText.trim();
-
+    private List<BibleSearchResult> performSearch(String searchText) {
         // Tokenize the searchText by splitting on whitespace
-        String[] tokens = searchText.split("\\s+");
+        String[] tokens = searchText.trim().split("\\s+");
 
         // Find the longest token
         String longestToken = Arrays.stream(tokens)
@@ -343,44 +351,16 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
                 .orElse("");
 
         // Check if the longest token is longer than 3 characters
-        if (longestToken.length() > minSearchChar) {
-            final BibleChapter[] initialResults = BibleManager.get().getIndex().filter(longestToken, null);
-
-            if (!longestToken.isEmpty()) {
-                // Iterate over filtered chapters
-                for (BibleChapter chapter : initialResults) {
-                    // Check if either all Bibles are selected or the current Bible matches the selection
-                    if (bibleSelector.getSelectionModel().getSelectedIndex() == 0 ||
-                            chapter.getBook().getBible().getName().equals(bibleSelector.getSelectionModel().getSelectedItem().getName())) {
-                        // Iterate over the verses in the chapter
-                        for (BibleVerse verse : chapter.getVerses()) {
-                            boolean allTokensMatch = false;
-                            if (!postFilterBeginsWith) {
-                                // Check if all tokens (from the original search) are present in the verse text
-                                allTokensMatch = Arrays.stream(tokens)
-                                        .allMatch(token -> verse.getVerseText().toLowerCase().contains(token.toLowerCase()));
-                            }
-                            else {
-                                // Split the verse text once into words
-                                String[] words = verse.getVerseText().toLowerCase().split("\\s+");
-
-                                // Check if all tokens match any word that starts with the token
-                                allTokensMatch = Arrays.stream(tokens)
-                                        .allMatch(token -> Arrays.stream(words)
-                                                .anyMatch(word -> word.startsWith(token.toLowerCase())));
-                            }
-
-                            // If all tokens match, add the verse to the results
-                            if (allTokensMatch) {
-                                matchingVerses.add(verse);  // Add matching verse
-                            }
-                        }
-                    }
-                }
-            }
+        if (longestToken.length() <= minSearchChar) {
+            return new ArrayList<>();
         }
 
-        return matchingVerses;
+        // Either search all Bibles, or restrict the search to the selected one
+        String translation = null;
+        if (bibleSelector.getSelectionModel().getSelectedIndex() != 0 && bibleSelector.getSelectionModel().getSelectedItem() != null) {
+            translation = bibleSelector.getSelectionModel().getSelectedItem().getName();
+        }
+        return BibleManager.get().getIndex().search(searchText, translation, postFilterBeginsWith);
     }
 
     /**
@@ -472,7 +452,7 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
             htmlContent.append(String.format(
                     "<p id='%s' style='border: 2px solid %s; background-color: %s; %s' onclick='selectVerse(\"%s\")'><strong>%s %d:%d</strong> %s</p>",
                     verseId, borderColor, backgroundColorStyle, paragraphStyle, verseId, bookName, verse.getChapter().getNum(), verse.getNum(),
-                    verse.getVerseText()));
+                    getHighlightedText(verse)));
         }
 
         htmlContent.append(
@@ -504,6 +484,17 @@ public class LibraryBibleSearchPanel extends VBox implements BibleChangeListener
         return htmlContent.toString();
     }
     
+    /**
+     * Get the text of the given verse with the matched words highlighted.
+     */
+    private String getHighlightedText(BibleVerse verse) {
+        BibleSearchResult result = results.get(verse);
+        if (result == null) {
+            return verse.getVerseText();
+        }
+        return result.highlight("<mark>", "</mark>");
+    }
+
     private void renderSearchResults(List<BibleVerse> results) {
         String searchResultsWebView = buildSearchResultsView(results);
         webEngine.loadContent(searchResultsWebView);
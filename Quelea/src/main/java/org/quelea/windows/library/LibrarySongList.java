@@ -17,7 +17,9 @@
  */
 package org.quelea.windows.library;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -45,7 +47,7 @@ import javafx.scene.text.Text;
 import javafx.util.Callback;
 import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.SongDisplayable;
-import org.quelea.services.lucene.SongSearchIndex;
+import org.quelea.services.lucene.SongSearchResult;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.utils.SongDisplayableList;
@@ -224,37 +226,31 @@ public class LibrarySongList extends StackPane {
                 songs.addAll(m);
                 LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
             } else {
-                TreeSet<SongDisplayable> m = new TreeSet<>();
-                LOGGER.log(Level.INFO, "Filtering songs by title");
-                SongDisplayable[] titleSongs = SongManager.get().getIndex().filter(search, SongSearchIndex.FilterType.TITLE);
-                LOGGER.log(Level.INFO, "Filtered songs by title");
-                for (SongDisplayable song : titleSongs) {
-                    song.setLastSearch(search);
-                    m.add(song);
-                }
-                songs.addAll(m);
-                m.clear();
-                LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
-
-                LOGGER.log(Level.INFO, "Filtering songs by lyrics");
-                SongDisplayable[] lyricSongs = SongManager.get().getIndex().filter(search, SongSearchIndex.FilterType.BODY);
-                LOGGER.log(Level.INFO, "Filtered songs by lyrics");
-                for (SongDisplayable song : lyricSongs) {
-                    song.setLastSearch(null);
-                    m.add(song);
-                }
-                songs.addAll(m);
-                m.clear();
-                LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
-
-                LOGGER.log(Level.INFO, "Filtering songs by author");
-                SongDisplayable[] authorSongs = SongManager.get().getIndex().filter(search, SongSearchIndex.FilterType.AUTHOR);
-                LOGGER.log(Level.INFO, "Filtered songs by author");
-                for (SongDisplayable song : authorSongs) {
-                    m.add(song);
+                //Keep the order the index ranked the songs in within each group
+                Set<SongDisplayable> titleSongs = new LinkedHashSet<>();
+                Set<SongDisplayable> lyricSongs = new LinkedHashSet<>();
+                Set<SongDisplayable> authorSongs = new LinkedHashSet<>();
+                LOGGER.log(Level.INFO, "Filtering songs");
+                for (SongSearchResult result : SongManager.get().getIndex().search(search)) {
+                    SongDisplayable song = result.getSong();
+                    switch (result.getMatchedField()) {
+                        case TITLE:
+                            song.setLastSearch(search);
+                            titleSongs.add(song);
+                            break;
+                        case BODY:
+                            song.setLastSearch(null);
+                            lyricSongs.add(song);
+                            break;
+                        default:
+                            song.setLastSearch(null);
+                            authorSongs.add(song);
+                    }
                 }
-                songs.addAll(m);
-                m.clear();
+                LOGGER.log(Level.INFO, "Filtered songs");
+                songs.addAll(titleSongs);
+                songs.addAll(lyricSongs);
+                songs.addAll(authorSongs);
                 LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
             }
 
@@ -40,6 +40,7 @@ public class LibrarySongPreviewCanvas extends StackPane {
     private FadeTransition trans;
     private DisplayCanvas canvas;
     private SongDisplayable displayable;
+    private final WordDrawer drawer = new LyricDrawer();
 
     /**
      * Create the loading pane.
@@ -48,6 +49,7 @@ public class LibrarySongPreviewCanvas extends StackPane {
         setMaxSize(250, 167);
         canvas = new DisplayCanvas(false, this::updateCanvas, DisplayCanvas.Priority.LOW);
         canvas.setMaxSize(250, 167);
+        drawer.setCanvas(canvas);
         getChildren().add(canvas);
         setOpacity(0);
         setVisible(false);
@@ -55,8 +57,6 @@ public class LibrarySongPreviewCanvas extends StackPane {
     }
 
     public void updateCanvas() {
-        WordDrawer drawer = new LyricDrawer();
-        drawer.setCanvas(canvas);
         if (displayable == null || displayable.getSections().length == 0) {
             drawer.eraseText();
         } else {
@@ -103,6 +103,7 @@ public class LibrarySongPreviewCanvas extends StackPane {
             @Override
             public void handle(ActionEvent t) {
                 setVisible(false);
+                drawer.dispose();
             }
         });
     }
@@ -0,0 +1,218 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.library;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * The thumbnails shown in the image and video libraries, kept on disk so
+ * they're only made once rather than every time the library is shown.
+ * <p/>
+ * A thumbnail is keyed by the path, modification time and size of its file,
+ * so a file that's changed gets a new thumbnail. Thumbnails that aren't on
+ * disk yet are made in the background by a pool of threads, and each
+ * one is handed back as soon as it's ready so the panels can fill their
+ * tiles in as they go.
+ * <p/>
+ * Reading a thumbnail marks it as used, and the first time the store is used
+ * in a run it deletes the thumbnails that haven't been used for a few months,
+ * along with any half written files left behind, so the cache doesn't keep
+ * growing as files are added to and removed from the libraries.
+ * <p/>
+ * @author Michael
+ */
+final class ThumbnailStore {
+
+    /**
+     * Makes a thumbnail for a file.
+     */
+    interface Generator {
+
+        /**
+         * Make a thumbnail for a file.
+         * <p/>
+         * @param file the file.
+         * @return the full size image to make the thumbnail from, or null if
+         * there isn't one.
+         */
+        Image generate(File file) throws Exception;
+    }
+
+    static final int WIDTH = 160;
+    static final int HEIGHT = 90;
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * Video previews spend most of their time waiting on GStreamer, so there
+     * are as many threads as there are preview pipelines.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            QueleaProperties.get().getVideoPreviewThreads(), r -> {
+                Thread thread = new Thread(r, "Library thumbnail");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+    private static final Map<String, CompletableFuture<Image>> PENDING = new ConcurrentHashMap<>();
+    private static final long MAX_AGE = TimeUnit.DAYS.toMillis(90);
+    private static final long MAX_TEMP_AGE = TimeUnit.HOURS.toMillis(1);
+    private static final AtomicBoolean PRUNED = new AtomicBoolean();
+
+    /**
+     * Don't make me...
+     */
+    private ThumbnailStore() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the thumbnail for a file, reading it from disk or making it in the
+     * background.
+     * <p/>
+     * @param file the file.
+     * @param generator what to make the thumbnail with if it isn't on disk.
+     * @return the thumbnail, which completes with null if there isn't one.
+     */
+    static CompletableFuture<Image> get(File file, Generator generator) {
+        if (PRUNED.compareAndSet(false, true)) {
+            EXECUTOR.execute(ThumbnailStore::prune);
+        }
+        String prefix = hash(file.getAbsolutePath()) + "_";
+        String name = prefix + Long.toHexString(file.lastModified()) + "_" + Long.toHexString(file.length()) + ".png";
+        CompletableFuture<Image> future = PENDING.computeIfAbsent(name,
+                k -> CompletableFuture.supplyAsync(() -> load(file, generator, prefix, name), EXECUTOR));
+        future.whenComplete((image, ex) -> PENDING.remove(name, future));
+        return future;
+    }
+
+    private static Image load(File file, Generator generator, String prefix, String name) {
+        File dir = QueleaProperties.get().getThumbnailCacheDir();
+        File stored = new File(dir, name);
+        if (stored.exists()) {
+            Image image = new Image(stored.toURI().toString());
+            if (!image.isError()) {
+                stored.setLastModified(System.currentTimeMillis());
+                return image;
+            }
+        }
+        Image source;
+        try {
+            source = generator.generate(file);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Couldn't make thumbnail for " + file, ex);
+            return null;
+        }
+        if (source == null || source.isError() || source.getWidth() <= 0 || source.getHeight() <= 0) {
+            return null;
+        }
+        BufferedImage thumbnail = fit(SwingFXUtils.fromFXImage(source, null));
+        File temp = null;
+        try {
+            dir.mkdirs();
+            File[] old = dir.listFiles((d, n) -> n.startsWith(prefix) && n.endsWith(".png"));
+            if (old != null) {
+                for (File f : old) {
+                    f.delete();
+                }
+            }
+            temp = File.createTempFile(prefix, ".tmp", dir);
+            ImageIO.write(thumbnail, "png", temp);
+            Files.move(temp.toPath(), stored.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't store thumbnail for " + file, ex);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+        return SwingFXUtils.toFXImage(thumbnail, null);
+    }
+
+    /**
+     * Delete the thumbnails that haven't been used for a while, and any
+     * temporary files that were never moved into place.
+     */
+    private static void prune() {
+        File[] files = QueleaProperties.get().getThumbnailCacheDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int deleted = 0;
+        for (File f : files) {
+            long age = now - f.lastModified();
+            if ((f.getName().endsWith(".png") && age > MAX_AGE) || (f.getName().endsWith(".tmp") && age > MAX_TEMP_AGE)) {
+                if (f.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            LOGGER.log(Level.INFO, "Pruned " + deleted + " old library thumbnails");
+        }
+    }
+
+    /**
+     * Scale an image down to fit in a thumbnail, keeping its aspect ratio.
+     */
+    private static BufferedImage fit(BufferedImage image) {
+        double scale = Math.min(1, Math.min((double) WIDTH / image.getWidth(), (double) HEIGHT / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.drawImage(image, 0, 0, width, height, null);
+        g2.dispose();
+        return scaled;
+    }
+
+    private static String hash(String path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(path.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+}
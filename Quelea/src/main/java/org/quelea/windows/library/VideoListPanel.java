@@ -18,7 +18,6 @@
 package org.quelea.windows.library;
 
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.event.ActionEvent;
 import javafx.geometry.Bounds;
 import javafx.geometry.Orientation;
@@ -37,13 +36,12 @@ import javafx.scene.layout.VBox;
 import org.javafx.dialog.Dialog;
 import org.quelea.data.displayable.VideoDisplayable;
 import org.quelea.services.languages.LabelGrabber;
+import org.quelea.services.utils.GStreamerInitState;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.Utils;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.video.VidPreviewDisplay;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -66,7 +64,6 @@ public class VideoListPanel extends BorderPane {
     private static final String BORDER_STYLE_DESELECTED = "-fx-padding: 0.2em;-fx-border-color: rgb(0,0,0,0);-fx-border-radius: 5;-fx-border-width: 0.1em;";
     private final TilePane videoList;
     private final String dir;
-    private Thread updateThread;
     private final VidPreviewDisplay vidPreviewDisplay;
     public static final Image BLANK = new Image("file:icons/vid preview.png");
     public static final Image UNSUPPORTED = new Image("file:icons/unsupported vid preview.png");
@@ -134,34 +131,39 @@ public class VideoListPanel extends BorderPane {
         LOGGER.log(Level.INFO, "Updating videos");
         videoList.getChildren().clear();
         final File[] files = new File(dir).listFiles();
-        if (updateThread != null && updateThread.isAlive()) {
+        if (files == null) {
             return;
         }
-        updateThread = new Thread(() -> {
-            for (int i = 0; i < files.length; i++) {
-                File file = files[i];
-                LOGGER.log(Level.INFO, "Checking file {0}", file);
-                if (Utils.fileIsVideo(file) && !file.isDirectory()) {
-                    addVideoFile(file);
-                }
+        for (File file : files) {
+            LOGGER.log(Level.INFO, "Checking file {0}", file);
+            if (Utils.fileIsVideo(file) && !file.isDirectory()) {
+                addVideoFile(file);
             }
-        });
-        updateThread.start();
+        }
     }
 
     public void addVideoFile(File file) {
         LOGGER.log(Level.INFO, "Adding video file {0} to panel", file);
-        final ImageView view = new ImageView();
+        final ImageView view = new ImageView(BLANK);
         final Label fileLabel = new Label(trim17(file.getName()));
 
-        view.setImage(resize(vidPreviewDisplay.getPreviewImg(file.toURI())));
+        ThumbnailStore.get(file, f -> {
+            Image preview = vidPreviewDisplay.getPreviewImg(f.toURI());
+            return preview == BLANK || preview == UNSUPPORTED ? null : preview;
+        }).thenAccept(image -> Platform.runLater(() -> {
+            if (image != null) {
+                view.setImage(image);
+            } else if (GStreamerInitState.INIT_SUCCESS) {
+                view.setImage(UNSUPPORTED);
+            }
+        }));
 
         Platform.runLater(() -> {
             final VBox viewBox = new VBox();
             viewBox.setAlignment(Pos.CENTER);
             view.setPreserveRatio(true);
-            view.setFitWidth(160);
-            view.setFitHeight(90);
+            view.setFitWidth(ThumbnailStore.WIDTH);
+            view.setFitHeight(ThumbnailStore.HEIGHT);
             view.setOnMouseClicked((MouseEvent t) -> {
                 if (t.getButton() == MouseButton.PRIMARY && t.getClickCount() > 1) {
                     QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().add(new VideoDisplayable(file.getAbsolutePath()));
@@ -218,13 +220,4 @@ public class VideoListPanel extends BorderPane {
         }
         return toTrim;
     }
-
-    private Image resize(Image image) {
-        var sImg = SwingFXUtils.fromFXImage(image, null).getScaledInstance(160, 90, 0);
-        BufferedImage bimage = new BufferedImage(sImg.getWidth(null), sImg.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D bGr = bimage.createGraphics();
-        bGr.drawImage(sImg, 0, 0, null);
-        bGr.dispose();
-        return SwingFXUtils.toFXImage(bimage, null);
-    }
 }
@@ -17,11 +17,12 @@
  */
 package org.quelea.windows.lyrics;
 
-import java.awt.Dimension;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Level;
 
@@ -45,6 +46,7 @@ import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
 import javafx.util.Duration;
 import org.quelea.data.ColourBackground;
+import org.quelea.data.GlobalThemeStore;
 import org.quelea.data.ImageBackground;
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.VideoBackground;
@@ -63,7 +65,7 @@ import org.quelea.windows.main.WordDrawer;
 import org.quelea.windows.main.widgets.DisplayPositionSelector;
 import org.quelea.utils.FXFontMetrics;
 import org.quelea.utils.WrapTextResult;
-import org.quelea.windows.video.VidDisplay;
+import org.quelea.windows.video.SharedVideo;
 
 /**
  * Responsible for drawing lyrics and their background.
@@ -84,7 +86,7 @@ public class LyricDrawer extends WordDrawer {
     private Group oldTextGroup;
     private String[] oldText;
     private boolean newItem;
-    private VidDisplay vidDisplay;
+    private SharedVideo videoBackground;
 
     public LyricDrawer() {
         text = new String[]{};
@@ -92,8 +94,6 @@ public class LyricDrawer extends WordDrawer {
         textGroup = new Group();
         smallTextGroup = new Group();
         lastClearedState = new HashMap<>();
-        vidDisplay = new VidDisplay();
-        vidDisplay.setLoop(true);
     }
 
     protected void drawText(double defaultFontSize, boolean dumbWrap) {
@@ -120,22 +120,6 @@ public class LyricDrawer extends WordDrawer {
             oldTextGroup = textGroup;
         }
 
-        Font font = Font.font(theme.getFont().getFamily(),
-                theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                defaultFontSize);
-        String translateFamily = theme.getFont().getFamily();
-        if (theme.getTranslateFont() != null) {
-            translateFamily = theme.getTranslateFont().getFamily();
-        }
-        Font translateFont = Font.font(translateFamily,
-                theme.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                defaultFontSize);
-
-        if (font == null) {
-            font = ThemeDTO.DEFAULT_FONT.getFont();
-        }
         DropShadow shadow = new DropShadow();
         if (theme.getShadow() != null) {
             shadow = theme.getShadow().getDropShadow();
@@ -144,50 +128,22 @@ public class LyricDrawer extends WordDrawer {
             shadow = ThemeDTO.DEFAULT_SHADOW.getDropShadow();
         }
 
-        List<LyricLine> newText;
-        double fontSize = -1;
-        if (dumbWrap) {
-            if (text.length == 0) {
-                fontSize = 1;
-                newText = new ArrayList<>();
-            } else {
-                WrapTextResult result = normalWrapText(font, text[0], getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds(), getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
-                newText = result.getNewText();
-                fontSize = result.getFontSize();
-            }
-        } else {
-            newText = sanctifyText(text, translations);
-        }
-        if (fontSize == -1) {
-            fontSize = pickFontSize(font, newText, getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds(), getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
-        }
-        font = Font.font(font.getFamily(),
+        LyricLayout layout = LyricLayoutCache.get(layoutKey(theme, text, translations, smallText, dumbWrap,
+                curDisplayable instanceof BiblePassage, defaultFontSize, capitaliseFirst));
+        Font font = Font.font(theme.getFont().getFamily(),
                 theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
                 theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                fontSize);
-        translateFont = Font.font(translateFont.getFamily(),
+                layout.getFontSize());
+        Font translateFont = Font.font(getTranslateFamily(theme),
                 theme.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
                 theme.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                fontSize - QueleaProperties.get().getTranslationFontSizeOffset());
-        double smallFontSize;
-        Font smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, 500);
-
-        if (curDisplayable instanceof BiblePassage) {
-            smallFontSize = pickSmallFontSize(smallTextFont, smallText, getCanvas().getWidth() * 0.8,
-                    (getCanvas().getHeight() * (QueleaProperties.get().getSmallBibleTextSize())) - 5); //-5 for insets
-        } else {
-            smallFontSize = pickSmallFontSize(smallTextFont, smallText, getCanvas().getWidth() * 0.8,
-                    (getCanvas().getHeight() * (QueleaProperties.get().getSmallSongTextSize())) - 5); //-5 for insets
-        }
-        smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, smallFontSize);
+                layout.getTranslateFontSize());
+        Font smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, layout.getSmallFontSize());
 
-        FXFontMetrics metrics = new FXFontMetrics(font);
-        FXFontMetrics translateMetrics = new FXFontMetrics(translateFont);
-        FXFontMetrics smallTextMetrics = new FXFontMetrics(smallTextFont);
         final Group newTextGroup = new Group();
-        shadow.setOffsetX(metrics.getLineHeight() * shadow.getOffsetX() * 0.003);
-        shadow.setOffsetY(metrics.getLineHeight() * shadow.getOffsetY() * 0.003);
-        shadow.setRadius(shadow.getRadius() * metrics.getLineHeight() * 0.0015);
+        shadow.setOffsetX(layout.getLineHeight() * shadow.getOffsetX() * 0.003);
+        shadow.setOffsetY(layout.getLineHeight() * shadow.getOffsetY() * 0.003);
+        shadow.setRadius(shadow.getRadius() * layout.getLineHeight() * 0.0015);
         newTextGroup.setEffect(shadow);
         StackPane.setAlignment(newTextGroup, Pos.CENTER);
         smallTextGroup = new Group();
@@ -195,9 +151,9 @@ public class LyricDrawer extends WordDrawer {
         if (smallshadow == null) {
             smallshadow = new DropShadow();
         }
-        smallshadow.setOffsetX(smallTextMetrics.getLineHeight() * shadow.getOffsetX() * 0.03);
-        smallshadow.setOffsetY(smallTextMetrics.getLineHeight() * shadow.getOffsetY() * 0.03);
-        smallshadow.setRadius(shadow.getRadius() * smallTextMetrics.getLineHeight() * 0.015);
+        smallshadow.setOffsetX(layout.getSmallLineHeight() * shadow.getOffsetX() * 0.03);
+        smallshadow.setOffsetY(layout.getSmallLineHeight() * shadow.getOffsetY() * 0.03);
+        smallshadow.setRadius(shadow.getRadius() * layout.getSmallLineHeight() * 0.015);
         smallTextGroup.setEffect(smallshadow);
 
         if (curDisplayable instanceof BiblePassage) {
@@ -241,13 +197,9 @@ public class LyricDrawer extends WordDrawer {
 
         int y = 0;
         ParallelTransition paintTransition = new ParallelTransition();
-        for (LyricLine line : newText) {
-            FXFontMetrics loopMetrics;
-            if (line.isTranslateLine()) {
-                loopMetrics = translateMetrics;
-            } else {
-                loopMetrics = metrics;
-            }
+        List<LyricLine> newText = layout.getLines();
+        for (int i = 0; i < newText.size(); i++) {
+            LyricLine line = newText.get(i);
             FormattedText t;
             if (QueleaProperties.get().getTextBackgroundEnable()) {
                 t = new FormattedText(" " + line.getLine() + " ");
@@ -261,7 +213,7 @@ public class LyricDrawer extends WordDrawer {
                 t.setFont(font);
             }
 
-            setPositionX(t, loopMetrics, line.getLine(), curDisplayable instanceof BiblePassage);
+            setPositionX(t, layout.getLineWidth(i));
             t.setLayoutY(y);
 
             Color lineColor;
@@ -275,20 +227,20 @@ public class LyricDrawer extends WordDrawer {
                 lineColor = ThemeDTO.DEFAULT_FONT_COLOR;
             }
             t.setFill(lineColor);
-            y += loopMetrics.getLineHeight() + getLineSpacing();
+            y += (line.isTranslateLine() ? layout.getTranslateLineHeight() : layout.getLineHeight()) + getLineSpacing();
 
             newTextGroup.getChildren().add(t);
         }
 
         int sy = 0;
-        for (String stext : smallText) {
-            stext = stext.trim();
+        for (int i = 0; i < smallText.length; i++) {
+            String stext = smallText[i].trim();
             FormattedText ft = new FormattedText(stext);
             ft.setFont(smallTextFont);
             ft.setFill(theme.getFontPaint());
             if (curDisplayable instanceof BiblePassage) {
                 if (QueleaProperties.get().getSmallBibleTextPositionH().equalsIgnoreCase("right")) {
-                    ft.setLayoutX(getCanvas().getWidth() - smallTextMetrics.computeStringWidth(stext));
+                    ft.setLayoutX(getCanvas().getWidth() - layout.getSmallWidth(i));
                 }
                 if (QueleaProperties.get().getSmallBibleTextPositionV().equalsIgnoreCase("top")) {
                     ft.setLayoutY(getCanvas().getHeight() - sy);
@@ -297,7 +249,7 @@ public class LyricDrawer extends WordDrawer {
                 }
             } else {
                 if (QueleaProperties.get().getSmallSongTextPositionH().equalsIgnoreCase("right")) {
-                    ft.setLayoutX(getCanvas().getWidth() - smallTextMetrics.computeStringWidth(stext));
+                    ft.setLayoutX(getCanvas().getWidth() - layout.getSmallWidth(i));
                 }
                 if (QueleaProperties.get().getSmallSongTextPositionV().equalsIgnoreCase("top")) {
                     ft.setLayoutY(getCanvas().getHeight() - sy);
@@ -306,7 +258,7 @@ public class LyricDrawer extends WordDrawer {
                 }
             }
             smallTextGroup.getChildren().add(ft);
-            sy += smallTextMetrics.getLineHeight() + 2;
+            sy += layout.getSmallLineHeight() + 2;
         }
         if (!paintTransition.getChildren().isEmpty()) {
             paintTransition.play();
@@ -364,10 +316,8 @@ public class LyricDrawer extends WordDrawer {
         }
     }
 
-    private void setPositionX(FormattedText t, FXFontMetrics metrics, String line, boolean biblePassage) {
+    private void setPositionX(FormattedText t, double width) {
         Utils.checkFXThread();
-        String strippedLine = line.replaceAll("\\<\\/?sup\\>", "");
-        double width = metrics.computeStringWidth(strippedLine);
         double leftOffset = 0;
         double centreOffset = (getCanvas().getWidth() - width) / 2;
         double rightOffset = (getCanvas().getWidth() - width);
@@ -397,19 +347,17 @@ public class LyricDrawer extends WordDrawer {
         Image image = null;
         ColorAdjust colourAdjust = null;
         final ImageView newImageView = getCanvas().getNewImageView();
+        if (!(theme.getBackground() instanceof VideoBackground)) {
+            setVideoBackground(null);
+        }
         if (theme.getBackground() instanceof ImageBackground) {
             image = ((ImageBackground) theme.getBackground()).getImage();
         } else if (theme.getBackground() instanceof ColourBackground) {
             Color color = ((ColourBackground) theme.getBackground()).getColour();
             image = Utils.getImageFromColour(color);
         } else if (theme.getBackground() instanceof VideoBackground) {
-            var uri = ((VideoBackground) theme.getBackground()).getVideoFile().toURI();
-            if(!Objects.equals(vidDisplay.getUri(), uri)) {
-                vidDisplay.stop();
-                vidDisplay.setURI(uri);
-                vidDisplay.play();
-            }
-            newImageView.imageProperty().bind(vidDisplay.imageProperty());
+            setVideoBackground(((VideoBackground) theme.getBackground()).getVideoFile().toURI());
+            newImageView.imageProperty().bind(videoBackground.imageProperty());
 
         } else {
             LOGGER.log(Level.SEVERE, "Bug: Unhandled theme background case, trying to use default background: " + theme.getBackground(), new RuntimeException("DEBUG EXCEPTION FOR STACK TRACE"));
@@ -433,6 +381,27 @@ public class LyricDrawer extends WordDrawer {
         getCanvas().setCanvasBackground(newBackground);
     }
 
+    /**
+     * Switch to the shared video for the given background, letting go of the
+     * one currently in use.
+     * <p/>
+     *
+     * @param uri the URI of the background video, or null if the background
+     * isn't a video.
+     */
+    private void setVideoBackground(URI uri) {
+        if (videoBackground != null && Objects.equals(videoBackground.getUri(), uri)) {
+            return;
+        }
+        if (videoBackground != null) {
+            videoBackground.release();
+            videoBackground = null;
+        }
+        if (uri != null) {
+            videoBackground = SharedVideo.acquire(uri);
+        }
+    }
+
     /**
      * Get the theme currently in use on the getCanvas().
      * <p/>
@@ -466,7 +435,7 @@ public class LyricDrawer extends WordDrawer {
      *
      * @return processed, sanctified text that can be displayed nicely.
      */
-    private List<LyricLine> sanctifyText(String[] linesArr, String[] translationArr) {
+    private static List<LyricLine> sanctifyText(String[] linesArr, String[] translationArr, int maxLength, boolean capitaliseFirst) {
         List<LyricLine> finalLines = new ArrayList<>();
         int translationOffset = 0;
         for (int i = 0; i < linesArr.length; i++) {
@@ -485,12 +454,11 @@ public class LyricDrawer extends WordDrawer {
         }
 
         List<LyricLine> ret = new ArrayList<>();
-        int maxLength = QueleaProperties.get().getMaxChars();
         for (LyricLine line : finalLines) {
             if ((translationArr != null && translationArr.length > 0)) {
                 ret.add(line);
             } else {
-                List<String> splits = splitLine(line.getLine(), maxLength);
+                List<String> splits = splitLine(line.getLine(), maxLength, capitaliseFirst);
                 for (String split : splits) {
                     ret.add(new LyricLine(split));
                 }
@@ -507,27 +475,27 @@ public class LyricDrawer extends WordDrawer {
      * @return the split line (or the unaltered line if it is less than or equal
      * to the allowed length.
      */
-    private List<String> splitLine(String line, int maxLength) {
+    private static List<String> splitLine(String line, int maxLength, boolean capitaliseFirst) {
         List<String> sections = new ArrayList<>();
         if (line.length() > maxLength) {
             if (containsNotAtEnd(line, ";")) {
                 for (String s : splitMiddle(line, ';')) {
-                    sections.addAll(splitLine(s, maxLength));
+                    sections.addAll(splitLine(s, maxLength, capitaliseFirst));
                 }
             } else if (containsNotAtEnd(line, ",")) {
                 for (String s : splitMiddle(line, ',')) {
-                    sections.addAll(splitLine(s, maxLength));
+                    sections.addAll(splitLine(s, maxLength, capitaliseFirst));
                 }
             } else if (containsNotAtEnd(line, " ")) {
                 for (String s : splitMiddle(line, ' ')) {
-                    sections.addAll(splitLine(s, maxLength));
+                    sections.addAll(splitLine(s, maxLength, capitaliseFirst));
                 }
             } else {
-                sections.addAll(splitLine(new StringBuilder(line).insert(line.length() / 2, " ").toString(), maxLength));
+                sections.addAll(splitLine(new StringBuilder(line).insert(line.length() / 2, " ").toString(), maxLength, capitaliseFirst));
             }
         } else {
             line = line.trim();
-            if (capitaliseFirst && QueleaProperties.get().checkCapitalFirst()) {
+            if (capitaliseFirst) {
                 line = Utils.capitaliseFirst(line);
             }
             sections.add(line);
@@ -536,16 +504,123 @@ public class LyricDrawer extends WordDrawer {
     }
 
     /**
-     * Determine the largest font size we can safely use for every section of a
-     * text displayable.
+     * Work out the layout of a slide - the lines, font sizes and line widths.
+     * This doesn't touch the canvas, so can be called from any thread.
+     * <p/>
+     *
+     * @param key everything the layout depends on.
+     * @return the layout.
+     */
+    static LyricLayout layout(LyricLayout.Key key) {
+        String[] text = key.getText();
+        Font font = Font.font(key.getFamily(),
+                key.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                key.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                key.getMaxFontSize());
+        List<LyricLine> newText;
+        double fontSize = -1;
+        if (key.isDumbWrap()) {
+            if (text.length == 0) {
+                fontSize = 1;
+                newText = new ArrayList<>();
+            } else {
+                WrapTextResult result = normalWrapText(font, text[0], key.getWidth(), key.getHeight());
+                newText = result.getNewText();
+                fontSize = result.getFontSize();
+            }
+        } else {
+            newText = sanctifyText(text, key.getTranslations(), key.getMaxChars(), key.isCapitaliseFirst());
+        }
+        if (fontSize == -1) {
+            fontSize = pickFontSize(font, newText, key.getWidth(), key.getHeight(), key.getLineSpacing());
+        }
+        font = Font.font(font.getFamily(),
+                key.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                key.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                fontSize);
+        double translateFontSize = fontSize - key.getTranslationFontSizeOffset();
+        Font translateFont = Font.font(key.getTranslateFamily(),
+                key.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                key.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                translateFontSize);
+        String[] smallText = key.getSmallText();
+        double smallFontSize = pickSmallFontSize(Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, 500),
+                smallText, key.getSmallWidth(), key.getSmallHeight(), key.getLineSpacing());
+        Font smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, smallFontSize);
+
+        FXFontMetrics metrics = new FXFontMetrics(font);
+        FXFontMetrics translateMetrics = new FXFontMetrics(translateFont);
+        FXFontMetrics smallTextMetrics = new FXFontMetrics(smallTextFont);
+        double[] lineWidths = new double[newText.size()];
+        for (int i = 0; i < lineWidths.length; i++) {
+            LyricLine line = newText.get(i);
+            String strippedLine = line.getLine().replaceAll("\\<\\/?sup\\>", "");
+            lineWidths[i] = (line.isTranslateLine() ? translateMetrics : metrics).computeStringWidth(strippedLine);
+        }
+        double[] smallWidths = new double[smallText.length];
+        for (int i = 0; i < smallWidths.length; i++) {
+            smallWidths[i] = smallTextMetrics.computeStringWidth(smallText[i].trim());
+        }
+        return new LyricLayout(newText, fontSize, translateFontSize, smallFontSize,
+                metrics.getLineHeight(), translateMetrics.getLineHeight(), smallTextMetrics.getLineHeight(),
+                lineWidths, smallWidths);
+    }
+
+    /**
+     * Get the key for the layout of some text on this drawer's canvas.
+     * <p/>
+     *
+     * @param theme the theme the text is drawn with.
+     * @param text the lines of text.
+     * @param translations the translated lines.
+     * @param smallText the small text lines.
+     * @param dumbWrap true if the text should be wrapped to fit, as with bible
+     * passages, false if it should be split into lines.
+     * @param biblePassage true if the text is a bible passage.
+     * @param maxFontSize the largest font size to use.
+     * @param capitaliseFirst true if the first character of each line should
+     * be capitalised.
+     * @return the layout key.
+     */
+    private LyricLayout.Key layoutKey(ThemeDTO theme, String[] text, String[] translations, String[] smallText,
+            boolean dumbWrap, boolean biblePassage, double maxFontSize, boolean capitaliseFirst) {
+        return layoutKey(theme, text, translations, smallText, dumbWrap, biblePassage, maxFontSize, capitaliseFirst,
+                getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds(),
+                getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
+    }
+
+    private LyricLayout.Key layoutKey(ThemeDTO theme, String[] text, String[] translations, String[] smallText,
+            boolean dumbWrap, boolean biblePassage, double maxFontSize, boolean capitaliseFirst, double width, double height) {
+        double smallTextSize = biblePassage ? QueleaProperties.get().getSmallBibleTextSize() : QueleaProperties.get().getSmallSongTextSize();
+        return new LyricLayout.Key(text, translations, smallText, dumbWrap,
+                theme.getFont().getFamily(), theme.isBold(), theme.isItalic(),
+                getTranslateFamily(theme), theme.isTranslateBold(), theme.isTranslateItalic(),
+                maxFontSize, width, height,
+                getCanvas().getWidth() * 0.8, (getCanvas().getHeight() * smallTextSize) - 5, //-5 for insets
+                getLineSpacing(), capitaliseFirst && QueleaProperties.get().checkCapitalFirst(),
+                QueleaProperties.get().getMaxChars(), QueleaProperties.get().getTranslationFontSizeOffset());
+    }
+
+    private static String getTranslateFamily(ThemeDTO theme) {
+        if (theme.getTranslateFont() != null) {
+            return theme.getTranslateFont().getFamily();
+        }
+        return theme.getFont().getFamily();
+    }
+
+    /**
+     * Get the keys of the layouts used to work out the uniform font size of a
+     * text displayable with the given theme. The font size is the smallest of
+     * the font sizes of these layouts.
      * <p>
      *
      * @param displayable the displayable to check.
-     * @return the font size to use
+     * @param theme the theme the displayable is drawn with.
+     * @return the layout keys, or null if a uniform font size isn't used.
      */
-    private double getUniformFontSize(TextDisplayable displayable) {
+    private LyricLayout.Key[] getUniformLayoutKeys(TextDisplayable displayable, ThemeDTO theme) {
         if (!QueleaProperties.get().getUseUniformFontSize()) {
-            return -1;
+            return null;
         }
 
         // Retrieve and scale the max font size for this canvas
@@ -555,68 +630,55 @@ public class LyricDrawer extends WordDrawer {
         int width = (int) (getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds());
         int height = (int) (getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
 
-        if (displayable instanceof BiblePassage) {
+        boolean biblePassage = displayable instanceof BiblePassage;
+        if (biblePassage) {
             height *= 1 - QueleaProperties.get().getSmallBibleTextSize();
         } else {
             height *= 1 - QueleaProperties.get().getSmallSongTextSize();
         }
 
-        Double cachedSize = displayable.getCachedUniformFontSize(new Dimension(width, height));
-        if (cachedSize != null) {
-            return cachedSize;
+        TextSection[] sections = displayable.getSections();
+        LyricLayout.Key[] keys = new LyricLayout.Key[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            keys[i] = layoutKey(theme, sections[i].getText(false, false), getTranslations(displayable, i), new String[0],
+                    biblePassage, biblePassage, maxFontSizeForCanvas, sections[i].shouldCapitaliseFirst(), width, height);
+        }
+        return keys;
+    }
+
+    /**
+     * Determine the largest font size we can safely use for every section of a
+     * text displayable, given the keys from getUniformLayoutKeys().
+     * <p>
+     *
+     * @param keys the layout keys of each section.
+     * @return the font size to use, or -1 if there isn't a uniform font size.
+     */
+    private static double getUniformFontSize(LyricLayout.Key[] keys) {
+        if (keys == null) {
+            return -1;
         }
-        Font font = theme.getFont();
-        font = Font.font(font.getName(),
-                theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                maxFontSizeForCanvas);
         double fontSize = Double.POSITIVE_INFINITY;
-        for (int i = 0; i < displayable.getSections().length; i++) {
-            TextSection section = displayable.getSections()[i];
-            String[] textArr;
-            textArr = section.getText(false, false);
-            List<LyricLine> processedText;
-            double newSize;
-            if (displayable instanceof BiblePassage) {
-                WrapTextResult result = normalWrapText(font, textArr[0], width, height);
-                if (result.getFontSize() < fontSize) {
-                    fontSize = result.getFontSize();
-                }
-            } else {
-                String[] translationArr = null;
-                String translationLyrics = ((SongDisplayable) displayable).getCurrentTranslationSection(i);
-                if (translationLyrics != null) {
-                    translationArr = translationLyrics.split("\n");
-                }
-                processedText = sanctifyText(textArr, translationArr);
-                newSize = pickFontSize(font, processedText, width, height);
-                if (newSize < fontSize) {
-                    fontSize = newSize;
-                }
-            }
+        for (LyricLayout.Key key : keys) {
+            fontSize = Math.min(fontSize, LyricLayoutCache.get(key).getFontSize());
         }
         if (fontSize == Double.POSITIVE_INFINITY) {
             fontSize = -1;
         }
-        displayable.setCachedUniformFontSize(new Dimension(width, height), fontSize);
         return fontSize;
     }
 
-    @Override
-    public void setText(TextDisplayable displayable, int index) {
-        boolean fade = curDisplayable != displayable;
-        double uniformFontSize = getUniformFontSize(displayable);
-        curDisplayable = displayable;
-        String[] bigText;
-        bigText = displayable.getSections()[index].getText(false, false);
-        String[] translationArr = null;
+    private static String[] getTranslations(TextDisplayable displayable, int index) {
         if (displayable instanceof SongDisplayable) {
             String translationText = ((SongDisplayable) displayable).getCurrentTranslationSection(index);
             if (translationText != null) {
-                translationArr = translationText.split("\n");
+                return translationText.split("\n");
             }
         }
+        return new String[0];
+    }
 
+    private static String[] getSmallText(TextDisplayable displayable, int index) {
         String[] smallText = displayable.getSections()[index].getSmallText();
         if (QueleaProperties.get().getSmallSongTextShowOnSlides().equals("first") && index > 0) {
             smallText = new String[0];
@@ -624,8 +686,55 @@ public class LyricDrawer extends WordDrawer {
         if (QueleaProperties.get().getSmallSongTextShowOnSlides().equals("last") && index < displayable.getSections().length - 1) {
             smallText = new String[0];
         }
+        return smallText == null ? new String[0] : smallText;
+    }
 
-        setText(bigText, translationArr, smallText, fade, uniformFontSize);
+    /**
+     * Start laying out every section of the given displayable for this
+     * drawer's canvas in the background, so that showing them later doesn't
+     * hold up the FX thread. Must be called on the FX thread.
+     * <p/>
+     *
+     * @param displayable the displayable to lay out.
+     */
+    public void prepare(TextDisplayable displayable) {
+        Utils.checkFXThread();
+        if (getCanvas() == null || getCanvas().getWidth() <= 0 || getCanvas().getHeight() <= 0) {
+            return;
+        }
+        TextSection[] sections = displayable.getSections();
+        GlobalThemeStore themeStore = QueleaApp.get().getMainWindow().getGlobalThemeStore();
+        double maxFontSize = QueleaProperties.get().getMaxFontSize() * canvasScalingFactor();
+        boolean biblePassage = displayable instanceof BiblePassage;
+        Map<ThemeDTO, LyricLayout.Key[]> uniformKeys = new HashMap<>();
+        LyricLayout.Key[][] sectionUniformKeys = new LyricLayout.Key[sections.length][];
+        LyricLayout.Key[] keys = new LyricLayout.Key[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            ThemeDTO sectionTheme = themeStore.getTheme(displayable, sections[i]);
+            if (sectionTheme == null) {
+                sectionTheme = ThemeDTO.DEFAULT_THEME;
+            }
+            ThemeDTO theme = sectionTheme;
+            sectionUniformKeys[i] = uniformKeys.computeIfAbsent(theme, t -> getUniformLayoutKeys(displayable, t));
+            keys[i] = layoutKey(theme, sections[i].getText(false, false), getTranslations(displayable, i),
+                    getSmallText(displayable, i), biblePassage, biblePassage, maxFontSize, sections[i].shouldCapitaliseFirst());
+        }
+        LyricLayoutCache.prefetch(() -> {
+            for (int i = 0; i < keys.length; i++) {
+                double uniformFontSize = getUniformFontSize(sectionUniformKeys[i]);
+                LyricLayoutCache.get(uniformFontSize < 1 ? keys[i] : keys[i].withMaxFontSize(uniformFontSize));
+            }
+        });
+    }
+
+    @Override
+    public void setText(TextDisplayable displayable, int index) {
+        boolean fade = curDisplayable != displayable;
+        double uniformFontSize = getUniformFontSize(getUniformLayoutKeys(displayable, theme));
+        curDisplayable = displayable;
+        String[] bigText;
+        bigText = displayable.getSections()[index].getText(false, false);
+        setText(bigText, getTranslations(displayable, index), getSmallText(displayable, index), fade, uniformFontSize);
     }
 
     /**
@@ -687,6 +796,11 @@ public class LyricDrawer extends WordDrawer {
         }
     }
 
+    @Override
+    public void dispose() {
+        setVideoBackground(null);
+    }
+
     @Override
     public void clear() {
         if (getCanvas().getChildren() != null) {
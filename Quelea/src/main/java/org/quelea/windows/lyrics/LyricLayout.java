@@ -0,0 +1,289 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.lyrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.quelea.services.utils.LyricLine;
+
+/**
+ * The layout of one slide of lyrics - the lines it's wrapped into, the font
+ * sizes that fit them on the canvas and the width of each line - which is all
+ * the expensive part of drawing the slide. Once worked out, drawing is just a
+ * case of creating the text nodes. Layouts are immutable, so can be worked
+ * out on any thread and shared.
+ * <p/>
+ * @author Michael
+ */
+final class LyricLayout {
+
+    private final List<LyricLine> lines;
+    private final double fontSize;
+    private final double translateFontSize;
+    private final double smallFontSize;
+    private final double lineHeight;
+    private final double translateLineHeight;
+    private final double smallLineHeight;
+    private final double[] lineWidths;
+    private final double[] smallWidths;
+
+    /**
+     * Everything a layout depends on. Two slides with equal keys have the same
+     * layout.
+     */
+    static final class Key {
+
+        private final String[] text;
+        private final String[] translations;
+        private final String[] smallText;
+        private final boolean dumbWrap;
+        private final String family;
+        private final boolean bold;
+        private final boolean italic;
+        private final String translateFamily;
+        private final boolean translateBold;
+        private final boolean translateItalic;
+        private final double maxFontSize;
+        private final double width;
+        private final double height;
+        private final double smallWidth;
+        private final double smallHeight;
+        private final double lineSpacing;
+        private final boolean capitaliseFirst;
+        private final int maxChars;
+        private final double translationFontSizeOffset;
+        private final int hash;
+
+        Key(String[] text, String[] translations, String[] smallText, boolean dumbWrap,
+                String family, boolean bold, boolean italic,
+                String translateFamily, boolean translateBold, boolean translateItalic,
+                double maxFontSize, double width, double height, double smallWidth, double smallHeight,
+                double lineSpacing, boolean capitaliseFirst, int maxChars, double translationFontSizeOffset) {
+            this.text = text.clone();
+            this.translations = translations.clone();
+            this.smallText = smallText.clone();
+            this.dumbWrap = dumbWrap;
+            this.family = family;
+            this.bold = bold;
+            this.italic = italic;
+            this.translateFamily = translateFamily;
+            this.translateBold = translateBold;
+            this.translateItalic = translateItalic;
+            this.maxFontSize = maxFontSize;
+            this.width = width;
+            this.height = height;
+            this.smallWidth = smallWidth;
+            this.smallHeight = smallHeight;
+            this.lineSpacing = lineSpacing;
+            this.capitaliseFirst = capitaliseFirst;
+            this.maxChars = maxChars;
+            this.translationFontSizeOffset = translationFontSizeOffset;
+            int h = Arrays.hashCode(text);
+            h = 31 * h + Arrays.hashCode(translations);
+            h = 31 * h + Arrays.hashCode(smallText);
+            h = 31 * h + Objects.hash(dumbWrap, family, bold, italic, translateFamily, translateBold, translateItalic,
+                    maxFontSize, width, height, smallWidth, smallHeight, lineSpacing, capitaliseFirst, maxChars,
+                    translationFontSizeOffset);
+            this.hash = h;
+        }
+
+        /**
+         * Get a copy of this key with a different maximum font size.
+         */
+        Key withMaxFontSize(double maxFontSize) {
+            return new Key(text, translations, smallText, dumbWrap, family, bold, italic,
+                    translateFamily, translateBold, translateItalic, maxFontSize, width, height,
+                    smallWidth, smallHeight, lineSpacing, capitaliseFirst, maxChars, translationFontSizeOffset);
+        }
+
+        String[] getText() {
+            return text.clone();
+        }
+
+        String[] getTranslations() {
+            return translations.clone();
+        }
+
+        String[] getSmallText() {
+            return smallText.clone();
+        }
+
+        boolean isDumbWrap() {
+            return dumbWrap;
+        }
+
+        String getFamily() {
+            return family;
+        }
+
+        boolean isBold() {
+            return bold;
+        }
+
+        boolean isItalic() {
+            return italic;
+        }
+
+        String getTranslateFamily() {
+            return translateFamily;
+        }
+
+        boolean isTranslateBold() {
+            return translateBold;
+        }
+
+        boolean isTranslateItalic() {
+            return translateItalic;
+        }
+
+        double getMaxFontSize() {
+            return maxFontSize;
+        }
+
+        double getWidth() {
+            return width;
+        }
+
+        double getHeight() {
+            return height;
+        }
+
+        double getSmallWidth() {
+            return smallWidth;
+        }
+
+        double getSmallHeight() {
+            return smallHeight;
+        }
+
+        double getLineSpacing() {
+            return lineSpacing;
+        }
+
+        boolean isCapitaliseFirst() {
+            return capitaliseFirst;
+        }
+
+        int getMaxChars() {
+            return maxChars;
+        }
+
+        double getTranslationFontSizeOffset() {
+            return translationFontSizeOffset;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && dumbWrap == other.dumbWrap
+                    && bold == other.bold
+                    && italic == other.italic
+                    && translateBold == other.translateBold
+                    && translateItalic == other.translateItalic
+                    && capitaliseFirst == other.capitaliseFirst
+                    && maxChars == other.maxChars
+                    && Double.compare(maxFontSize, other.maxFontSize) == 0
+                    && Double.compare(width, other.width) == 0
+                    && Double.compare(height, other.height) == 0
+                    && Double.compare(smallWidth, other.smallWidth) == 0
+                    && Double.compare(smallHeight, other.smallHeight) == 0
+                    && Double.compare(lineSpacing, other.lineSpacing) == 0
+                    && Double.compare(translationFontSizeOffset, other.translationFontSizeOffset) == 0
+                    && Objects.equals(family, other.family)
+                    && Objects.equals(translateFamily, other.translateFamily)
+                    && Arrays.equals(text, other.text)
+                    && Arrays.equals(translations, other.translations)
+                    && Arrays.equals(smallText, other.smallText);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    LyricLayout(List<LyricLine> lines, double fontSize, double translateFontSize, double smallFontSize,
+            double lineHeight, double translateLineHeight, double smallLineHeight,
+            double[] lineWidths, double[] smallWidths) {
+        this.lines = Collections.unmodifiableList(lines);
+        this.fontSize = fontSize;
+        this.translateFontSize = translateFontSize;
+        this.smallFontSize = smallFontSize;
+        this.lineHeight = lineHeight;
+        this.translateLineHeight = translateLineHeight;
+        this.smallLineHeight = smallLineHeight;
+        this.lineWidths = lineWidths;
+        this.smallWidths = smallWidths;
+    }
+
+    /**
+     * @return the lines to draw, wrapped and with translations interleaved.
+     */
+    List<LyricLine> getLines() {
+        return lines;
+    }
+
+    double getFontSize() {
+        return fontSize;
+    }
+
+    double getTranslateFontSize() {
+        return translateFontSize;
+    }
+
+    double getSmallFontSize() {
+        return smallFontSize;
+    }
+
+    double getLineHeight() {
+        return lineHeight;
+    }
+
+    double getTranslateLineHeight() {
+        return translateLineHeight;
+    }
+
+    double getSmallLineHeight() {
+        return smallLineHeight;
+    }
+
+    /**
+     * @param index the index of the line in getLines().
+     * @return the width of the line in its font, ignoring any markup.
+     */
+    double getLineWidth(int index) {
+        return lineWidths[index];
+    }
+
+    /**
+     * @param index the index of the (trimmed) small text line.
+     * @return the width of the small text line.
+     */
+    double getSmallWidth(int index) {
+        return smallWidths[index];
+    }
+}
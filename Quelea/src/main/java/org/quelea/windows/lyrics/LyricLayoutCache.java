@@ -0,0 +1,109 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.lyrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * A cache of lyric layouts, so the wrapping and font fitting for a slide is
+ * done once rather than every time it's shown. Layouts for a song are worked
+ * out in the background as soon as it's added to the schedule or previewed,
+ * so by the time it goes live drawing each slide is a lookup. A layout that
+ * isn't ready yet is worked out on the thread that asks for it; one that's
+ * being worked out in the background is waited for rather than done twice.
+ * <p/>
+ * Since the key holds everything a layout depends on, entries never go stale
+ * - a song that's edited or given a new theme just gets new keys, and the old
+ * entries drop out of the cache in time.
+ * <p/>
+ * @author Michael
+ */
+final class LyricLayoutCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAX_ENTRIES = 1024;
+    private static final Map<LyricLayout.Key, FutureTask<LyricLayout>> LAYOUTS = new LinkedHashMap<LyricLayout.Key, FutureTask<LyricLayout>>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LyricLayout.Key, FutureTask<LyricLayout>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Lyric layout");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Don't make me...
+     */
+    private LyricLayoutCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the layout for a key, working it out on this thread if it isn't
+     * already cached or being worked out elsewhere.
+     * <p/>
+     * @param key the key.
+     * @return the layout.
+     */
+    static LyricLayout get(LyricLayout.Key key) {
+        FutureTask<LyricLayout> task;
+        synchronized (LAYOUTS) {
+            task = LAYOUTS.computeIfAbsent(key, k -> new FutureTask<>(() -> LyricDrawer.layout(k)));
+        }
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Error laying out lyrics", ex);
+        }
+        synchronized (LAYOUTS) {
+            LAYOUTS.remove(key, task);
+        }
+        return LyricDrawer.layout(key);
+    }
+
+    /**
+     * Run a job that fills the cache on the background layout thread.
+     * <p/>
+     * @param job the job, which should call get() for each layout it wants
+     * cached.
+     */
+    static void prefetch(Runnable job) {
+        EXECUTOR.execute(() -> {
+            try {
+                job.run();
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Error laying out lyrics in the background", ex);
+            }
+        });
+    }
+}
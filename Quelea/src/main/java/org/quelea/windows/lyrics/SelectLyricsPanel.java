@@ -133,6 +133,24 @@ public class SelectLyricsPanel extends AbstractPanel {
         lyricsList.scrollTo(index);
     }
 
+    /**
+     * Start laying out the given displayable in the background for this
+     * panel's canvases, so it's quick to show when it's selected.
+     * <p/>
+     *
+     * @param displayable the displayable to lay out.
+     */
+    public void prepare(TextDisplayable displayable) {
+        DisplayCanvas current = lyricDrawer.getCanvas();
+        for (DisplayCanvas canvas : getCanvases()) {
+            if (!canvas.isStageView()) {
+                lyricDrawer.setCanvas(canvas);
+                lyricDrawer.prepare(displayable);
+            }
+        }
+        lyricDrawer.setCanvas(current);
+    }
+
     /**
      * Get the current displayed index.
      * <p/>
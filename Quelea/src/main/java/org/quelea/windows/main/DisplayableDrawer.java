@@ -23,4 +23,12 @@ public abstract class DisplayableDrawer {
     public abstract void clear();
 
     public abstract void requestFocus();
+
+    /**
+     * Let go of anything this drawer holds on to, such as a shared video
+     * background. Drawers that are thrown away once they're no longer drawing
+     * should call this first.
+     */
+    public void dispose() {
+    }
 }
@@ -56,6 +56,9 @@ import org.quelea.data.displayable.PresentationDisplayable;
 import org.quelea.data.displayable.TextDisplayable;
 import org.quelea.data.displayable.TextSection;
 import org.quelea.data.displayable.WebDisplayable;
+import org.quelea.server.LiveState;
+import org.quelea.server.MobileLyricsServer;
+import org.quelea.server.RemoteControlServer;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.FileFilters;
 import org.quelea.services.utils.LoggerUtils;
@@ -87,6 +90,8 @@ public class LivePanel extends LivePreviewPanel {
     private WritableImage webPreviewImage;
     private ScheduledExecutorService updateWebPreview;
     private Dialog focusDialog;
+    private long liveVersion;
+    private volatile LiveState liveState = LiveState.EMPTY;
 
     /**
      * Create a new live lyrics panel.
@@ -410,6 +415,37 @@ public class LivePanel extends LivePreviewPanel {
                 }
             }
         });
+        getLyricsPanel().getLyricsList().getSelectionModel().selectedItemProperty().addListener((ov, t1, t2) -> liveChanged());
+        for (ToggleButton button : new ToggleButton[]{logo, black, clear, hide}) {
+            button.selectedProperty().addListener((ov, t1, t2) -> liveChanged());
+        }
+    }
+
+    /**
+     * Publish a new snapshot of what's live for the servers, and let them
+     * know so they can push the new lyrics out to their clients and get any
+     * new slides ready.
+     */
+    private void liveChanged() {
+        liveState = LiveState.capture(this, ++liveVersion);
+        MobileLyricsServer mls = QueleaApp.get().getMobileLyricsServer();
+        if (mls != null) {
+            mls.liveChanged(liveState);
+        }
+        RemoteControlServer rcs = QueleaApp.get().getRemoteControlServer();
+        if (rcs != null) {
+            rcs.liveChanged(liveState);
+        }
+    }
+
+    /**
+     * Get the latest snapshot of what's live. Unlike the rest of this panel,
+     * this is safe to call from any thread.
+     * <p/>
+     * @return the latest live state.
+     */
+    public LiveState getLiveState() {
+        return liveState;
     }
 
     /**
@@ -495,6 +531,7 @@ public class LivePanel extends LivePreviewPanel {
             }
         }
         oldD = d;
+        liveChanged();
     }
 
     /**
@@ -230,6 +230,9 @@ public abstract class LivePreviewPanel extends BorderPane {
      * Clear all the contained panels to a null displayable.
      */
     public void removeDisplayable() {
+        if (displayable instanceof SongDisplayable) {
+            ((SongDisplayable) displayable).release();
+        }
         displayable = null;
         if (PRESENTATION_LABEL.equals(currentLabel)) {
             presentationPanel.showDisplayable(null, 0);
@@ -373,6 +376,12 @@ public abstract class LivePreviewPanel extends BorderPane {
 
         QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getListView().refresh();
 
+        if (displayable instanceof SongDisplayable) {
+            ((SongDisplayable) displayable).retain();
+        }
+        if (this.displayable instanceof SongDisplayable) {
+            ((SongDisplayable) this.displayable).release();
+        }
         this.displayable = displayable;
         presentationPanel.stopCurrent();
         pdfPanel.stopCurrent();
@@ -30,6 +30,7 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import org.quelea.data.displayable.Displayable;
+import org.quelea.data.displayable.TextDisplayable;
 import org.quelea.data.displayable.WebDisplayable;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.QueleaProperties;
@@ -116,6 +117,9 @@ public class PreviewPanel extends LivePreviewPanel {
             return; // Skip setting displayable if the panel is not visible
         }
         super.setDisplayable(d, index);
+        if (d instanceof TextDisplayable) {
+            QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().prepare((TextDisplayable) d);
+        }
         liveButton.setDisable(false);
         if (d instanceof WebDisplayable) {
             final WebDisplayable webDisplayable = (WebDisplayable) d;
@@ -71,6 +71,7 @@ public class ThemePreviewPanel extends VBox {
     private Window popup;
     private ScheduleThemeNode parent;
     private WritableImage previewImage;
+    private WordDrawer drawer;
 
     /**
      * Create a new theme preview panel.
@@ -201,14 +202,25 @@ public class ThemePreviewPanel extends VBox {
         return theme;
     }
 
+    /**
+     * Let go of the video background of the preview, if it has one. This is
+     * called when the panel's thrown away.
+     */
+    public void dispose() {
+        if (drawer != null) {
+            drawer.dispose();
+        }
+    }
+
     private void updateThemePreviewCanvas(ThemeDTO theme) {
-        WordDrawer drawer;
-        if (canvas.isStageView()) {
-            drawer = new StageDrawer();
-        } else {
-            drawer = new LyricDrawer();
+        if (drawer == null) {
+            if (canvas.isStageView()) {
+                drawer = new StageDrawer();
+            } else {
+                drawer = new LyricDrawer();
+            }
+            drawer.setCanvas(canvas);
         }
-        drawer.setCanvas(canvas);
         drawer.setTheme(theme);
         drawer.setText(ThemePanel.SAMPLE_LYRICS, new String[0], new String[0], false, -1);
     }
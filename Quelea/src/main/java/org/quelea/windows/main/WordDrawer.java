@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoublePredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.scene.image.ImageView;
@@ -35,6 +36,7 @@ import org.quelea.services.utils.LyricLine;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.utils.Chord;
 import org.quelea.utils.FXFontMetrics;
+import org.quelea.utils.GlyphMetrics;
 import org.quelea.utils.WrapTextResult;
 
 /**
@@ -68,15 +70,16 @@ public abstract class WordDrawer extends DisplayableDrawer {
         lastClearedState.put(getCanvas(), val);
     }
     
-    private WrapTextResult getWrapTextProps(Font font, String lineToWrap, double width) {
-        FXFontMetrics metrics = new FXFontMetrics(font);
+    private static WrapTextResult getWrapTextProps(Font font, String lineToWrap, double width) {
+        GlyphMetrics metrics = GlyphMetrics.get(font);
+        double size = font.getSize();
         String[] words = lineToWrap.split(" ");
         StringBuilder lineBuilder = new StringBuilder();
         List<LyricLine> lines = new ArrayList<>();
         for (int i = 0; i < words.length; i++) {
             String word = words[i];
             String potentialStr = lineBuilder.toString() + word;
-            if (metrics.computeStringWidth(potentialStr.replace("<sup>", "").replace("</sup>", "")) > width) {
+            if (metrics.computeStringWidth(potentialStr.replace("<sup>", "").replace("</sup>", ""), size) > width) {
                 lines.add(new LyricLine(lineBuilder.toString()));
                 lineBuilder = new StringBuilder(word + " ");
             }
@@ -86,10 +89,10 @@ public abstract class WordDrawer extends DisplayableDrawer {
         }
         lines.add(new LyricLine(lineBuilder.toString()));
         //We're using the "fontsize" part of wraptextresult here as the height instead to reuse the same class, bit of a fudge...
-        return new WrapTextResult(lines, metrics.getLineHeight() * lines.size());
+        return new WrapTextResult(lines, metrics.getLineHeight(size) * lines.size());
     }
     
-    protected WrapTextResult normalWrapText(Font font, String lineToWrap, double width, double height) {
+    protected static WrapTextResult normalWrapText(Font font, String lineToWrap, double width, double height) {
         double min = 1;
         double max = font.getSize();
         
@@ -130,26 +133,75 @@ public abstract class WordDrawer extends DisplayableDrawer {
      * width and height provided.
      */
     protected double pickFontSize(Font font, List<LyricLine> text, double width, double height) {
-        FXFontMetrics metrics = new FXFontMetrics(font);
-        double totalHeight = ((metrics.getLineHeight() + getLineSpacing()) * text.size());
-        while (totalHeight > height) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = new FXFontMetrics(font);
-            totalHeight = (metrics.getLineHeight() + getLineSpacing()) * text.size();
-        }
+        return pickFontSize(font, text, width, height, getLineSpacing());
+    }
 
-        double totalWidth = longestLine(font, text);
-        while (totalWidth > width) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
+    /**
+     * Pick a font size for the specified font that fits the given text into the
+     * width and height provided, with the given spacing between lines. This
+     * doesn't depend on the canvas, so can be called from any thread.
+     * <p>
+     * @param font the font to use for calculations.
+     * @param text the text to fit.
+     * @param width the fit width.
+     * @param height the fit height.
+     * @param lineSpacing the additional space between each line.
+     * @return a font size for the specified font that fits the text into the
+     * width and height provided.
+     */
+    protected static double pickFontSize(Font font, List<LyricLine> text, double width, double height, double lineSpacing) {
+        GlyphMetrics glyphs = GlyphMetrics.get(font);
+        return fitFontSize(font.getSize(),
+                size -> (glyphs.getLineHeight(size) + lineSpacing) * text.size() <= height
+                && longestLine(glyphs, size, text) <= width,
+                size -> {
+                    Font sized = new Font(font.getName(), size);
+                    return (new FXFontMetrics(sized).getLineHeight() + lineSpacing) * text.size() <= height
+                            && longestLine(sized, text) <= width;
+                });
+    }
+
+    /**
+     * Find the largest font size, going down from the maximum in steps of half
+     * a point, at which some text fits. The size is found by binary search
+     * using a cheap estimate of whether the text fits, then checked (and
+     * nudged a step or two if need be) with a real measurement.
+     * <p>
+     * @param max the largest size to consider.
+     * @param estimateFits estimates whether the text fits at a size. Must be
+     * monotonic - if the text fits at a size, it fits at all smaller ones.
+     * @param fits determines exactly whether the text fits at a size.
+     * @return the largest size at which the text fits, or 1 if it doesn't fit
+     * at any size.
+     */
+    private static double fitFontSize(double max, DoublePredicate estimateFits, DoublePredicate fits) {
+        final double step = 0.5;
+        final int maxNudge = 4;
+        int steps = (int) Math.floor((max - 1) / step);
+        if (steps < 0) {
+            return 1;
+        }
+        int lo = 0;
+        int hi = steps + 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (estimateFits.test(max - mid * step)) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
             }
-            totalWidth = longestLine(font, text);
         }
-        return font.getSize();
+        int k = Math.min(lo, steps);
+        while (k <= steps && !fits.test(max - k * step)) {
+            k++;
+        }
+        if (k > steps) {
+            return 1;
+        }
+        for (int i = 0; i < maxNudge && k > 0 && fits.test(max - (k - 1) * step); i++) {
+            k--;
+        }
+        return max - k * step;
     }
 
     /**
@@ -165,7 +217,7 @@ public abstract class WordDrawer extends DisplayableDrawer {
         return space * factor;
     }
 
-    protected int longestLine(Font font, List<LyricLine> text) {
+    protected static int longestLine(Font font, List<LyricLine> text) {
         FXFontMetrics metrics = new FXFontMetrics(font);
         int longestLine = 0;
         for (int i = 0; i < text.size(); i++) {
@@ -199,7 +251,37 @@ public abstract class WordDrawer extends DisplayableDrawer {
         return longestLine;
     }
 
-    protected String longestLine(Font font, ArrayList<String> text) {
+    /**
+     * Estimate the width of the longest line of the given text at the given
+     * size, in the same way as longestLine(Font, List).
+     */
+    private static double longestLine(GlyphMetrics metrics, double size, List<LyricLine> text) {
+        double longestLine = 0;
+        for (int i = 0; i < text.size(); i++) {
+            LyricLine line = text.get(i);
+            double lineWidth;
+            if (new LineTypeChecker(line.getLine()).getLineType() == LineTypeChecker.Type.CHORDS && i < text.size() - 1) {
+                List<Chord> chords = Chord.getChordsFromLine(line.getLine());
+                String nextLine = text.get(i + 1).getLine();
+
+                while (nextLine.length() < line.getLine().length()) {
+                    nextLine += " ";
+                }
+
+                lineWidth = 0;
+                for (Chord chord : chords) {
+                    double x = metrics.computeStringWidth(nextLine.substring(0, chord.getIdx()), size) + metrics.computeStringWidth(chord.getChord(), size);
+                    lineWidth = Math.max(lineWidth, x);
+                }
+            } else {
+                lineWidth = metrics.computeStringWidth(line.getLine(), size);
+            }
+            longestLine = Math.max(longestLine, lineWidth);
+        }
+        return longestLine;
+    }
+
+    protected static String longestLine(Font font, ArrayList<String> text) {
         FXFontMetrics metrics = new FXFontMetrics(font);
         double longestWidth = -1;
         String longestStr = null;
@@ -270,7 +352,24 @@ public abstract class WordDrawer extends DisplayableDrawer {
     }
 
     protected double pickSmallFontSize(Font font, String[] text, double width, double height) {
-        FXFontMetrics metrics = new FXFontMetrics(font);
+        return pickSmallFontSize(font, text, width, height, getLineSpacing());
+    }
+
+    /**
+     * Pick a font size for the specified font that fits the given small text
+     * into the width and height provided, with the given spacing between
+     * lines. This doesn't depend on the canvas, so can be called from any
+     * thread.
+     * <p>
+     * @param font the font to use for calculations.
+     * @param text the small text to fit.
+     * @param width the fit width.
+     * @param height the fit height.
+     * @param lineSpacing the additional space between each line.
+     * @return a font size for the specified font that fits the text into the
+     * width and height provided.
+     */
+    protected static double pickSmallFontSize(Font font, String[] text, double width, double height, double lineSpacing) {
         ArrayList<String> al = new ArrayList<>();
         for (String te : text) {
             if (al.contains("\n")) {
@@ -280,28 +379,16 @@ public abstract class WordDrawer extends DisplayableDrawer {
                 al.add(te);
             }
         }
-        double totalHeight = ((metrics.getLineHeight() + getLineSpacing()) * al.size());
-        while (totalHeight > height) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = new FXFontMetrics(font);
-            totalHeight = (metrics.getLineHeight() + getLineSpacing()) * al.size();
-        }
-
+        GlyphMetrics glyphs = GlyphMetrics.get(font);
         String longestLine = longestLine(font, al);
-        double totalWidth = metrics.computeStringWidth(longestLine);
-        while (totalWidth > width) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = new FXFontMetrics(font);
-            totalWidth = metrics.computeStringWidth(longestLine);
-        }
-
-        return font.getSize();
+        return fitFontSize(font.getSize(),
+                size -> (glyphs.getLineHeight(size) + lineSpacing) * al.size() <= height
+                && glyphs.computeStringWidth(longestLine, size) <= width,
+                size -> {
+                    FXFontMetrics metrics = new FXFontMetrics(new Font(font.getName(), size));
+                    return (metrics.getLineHeight() + lineSpacing) * al.size() <= height
+                            && metrics.computeStringWidth(longestLine) <= width;
+                });
     }
 
     /**
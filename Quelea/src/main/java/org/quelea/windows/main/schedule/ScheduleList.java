@@ -19,6 +19,7 @@ package org.quelea.windows.main.schedule;
 
 import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
 import javafx.scene.control.ListCell;
@@ -102,6 +103,23 @@ public class ScheduleList extends StackPane {
         listView = new ListView<>();
         listView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
         getChildren().add(listView);
+        listView.getItems().addListener((ListChangeListener<Displayable>) change -> {
+            while (change.next()) {
+                for (Displayable displayable : change.getRemoved()) {
+                    if (displayable instanceof SongDisplayable) {
+                        ((SongDisplayable) displayable).release();
+                    }
+                }
+                for (Displayable displayable : change.getAddedSubList()) {
+                    if (displayable instanceof SongDisplayable) {
+                        ((SongDisplayable) displayable).retain();
+                    }
+                    if (displayable instanceof TextDisplayable) {
+                        prepare((TextDisplayable) displayable);
+                    }
+                }
+            }
+        });
         markerRect = new Rectangle(200, 3, Color.GRAY);
         markerRect.setVisible(false);
         getChildren().add(markerRect);
@@ -223,6 +241,18 @@ public class ScheduleList extends StackPane {
         });
     }
 
+    /**
+     * Start laying out a text item for the live canvases in the background,
+     * so it's ready by the time it goes live.
+     */
+    private void prepare(TextDisplayable displayable) {
+        if (QueleaApp.get().getMainWindow() == null || QueleaApp.get().getMainWindow().getMainPanel() == null
+                || QueleaApp.get().getMainWindow().getMainPanel().getLivePanel() == null) {
+            return;
+        }
+        QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getLyricsPanel().prepare(displayable);
+    }
+
     public void add(Displayable displayable) {
         if (!Platform.isFxApplicationThread()) {
             LOGGER.log(Level.WARNING, "Not on the platform thread!", new RuntimeException("DEBUG EX"));
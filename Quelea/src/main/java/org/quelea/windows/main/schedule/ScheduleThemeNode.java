@@ -41,6 +41,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import org.quelea.data.ThemeDTO;
+import org.quelea.server.RemoteControlServer;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
@@ -137,6 +138,7 @@ public class ScheduleThemeNode extends BorderPane {
             for (Node node : themePreviews.getChildren()) {
                 if (node instanceof ThemePreviewPanel) {
                     ThemePreviewPanel panel = (ThemePreviewPanel) node;
+                    panel.dispose();
                     if (panel.getSongSelectButton().isSelected()) {
                         selectedSongTheme = panel.getTheme();
                         setSongTheme(selectedSongTheme);
@@ -235,6 +237,10 @@ public class ScheduleThemeNode extends BorderPane {
         buttonPanel.getChildren().add(newThemeButton);
         contentPanel.getChildren().add(themePreviews);
         contentPanel.getChildren().add(buttonPanel);
+        RemoteControlServer rcs = QueleaApp.get().getRemoteControlServer();
+        if (rcs != null) {
+            rcs.themesChanged();
+        }
     }
 
     public void setSongTheme(ThemeDTO songTempTheme) {
@@ -20,6 +20,7 @@ package org.quelea.windows.newsong;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.geometry.Insets;
+import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
@@ -27,6 +28,7 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
+import javafx.stage.Window;
 import org.fxmisc.richtext.InlineCssTextArea;
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.displayable.SongDisplayable;
@@ -57,6 +59,7 @@ public class ThemePanel extends BorderPane {
     private String saveHash = "";
     private final Button confirmButton;
     private ComboBox<ThemeDTO> themeCombo;
+    private final WordDrawer drawer;
 
     /**
      * Create and initialise the theme panel
@@ -95,13 +98,19 @@ public class ThemePanel extends BorderPane {
         themePreviewPane.getChildren().add(positionSelector);
         centrePane.getChildren().add(themePreviewPane);
         setCenter(centrePane);
-        final WordDrawer drawer;
         if (canvas.isStageView()) {
             drawer = new StageDrawer();
         } else {
             drawer = new LyricDrawer();
         }
         drawer.setCanvas(canvas);
+        sceneProperty().flatMap(Scene::windowProperty).flatMap(Window::showingProperty).addListener((ov, wasShowing, showing) -> {
+            if (Boolean.TRUE.equals(showing)) {
+                updateTheme(false);
+            } else {
+                drawer.dispose();
+            }
+        });
         text = SAMPLE_LYRICS;
         if (wordsArea != null) {
             ChangeListener<String> cl = (ov, t, newText) -> {
@@ -201,13 +210,6 @@ public class ThemePanel extends BorderPane {
     public void updateTheme(boolean warning) {
         final ThemeDTO theme = getTheme();
         Platform.runLater(() -> {
-            WordDrawer drawer;
-            if (preview.getCanvas().isStageView()) {
-                drawer = new StageDrawer();
-            } else {
-                drawer = new LyricDrawer();
-            }
-            drawer.setCanvas(preview.getCanvas());
             drawer.setTheme(theme);
             drawer.setText(text, null, null, false, -1);
 
@@ -110,6 +110,7 @@ public class VideoButton extends Button implements Cancellable {
                                         drawer.getTheme().getTextPosition(),
                                         drawer.getTheme().getTextAlignment());
                                 drawer.setTheme(theme);
+                                drawer.dispose();
                             });
                         }
                     }
@@ -1,6 +1,7 @@
 package org.quelea.windows.timer;
 
 import java.io.File;
+import java.net.URI;
 import java.util.Calendar;
 
 import javafx.scene.image.ImageView;
@@ -20,7 +21,7 @@ import org.quelea.windows.main.DisplayCanvas;
 import org.quelea.windows.main.DisplayableDrawer;
 import org.quelea.windows.main.widgets.Timer;
 import org.quelea.utils.FXFontMetrics;
-import org.quelea.windows.video.VidDisplay;
+import org.quelea.windows.video.SharedVideo;
 
 /**
  * @author tomaszpio@gmail.com, Michael, Ben
@@ -33,11 +34,10 @@ public class TimerDrawer extends DisplayableDrawer {
     private DisplayCanvas mainCanvas;
     private DisplayCanvas stageCanvas;
     private StackPane stack;
-    private VidDisplay vidDisplay;
+    private SharedVideo videoBackground;
 
     public TimerDrawer(TimerControls controlPanel) {
         this.controlPanel = controlPanel;
-        this.vidDisplay = new VidDisplay();
     }
 
     @Override
@@ -81,17 +81,17 @@ public class TimerDrawer extends DisplayableDrawer {
                 controlPanel.reset();
 
                 ImageView imageView = mainCanvas.getNewImageView();
-                imageView.imageProperty().bind(vidDisplay.imageProperty());
+                setVideoBackground(new File(url).toURI());
+                imageView.imageProperty().bind(videoBackground.imageProperty());
                 imageView.setPreserveRatio(true);
-                vidDisplay.setURI(new File(url).toURI());
-                vidDisplay.setLoop(true);
-                vidDisplay.play();
                 mainCanvas.getChildren().add(0, imageView);
             } else if (td.getTheme().getBackground() instanceof ImageBackground) {
+                setVideoBackground(null);
                 ImageView imageView = mainCanvas.getNewImageView();
                 imageView.setImage(((ImageBackground) td.getTheme().getBackground()).getImage());
                 mainCanvas.getChildren().add(0, imageView);
             } else if (td.getTheme().getBackground() instanceof ColourBackground) {
+                setVideoBackground(null);
                 ImageView imageView = mainCanvas.getNewImageView();
                 imageView.setImage(Utils.getImageFromColour(((ColourBackground) td.getTheme().getBackground()).getColour()));
                 mainCanvas.getChildren().add(0, imageView);
@@ -105,10 +105,35 @@ public class TimerDrawer extends DisplayableDrawer {
         }
     }
 
+    /**
+     * Switch to the shared video for the given background, letting go of the
+     * one currently in use.
+     *
+     * @param uri the URI of the background video, or null if the background
+     * isn't a video.
+     */
+    private void setVideoBackground(URI uri) {
+        if (videoBackground != null && videoBackground.getUri().equals(uri)) {
+            return;
+        }
+        if (videoBackground != null) {
+            videoBackground.release();
+            videoBackground = null;
+        }
+        if (uri != null) {
+            videoBackground = SharedVideo.acquire(uri);
+        }
+    }
+
     @Override
     public void clear() {
     }
 
+    @Override
+    public void dispose() {
+        setVideoBackground(null);
+    }
+
     @Override
     public void requestFocus() {
     }
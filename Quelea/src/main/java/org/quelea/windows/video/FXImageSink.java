@@ -18,7 +18,6 @@
  */
 package org.quelea.windows.video;
 
-import com.sun.jna.Pointer;
 import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
@@ -32,32 +31,45 @@ import org.freedesktop.gstreamer.FlowReturn;
 import org.freedesktop.gstreamer.Sample;
 import org.freedesktop.gstreamer.Structure;
 import org.freedesktop.gstreamer.elements.AppSink;
+import org.quelea.services.utils.QueleaProperties;
 
-import java.lang.reflect.Field;
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A wrapper connecting a GStreamer AppSink and a JavaFX Image, making use of
- * {@link PixelBuffer} to directly access the native GStreamer pixel data.
+ * {@link PixelBuffer} to display the GStreamer pixel data.
  * <p>
  * Use {@link #imageProperty()} to access the JavaFX image. The Image should
- * only be used on the JavaFX application thread, and is only valid while it is
- * the current property value. Using the Image when it is no longer the current
- * property value may cause errors or crashes.
+ * only be used on the JavaFX application thread.
+ * <p>
+ * Each frame is copied once, inside {@link PixelBuffer#updateBuffer}, into a
+ * pixel buffer owned by this sink, and the GStreamer sample is released
+ * straight away. Pixel buffers are kept for the last
+ * {@value #POOLED_FRAME_SIZES} frame sizes used, so switching between videos
+ * of different resolutions reuses them rather than allocating new ones, and
+ * the memory held is bounded.
+ * <p>
+ * Frames are handed to the JavaFX application thread through a single slot,
+ * so if it falls behind the latest frame wins and older ones are dropped
+ * rather than queued up behind it. Frames arriving faster than the maximum
+ * frame rate (by default the display's refresh rate) are dropped too. The
+ * numbers of presented and dropped frames are available from
+ * {@link #getPresentedFrames()} and {@link #getDroppedFrames()}.
  */
 public class FXImageSink {
 
     private final static String DEFAULT_CAPS;
-    private final static int OLD_SAMPLE_BUFFER_SIZE = 2;
-
-    private static final Field mapInfoBufferField;
-    private static final Field pointerPeerField;
-    private static final Field bufferAddress;
-    private static final Field bufferCapacity;
+    private final static int POOLED_FRAME_SIZES = 2;
+    private final static double DEFAULT_REFRESH_RATE = 60;
 
     static {
         if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
@@ -65,28 +77,52 @@ public class FXImageSink {
         } else {
             DEFAULT_CAPS = "video/x-raw, format=xRGB";
         }
+    }
 
-        try {
-            mapInfoBufferField = Buffer.class.getDeclaredField("mapInfo");
-            mapInfoBufferField.setAccessible(true);
-            pointerPeerField = Pointer.class.getDeclaredField("peer");
-            pointerPeerField.setAccessible(true);
-            bufferAddress = java.nio.Buffer.class.getDeclaredField("address");
-            bufferAddress.setAccessible(true);
-            bufferCapacity = java.nio.Buffer.class.getDeclaredField("capacity");
-            bufferCapacity.setAccessible(true);
-        } catch (NoSuchFieldException e) {
-            throw new RuntimeException(e);
+    /**
+     * A pixel buffer for frames of one size, and the image that shows it.
+     */
+    private static final class Frame {
+
+        private final int width;
+        private final int height;
+        private final ByteBuffer bytes;
+        private final PixelBuffer<IntBuffer> pixelBuffer;
+        private final WritableImage image;
+
+        Frame(int width, int height) {
+            this.width = width;
+            this.height = height;
+            bytes = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+            pixelBuffer = new PixelBuffer<>(width, height, bytes.asIntBuffer(), PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(pixelBuffer);
+        }
+
+        /**
+         * Copy a frame's pixels into this buffer. Must be called on the FX
+         * thread.
+         */
+        void update(ByteBuffer data) {
+            pixelBuffer.updateBuffer(b -> {
+                ByteBuffer src = data.duplicate();
+                bytes.clear();
+                if (src.remaining() > bytes.remaining()) {
+                    src.limit(src.position() + bytes.remaining());
+                }
+                bytes.put(src);
+                return null;
+            });
         }
     }
 
     private final AppSink sink;
     private final ReadOnlyObjectWrapper<WritableImage> image;
-    private IntBuffer imageBuffer;
-    private PixelBuffer<IntBuffer> pixelBuffer;
-    private Sample activeSample;
-    private Buffer activeBuffer;
-    private final Queue<Sample> oldSamples;
+    private final Deque<Frame> frames = new ArrayDeque<>(POOLED_FRAME_SIZES + 1);
+    private final AtomicReference<Sample> pendingSample = new AtomicReference<>();
+    private final AtomicLong presentedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private volatile long minFrameInterval;
+    private long lastFrameTime;
 
     /**
      * Create an FXImageSink. A new AppSink element will be created that can be
@@ -103,25 +139,23 @@ public class FXImageSink {
      */
     public FXImageSink(AppSink sink) {
         this.sink = sink;
-        oldSamples = new ArrayBlockingQueue<>(OLD_SAMPLE_BUFFER_SIZE + 1);
         sink.set("emit-signals", true);
         sink.connect((AppSink.NEW_SAMPLE) elem -> {
             Sample s = elem.pullSample();
             if (s == null) throw new IllegalStateException();
-            Platform.runLater(() -> updateImage(s));
+            offer(s, false);
             return FlowReturn.OK;
         });
         sink.connect((AppSink.NEW_PREROLL) appsink -> {
             Sample s = appsink.pullPreroll();
             if (s == null) throw new IllegalStateException();
-            Platform.runLater(() -> updateImage(s));
+            offer(s, true);
             return FlowReturn.OK;
         });
         sink.setCaps(Caps.fromString(DEFAULT_CAPS));
+        setMaxFrameRate(QueleaProperties.get().getVideoMaxFrameRate());
 
-        imageBuffer = ByteBuffer.allocateDirect(4).asIntBuffer();
-        pixelBuffer = new PixelBuffer<>(1, 1, imageBuffer, PixelFormat.getIntArgbPreInstance());
-        image = new ReadOnlyObjectWrapper<>(new WritableImage(pixelBuffer));
+        image = new ReadOnlyObjectWrapper<>(new WritableImage(1, 1));
     }
 
     /**
@@ -145,92 +179,140 @@ public class FXImageSink {
         return sink;
     }
 
-    long lastTs = 0;
-    int frames = 0;
+    /**
+     * Set the most frames per second that will be shown. Frames that arrive
+     * sooner than this after the last one are dropped.
+     *
+     * @param frameRate the maximum frame rate, or 0 to use the refresh rate
+     * of the display.
+     */
+    public void setMaxFrameRate(double frameRate) {
+        if (frameRate <= 0) {
+            frameRate = getDisplayRefreshRate();
+        }
+        // Allow a little for jitter in when frames arrive, so a video at the
+        // display's frame rate doesn't lose the odd frame that comes early
+        minFrameInterval = (long) (0.75 * 1_000_000_000L / frameRate);
+    }
 
-    private void updateImage(Sample newSample) {
-        long ts = System.currentTimeMillis();
-        if(ts-lastTs>1000) {
-            System.out.println(frames);
-            frames = 1;
-            lastTs= ts;
+    /**
+     * Get the number of frames that have been shown.
+     *
+     * @return the number of frames shown.
+     */
+    public long getPresentedFrames() {
+        return presentedFrames.get();
+    }
+
+    /**
+     * Get the number of frames that have been dropped, either because a newer
+     * frame arrived before they were shown or because they arrived faster than
+     * the maximum frame rate.
+     *
+     * @return the number of frames dropped.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Hand a sample to the JavaFX application thread, replacing any sample
+     * that's still waiting to be shown. Called on the streaming thread.
+     */
+    private void offer(Sample sample, boolean preroll) {
+        long now = System.nanoTime();
+        if (!preroll && lastFrameTime != 0 && now - lastFrameTime < minFrameInterval) {
+            sample.dispose();
+            droppedFrames.incrementAndGet();
+            return;
+        }
+        lastFrameTime = now;
+        Sample replaced = pendingSample.getAndSet(sample);
+        if (replaced == null) {
+            Platform.runLater(this::presentPending);
+        } else {
+            replaced.dispose();
+            droppedFrames.incrementAndGet();
         }
-        else {
-            frames++;
+    }
+
+    private void presentPending() {
+        Sample sample = pendingSample.getAndSet(null);
+        if (sample != null) {
+            updateImage(sample);
+            presentedFrames.incrementAndGet();
+        }
+    }
+
+    private static double getDisplayRefreshRate() {
+        try {
+            if (!GraphicsEnvironment.isHeadless()) {
+                int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+                if (refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN && refreshRate > 0) {
+                    return refreshRate;
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Fall through to the default
         }
+        return DEFAULT_REFRESH_RATE;
+    }
+
+    private void updateImage(Sample newSample) {
         if (!Platform.isFxApplicationThread()) {
             throw new IllegalStateException("Not on FX application thread");
         }
         if (newSample == null) {
             throw new RuntimeException();
         }
-        Sample oldSample = activeSample;
-        Buffer oldBuffer = activeBuffer;
-
-        activeSample = newSample;
-        Structure capsStruct = newSample.getCaps().getStructure(0);
-        int width = capsStruct.getInteger("width");
-        int height = capsStruct.getInteger("height");
-        activeBuffer = newSample.getBuffer();
-
-        if (image.get().getWidth() != width || image.get().getHeight() != height) {
-            imageBuffer = ByteBuffer.allocateDirect(width*height*4).asIntBuffer();
-            pixelBuffer = new PixelBuffer<>(width, height, imageBuffer, PixelFormat.getIntArgbPreInstance());
-            image.set(new WritableImage(pixelBuffer));
-        }
-
-        IntBuffer gBuffer = activeBuffer.map(false).asIntBuffer();
-
         try {
-//            GstBufferAPI.MapInfoStruct mapInfo = (GstBufferAPI.MapInfoStruct) mapInfoBufferField.get(activeBuffer);
-//            long baseAddress = (long)pointerPeerField.get(mapInfo.data);
-//            long size = mapInfo.size.longValue();
-
-            long baseAddress = bufferAddress.getLong(gBuffer);
-            long size = bufferCapacity.getInt(gBuffer);
-
-//            System.out.println(baseAddress + "  "+ size);
-
-//            imageBuffer.rewind();
-
-            bufferAddress.setLong(imageBuffer, baseAddress);
-            bufferCapacity.setInt(imageBuffer, (int)size);
-            imageBuffer.position(0);
-            imageBuffer.limit((int)size);
-//            System.out.println(imageBuffer.get(4140000));
-//            System.out.println(gBuffer.get(4140000));
-//            System.out.println(gBuffer.getClass());
-//            System.out.println(imageBuffer.getClass());
-//            imageBuffer.put(gBuffer);
-
-//            imageBuffer.flip();
-
-            pixelBuffer.updateBuffer(b -> null);
-
-
-        } catch (IllegalAccessException ex) {
-            ex.printStackTrace();
+            Structure capsStruct = newSample.getCaps().getStructure(0);
+            int width = capsStruct.getInteger("width");
+            int height = capsStruct.getInteger("height");
+            Frame frame = getFrame(width, height);
+            Buffer buffer = newSample.getBuffer();
+            ByteBuffer data = buffer.map(false);
+            if (data != null) {
+                try {
+                    frame.update(data);
+                } finally {
+                    buffer.unmap();
+                }
+            }
+            if (image.get() != frame.image) {
+                image.set(frame.image);
+            }
+        } finally {
+            newSample.dispose();
         }
+    }
 
-//        image.get().getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), activeBuffer.map(false), width * 4);
-
-        if (oldSample != null) oldSamples.add(oldSample);
-        if (oldBuffer != null) {
-            oldBuffer.unmap();
+    /**
+     * Get a pixel buffer for frames of the given size, reusing one if it's
+     * been used recently.
+     */
+    private Frame getFrame(int width, int height) {
+        for (Iterator<Frame> it = frames.iterator(); it.hasNext();) {
+            Frame frame = it.next();
+            if (frame.width == width && frame.height == height) {
+                it.remove();
+                frames.addFirst(frame);
+                return frame;
+            }
         }
-        while (oldSamples.size() > OLD_SAMPLE_BUFFER_SIZE) {
-            oldSamples.remove().dispose();
+        Frame frame = new Frame(width, height);
+        frames.addFirst(frame);
+        while (frames.size() > POOLED_FRAME_SIZES) {
+            frames.removeLast();
         }
-
-//        long dur = System.nanoTime() - val;
-//        System.out.println("REFRESH TIME: " + dur / 1000);
-
+        return frame;
     }
 
     /**
-     * Clear any image and dispose of underlying native buffers. Can be called
-     * from any thread, but clearing will happen asynchronously if not called on
-     * JavaFX application thread.
+     * Clear any image and release any frame waiting to be shown. The pixel
+     * buffers are kept for the next video. Can be called from any thread, but
+     * clearing will happen asynchronously if not called on JavaFX application
+     * thread.
      */
     public void clear() {
         if (Platform.isFxApplicationThread()) {
@@ -245,13 +327,9 @@ public class FXImageSink {
             throw new IllegalStateException("Not on FX application thread");
         }
         image.set(new WritableImage(1, 1));
-        if (activeBuffer != null) {
-            activeBuffer.unmap();
-            activeBuffer = null;
-        }
-        if (activeSample != null) {
-            activeSample.dispose();
-            activeSample = null;
+        Sample pending = pendingSample.getAndSet(null);
+        if (pending != null) {
+            pending.dispose();
         }
     }
 }
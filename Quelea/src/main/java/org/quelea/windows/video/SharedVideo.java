@@ -0,0 +1,108 @@
+package org.quelea.windows.video;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.freedesktop.gstreamer.Bus;
+import org.freedesktop.gstreamer.Format;
+import org.freedesktop.gstreamer.elements.PlayBin;
+import org.freedesktop.gstreamer.event.SeekFlags;
+import org.quelea.services.utils.GStreamerInitState;
+import org.quelea.services.utils.Utils;
+
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A looping video that's decoded once however many canvases show it. Theme
+ * backgrounds use these rather than a VidDisplay each, so a video background
+ * on the preview, live and projector canvases is decoded by one pipeline and
+ * its frames shared between the canvases' image views.
+ * <p>
+ * Each user acquires the video for a URI and releases it when done with it;
+ * the video plays while it has at least one user. Acquiring and releasing
+ * must be done on the FX thread.
+ */
+public final class SharedVideo {
+
+    private static final Map<URI, SharedVideo> VIDEOS = new HashMap<>();
+    private static final Image BLANK_IMG;
+    private static int idCounter = 0;
+
+    static {
+        BLANK_IMG = new WritableImage(1, 1);
+        ((WritableImage) BLANK_IMG).getPixelWriter().setColor(0, 0, Color.BLACK);
+    }
+
+    private final URI uri;
+    private final PlayBin playBin;
+    private final FXImageSink fxImageSink;
+    private int users;
+
+    private SharedVideo(URI uri) {
+        this.uri = uri;
+        if (GStreamerInitState.INIT_SUCCESS) {
+            fxImageSink = new FXImageSink();
+            playBin = new PlayBin("shared playbin " + idCounter++);
+            playBin.setVideoSink(fxImageSink.getSinkElement());
+            playBin.getBus().connect((Bus.EOS) source -> {
+                playBin.seekSimple(Format.TIME, EnumSet.of(SeekFlags.FLUSH), 0);
+            });
+            playBin.setURI(uri);
+        } else {
+            fxImageSink = null;
+            playBin = null;
+        }
+    }
+
+    /**
+     * Get the shared video for a URI, starting it if nothing else is using it.
+     * Each call must be matched by a call to release().
+     *
+     * @param uri the URI of the video.
+     * @return the shared video.
+     */
+    public static SharedVideo acquire(URI uri) {
+        Utils.checkFXThread();
+        SharedVideo video = VIDEOS.computeIfAbsent(uri, SharedVideo::new);
+        if (video.users++ == 0 && video.playBin != null) {
+            video.playBin.play();
+        }
+        return video;
+    }
+
+    /**
+     * Stop using this video. When nothing is using it any more, it's stopped,
+     * its frames let go and its pipeline disposed.
+     */
+    public void release() {
+        Utils.checkFXThread();
+        if (users == 0) {
+            return;
+        }
+        users--;
+        if (users == 0) {
+            VIDEOS.remove(uri);
+            if (playBin != null) {
+                playBin.stop();
+                fxImageSink.clear();
+                playBin.dispose();
+            }
+        }
+    }
+
+    public ReadOnlyObjectProperty<? extends Image> imageProperty() {
+        if (fxImageSink == null) {
+            return new ReadOnlyObjectWrapper<>(BLANK_IMG);
+        }
+        return fxImageSink.imageProperty();
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+}
@@ -1,65 +1,151 @@
 package org.quelea.windows.video;
 
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelBuffer;
 import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import org.freedesktop.gstreamer.Buffer;
 import org.freedesktop.gstreamer.Caps;
+import org.freedesktop.gstreamer.Format;
 import org.freedesktop.gstreamer.Gst;
 import org.freedesktop.gstreamer.Sample;
+import org.freedesktop.gstreamer.State;
 import org.freedesktop.gstreamer.Structure;
 import org.freedesktop.gstreamer.elements.PlayBin;
+import org.freedesktop.gstreamer.event.SeekFlags;
 import org.quelea.services.utils.GStreamerInitState;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.library.VideoListPanel;
 
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Grabs a still frame from videos for their previews. A pool of preview
+ * pipelines is kept so several videos can be previewed at once; the number
+ * of pipelines is set by the video preview threads property. The frame is
+ * taken from 10% of the way into the video, since the first frame is often
+ * black, and a video that doesn't give up a frame within the timeout is
+ * given up on so it doesn't hold up the rest.
+ */
 public class VidPreviewDisplay {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final long TIMEOUT_MILLIS = 10000;
 
-    private PlayBin playBin;
+    private final BlockingQueue<PlayBin> idle = new LinkedBlockingQueue<>();
+    private final int maxPlayBins;
+    private int playBins;
+    private int idCounter;
 
     public VidPreviewDisplay() {
-        if (GStreamerInitState.INIT_SUCCESS) {
-            playBin = new PlayBin("playbin preview");
-            playBin.setVideoSink(Gst.parseLaunch("fakesink"));
-        }
+        maxPlayBins = QueleaProperties.get().getVideoPreviewThreads();
     }
 
-    public synchronized Image getPreviewImg(URI uri) {
-        if (uri == null || playBin == null) {
+    public Image getPreviewImg(URI uri) {
+        if (uri == null || !GStreamerInitState.INIT_SUCCESS) {
+            return VideoListPanel.BLANK;
+        }
+        PlayBin playBin;
+        try {
+            playBin = takePlayBin();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             return VideoListPanel.BLANK;
         }
-
         LOGGER.log(Level.INFO, "PROCESSING URI " + uri);
+        boolean ok = false;
+        try {
+            Image img = grabFrame(playBin, uri);
+            ok = true;
+            return img;
+        } finally {
+            playBin.stop();
+            if (ok) {
+                idle.add(playBin);
+            } else {
+                // The pipeline may be stuck, so throw it away and let the
+                // next preview make a new one.
+                playBin.dispose();
+                synchronized (this) {
+                    playBins--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a pipeline that isn't in use, making a new one if there are fewer
+     * than the maximum or waiting for one to be free if not.
+     */
+    private PlayBin takePlayBin() throws InterruptedException {
+        PlayBin playBin = idle.poll();
+        if (playBin != null) {
+            return playBin;
+        }
+        synchronized (this) {
+            if (playBins < maxPlayBins) {
+                playBins++;
+                playBin = new PlayBin("playbin preview " + idCounter++);
+                playBin.setVideoSink(Gst.parseLaunch("fakesink"));
+                return playBin;
+            }
+        }
+        return idle.take();
+    }
+
+    /**
+     * Preroll a video, seek to 10% of the way in and copy out the frame
+     * there. Throws an IllegalStateException if the video doesn't preroll
+     * within the timeout, and returns the unsupported image if it prerolls but
+     * no frame can be got from it.
+     */
+    private Image grabFrame(PlayBin playBin, URI uri) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
         playBin.setURI(uri);
-        playBin.getState();
         playBin.pause();
-        playBin.getState();
-        playBin.getState();
+        if (!waitForPause(playBin, deadline)) {
+            throw new IllegalStateException("Timed out getting preview for " + uri);
+        }
+        long duration = playBin.queryDuration(Format.TIME);
+        if (duration > 0) {
+            playBin.seekSimple(Format.TIME, EnumSet.of(SeekFlags.FLUSH, SeekFlags.KEY_UNIT), duration / 10);
+            if (!waitForPause(playBin, deadline)) {
+                throw new IllegalStateException("Timed out seeking preview for " + uri);
+            }
+        }
         Sample s = playBin.emit(Sample.class, "convert-sample", Caps.fromString("video/x-raw,format=BGRA"));
         if (s == null) {
-            playBin.stop();
-            playBin.getState();
             return VideoListPanel.UNSUPPORTED;
-        } else {
+        }
+        try {
             Structure capsStruct = s.getCaps().getStructure(0);
             int width = capsStruct.getInteger("width");
             int height = capsStruct.getInteger("height");
-            Buffer activeBuffer = s.getBuffer();
-            PixelBuffer<ByteBuffer> pixelBuffer = new PixelBuffer<>(width, height,
-                    activeBuffer.map(false), PixelFormat.getByteBgraPreInstance());
-            WritableImage img = new WritableImage(pixelBuffer);
-            playBin.stop();
-            playBin.getState();
-            return img;
+            Buffer buffer = s.getBuffer();
+            ByteBuffer pixels = buffer.map(false);
+            try {
+                WritableImage img = new WritableImage(width, height);
+                img.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(),
+                        pixels, pixels.remaining() / height);
+                return img;
+            } finally {
+                buffer.unmap();
+            }
+        } finally {
+            s.dispose();
         }
     }
 
+    private static boolean waitForPause(PlayBin playBin, long deadline) {
+        long remaining = deadline - System.nanoTime();
+        return remaining > 0 && playBin.getState(remaining) == State.PAUSED;
+    }
+
 }
@@ -0,0 +1,140 @@
+package org.quelea.data.db;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.quelea.data.displayable.SongDisplayable;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@DisplayName("SongStoreTest")
+public class SongStoreTest {
+
+    /**
+     * A song that records how it was dropped by the store.
+     */
+    private static class TestSong extends SongDisplayable {
+
+        private final SongStore store;
+        private int dehydrateCalls;
+        private boolean dehydratedUnderStoreLock;
+
+        TestSong(SongStore store, long id, String title) {
+            super(title, "", null);
+            this.store = store;
+            setID(id);
+        }
+
+        @Override
+        public boolean dehydrate() {
+            dehydrateCalls++;
+            dehydratedUnderStoreLock |= Thread.holdsLock(store);
+            return super.dehydrate();
+        }
+    }
+
+    @Test
+    @DisplayName("Test Hits And Misses Are Counted")
+    public void testHitsAndMissesAreCounted() {
+        SongStore store = new SongStore(10);
+        // nothing's loaded yet, so asking for everything is a miss
+        Assertions.assertFalse(store.isLoaded());
+        Assertions.assertNull(store.getAll());
+        Assertions.assertEquals(1, store.getMisses());
+
+        TestSong b = new TestSong(store, 2, "B");
+        TestSong a = new TestSong(store, 1, "A");
+        store.load(Arrays.asList(b, a));
+        Assertions.assertTrue(store.isLoaded());
+        Assertions.assertArrayEquals(new SongDisplayable[]{a, b}, store.getAll());
+        Assertions.assertSame(b, store.get(2));
+        Assertions.assertNull(store.get(3));
+        Assertions.assertEquals(2, store.getHits());
+        Assertions.assertEquals(2, store.getMisses());
+        Assertions.assertEquals(0, store.getReloads());
+
+        // loading again counts as a reload
+        store.load(Collections.singletonList(a));
+        Assertions.assertEquals(1, store.getReloads());
+        Assertions.assertNull(store.get(2));
+    }
+
+    @Test
+    @DisplayName("Test Least Recently Used Song Is Evicted")
+    public void testLeastRecentlyUsedSongIsEvicted() {
+        SongStore store = new SongStore(2);
+        TestSong a = new TestSong(store, 1, "A");
+        TestSong b = new TestSong(store, 2, "B");
+        TestSong c = new TestSong(store, 3, "C");
+        store.load(Arrays.asList(a, b, c));
+
+        store.hydrated(a);
+        store.hydrated(b);
+        // using a again makes b the least recently used
+        store.hydrated(a);
+        store.hydrated(c);
+
+        Assertions.assertEquals(1, store.getEvictions());
+        Assertions.assertEquals(0, a.dehydrateCalls);
+        Assertions.assertEquals(1, b.dehydrateCalls);
+        Assertions.assertEquals(0, c.dehydrateCalls);
+        Assertions.assertFalse(b.isHydrated());
+        Assertions.assertTrue(a.isHydrated());
+        Assertions.assertTrue(c.isHydrated());
+    }
+
+    @Test
+    @DisplayName("Test Retained Song Is Not Dropped Until Released")
+    public void testRetainedSongIsNotDroppedUntilReleased() {
+        SongStore store = new SongStore(1);
+        TestSong a = new TestSong(store, 1, "A");
+        TestSong b = new TestSong(store, 2, "B");
+        store.load(Arrays.asList(a, b));
+
+        a.retain();
+        store.hydrated(a);
+        store.hydrated(b);
+        // a is pushed out of the store but keeps its sections while retained
+        Assertions.assertEquals(1, a.dehydrateCalls);
+        Assertions.assertTrue(a.isHydrated());
+        Assertions.assertEquals(0, store.getEvictions());
+
+        a.release();
+        store.hydrated(a);
+        store.hydrated(b);
+        Assertions.assertFalse(a.isHydrated());
+        Assertions.assertEquals(2, store.getEvictions());
+    }
+
+    @Test
+    @DisplayName("Test Songs Not In The Store Are Ignored")
+    public void testSongsNotInTheStoreAreIgnored() {
+        SongStore store = new SongStore(1);
+        TestSong a = new TestSong(store, 1, "A");
+        TestSong stale = new TestSong(store, 1, "A");
+        TestSong other = new TestSong(store, 2, "B");
+        store.load(Collections.singletonList(a));
+
+        store.hydrated(a);
+        // neither a copy with the same ID nor an unknown song displaces a
+        store.hydrated(stale);
+        store.hydrated(other);
+        Assertions.assertEquals(0, a.dehydrateCalls);
+        Assertions.assertEquals(0, store.getEvictions());
+    }
+
+    @Test
+    @DisplayName("Test Songs Are Dehydrated Outside The Store Lock")
+    public void testSongsAreDehydratedOutsideTheStoreLock() {
+        SongStore store = new SongStore(1);
+        TestSong a = new TestSong(store, 1, "A");
+        TestSong b = new TestSong(store, 2, "B");
+        store.load(Arrays.asList(a, b));
+
+        store.hydrated(a);
+        store.hydrated(b);
+        Assertions.assertEquals(1, a.dehydrateCalls);
+        Assertions.assertFalse(a.dehydratedUnderStoreLock);
+    }
+}
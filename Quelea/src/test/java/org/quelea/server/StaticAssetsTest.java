@@ -0,0 +1,164 @@
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+@DisplayName("StaticAssetsTest")
+public class StaticAssetsTest {
+
+    private static final String ETAG = "\"abc\"";
+
+    @TempDir
+    Path dir;
+    private Path base;
+    private byte[] script;
+    private HttpServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        base = Files.createDirectories(dir.resolve("static"));
+        // repetitive enough to be worth gzipping
+        StringBuilder js = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            js.append("console.log('quelea ").append(i % 10).append("');\n");
+        }
+        script = js.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(base.resolve("app.js"), script);
+        Files.write(dir.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/static/", StaticAssets.directory(base.toString(), "/static/", false));
+        server.createContext("/etag", exchange -> {
+            if (HttpCache.notModified(exchange, ETAG)) {
+                return;
+            }
+            byte[] body = "body".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Test If-None-Match Uses Weak Comparison")
+    public void testIfNoneMatchUsesWeakComparison() throws IOException {
+        Assertions.assertEquals(304, request("/etag", "If-None-Match", ETAG).getResponseCode());
+        Assertions.assertEquals(304, request("/etag", "If-None-Match", "W/" + ETAG).getResponseCode());
+        Assertions.assertEquals(304, request("/etag", "If-None-Match", "\"other\", W/" + ETAG).getResponseCode());
+        Assertions.assertEquals(304, request("/etag", "If-None-Match", "*").getResponseCode());
+
+        HttpURLConnection miss = request("/etag", "If-None-Match", "\"other\"");
+        Assertions.assertEquals(200, miss.getResponseCode());
+        Assertions.assertEquals(ETAG, miss.getHeaderField("ETag"));
+        Assertions.assertEquals("no-cache", miss.getHeaderField("Cache-Control"));
+
+        Assertions.assertEquals(200, request("/etag").getResponseCode());
+    }
+
+    @Test
+    @DisplayName("Test Gzipped Copy Has Its Own ETag")
+    public void testGzippedCopyHasItsOwnETag() throws IOException {
+        HttpURLConnection plain = request("/static/app.js");
+        Assertions.assertEquals(200, plain.getResponseCode());
+        Assertions.assertNull(plain.getHeaderField("Content-Encoding"));
+        Assertions.assertEquals("Accept-Encoding", plain.getHeaderField("Vary"));
+        Assertions.assertArrayEquals(script, read(plain.getInputStream()));
+        String plainTag = plain.getHeaderField("ETag");
+
+        HttpURLConnection gzipped = request("/static/app.js", "Accept-Encoding", "gzip");
+        Assertions.assertEquals(200, gzipped.getResponseCode());
+        Assertions.assertEquals("gzip", gzipped.getHeaderField("Content-Encoding"));
+        Assertions.assertArrayEquals(script, read(new GZIPInputStream(gzipped.getInputStream())));
+        String gzipTag = gzipped.getHeaderField("ETag");
+        Assertions.assertEquals(plainTag.substring(0, plainTag.length() - 1) + "-gz\"", gzipTag);
+
+        // each tag only revalidates its own encoding
+        Assertions.assertEquals(304, request("/static/app.js", "If-None-Match", plainTag).getResponseCode());
+        Assertions.assertEquals(200, request("/static/app.js", "If-None-Match", gzipTag).getResponseCode());
+        HttpURLConnection revalidated = request("/static/app.js", "Accept-Encoding", "gzip", "If-None-Match", gzipTag);
+        Assertions.assertEquals(304, revalidated.getResponseCode());
+    }
+
+    @Test
+    @DisplayName("Test Fingerprinted Path Is Immutable")
+    public void testFingerprintedPathIsImmutable() throws IOException {
+        String html = "<script src=\"static/app.js\"></script><link href=\"/static/missing.css\"/>";
+        String fingerprinted = StaticAssets.fingerprint(html, base.toString());
+        Matcher matcher = Pattern.compile("src=\"static/app\\.js\\?v=([0-9a-f]+)\"").matcher(fingerprinted);
+        Assertions.assertTrue(matcher.find(), fingerprinted);
+        // files that don't exist are left alone
+        Assertions.assertTrue(fingerprinted.contains("href=\"/static/missing.css\""), fingerprinted);
+        String hash = matcher.group(1);
+
+        HttpURLConnection versioned = request("/static/app.js?v=" + hash);
+        Assertions.assertEquals(200, versioned.getResponseCode());
+        Assertions.assertEquals("public, max-age=31536000, immutable", versioned.getHeaderField("Cache-Control"));
+        Assertions.assertEquals("\"" + hash + "\"", versioned.getHeaderField("ETag"));
+
+        HttpURLConnection stale = request("/static/app.js?v=0123456789abcdef");
+        Assertions.assertEquals(200, stale.getResponseCode());
+        Assertions.assertEquals("no-cache", stale.getHeaderField("Cache-Control"));
+    }
+
+    @Test
+    @DisplayName("Test Paths Outside The Directory Are Rejected")
+    public void testPathsOutsideTheDirectoryAreRejected() throws IOException {
+        Assertions.assertEquals(404, request("/static/../secret.txt").getResponseCode());
+        Assertions.assertEquals(404, request("/static/%2e%2e/secret.txt").getResponseCode());
+        Assertions.assertEquals(404, request("/static/nothing.js").getResponseCode());
+        Assertions.assertEquals(200, request("/static/app.js").getResponseCode());
+    }
+
+    /**
+     * Make a GET request to the test server with the given header names and
+     * values.
+     */
+    private HttpURLConnection request(String path, String... headers) throws IOException {
+        URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        for (int i = 0; i < headers.length; i += 2) {
+            connection.setRequestProperty(headers[i], headers[i + 1]);
+        }
+        connection.getResponseCode();
+        return connection;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream is = in) {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        }
+        return out.toByteArray();
+    }
+}